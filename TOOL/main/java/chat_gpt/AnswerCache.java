@@ -0,0 +1,264 @@
+package chat_gpt;
+
+import other.MyOwnLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A content-addressed cache of the answers of the language models.
+ * An answer is identified by the SHA-256 hash of everything that determines it: the model, the
+ * system prompt, the user text and the sampling parameters (see key()). As the temperature and
+ * the top_p are set to 0, the same request is expected to produce the same answer, so that a hit
+ * can be returned without contacting the model.
+ * The cache has two tiers: a bounded in-memory LRU map, and a directory on disk in which each
+ * answer is stored in a file named after its key, so that the answers survive the restarts of the
+ * tool. Disk failures are logged and ignored: the cache then behaves as if the answer was absent.
+ */
+public class AnswerCache
+{
+	private static final String DIRECTORY_PROPERTY = "chatgpt.cache.directory";
+	private static final String DEFAULT_DIRECTORY_NAME = "chatgpt_cache";
+	private static final String ANSWER_EXTENSION = ".answ";
+	private static final int DEFAULT_MEMORY_CAPACITY = 256;
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	private final LinkedHashMap<String, String> memory;
+	private final File directory;
+
+	/**
+	 * @param directory the directory storing the answers on disk, or null to keep them in memory only
+	 * @param memoryCapacity the maximal number of answers kept in memory
+	 */
+	public AnswerCache(final File directory,
+					   final int memoryCapacity)
+	{
+		if (memoryCapacity < 0)
+		{
+			throw new IllegalArgumentException("The memory capacity of the cache must be positive (got " + memoryCapacity + ").");
+		}
+
+		this.directory = directory;
+		this.memory = new LinkedHashMap<>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, String> eldest)
+			{
+				return this.size() > memoryCapacity;
+			}
+		};
+	}
+
+	/**
+	 * The default cache stores its answers in the directory given by the "chatgpt.cache.directory"
+	 * system property if it is set, and in the "chatgpt_cache" directory next to the jar file being
+	 * executed otherwise (the working directories of the runs being generated there too).
+	 *
+	 * @return the default cache
+	 */
+	public static AnswerCache defaultCache()
+	{
+		final String property = System.getProperty(DIRECTORY_PROPERTY);
+
+		if (property != null)
+		{
+			return new AnswerCache(property.isBlank() ? null : new File(property), DEFAULT_MEMORY_CAPACITY);
+		}
+
+		File directory;
+
+		try
+		{
+			final File jarFile = new File(AnswerCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+			directory = new File(jarFile.getParentFile(), DEFAULT_DIRECTORY_NAME);
+		}
+		catch (Exception e)
+		{
+			directory = null;
+		}
+
+		return new AnswerCache(directory, DEFAULT_MEMORY_CAPACITY);
+	}
+
+	/**
+	 * This function computes the key of a request.
+	 * Each component is prefixed by its length, so that two different requests cannot be encoded
+	 * identically before being hashed.
+	 *
+	 * @param model the identifier of the model
+	 * @param systemPrompt the system prompt of the request
+	 * @param userText the user text of the request
+	 * @param temperature the temperature of the request
+	 * @param topP the top_p of the request
+	 * @param maxTokens the maximal number of tokens of the answer
+	 * @return the hexadecimal SHA-256 hash identifying the request
+	 */
+	public static String key(final String model,
+							 final String systemPrompt,
+							 final String userText,
+							 final double temperature,
+							 final double topP,
+							 final int maxTokens)
+	{
+		final StringBuilder builder = new StringBuilder();
+
+		for (String component : new String[]{model, systemPrompt, userText, String.valueOf(temperature), String.valueOf(topP), String.valueOf(maxTokens)})
+		{
+			builder.append(component.length()).append(':').append(component);
+		}
+
+		final byte[] hash;
+
+		try
+		{
+			hash = MessageDigest.getInstance("SHA-256").digest(builder.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+
+		final char[] hexKey = new char[hash.length * 2];
+
+		for (int i = 0; i < hash.length; i++)
+		{
+			hexKey[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+			hexKey[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+		}
+
+		return new String(hexKey);
+	}
+
+	/**
+	 * This function looks for the answer of the given key in memory, then on disk.
+	 * An answer found on disk is put back in memory.
+	 *
+	 * @param key the key of the request
+	 * @return the cached answer, or null if the request has never been answered
+	 */
+	public String get(final String key)
+	{
+		synchronized (this.memory)
+		{
+			final String answer = this.memory.get(key);
+
+			if (answer != null)
+			{
+				return answer;
+			}
+		}
+
+		if (this.directory == null)
+		{
+			return null;
+		}
+
+		final Path answerPath = this.pathOf(key);
+
+		if (!Files.isRegularFile(answerPath))
+		{
+			return null;
+		}
+
+		final String answer;
+
+		try
+		{
+			answer = Files.readString(answerPath, StandardCharsets.UTF_8);
+		}
+		catch (IOException e)
+		{
+			MyOwnLogger.append("Cached answer \"" + answerPath + "\" could not be read: " + e.getMessage());
+			return null;
+		}
+
+		synchronized (this.memory)
+		{
+			this.memory.put(key, answer);
+		}
+
+		return answer;
+	}
+
+	/**
+	 * This function stores the answer of the given key in memory and on disk.
+	 * The answer is first written to a temporary file which is then renamed, so that a reader never
+	 * sees a partially written answer, even if several runs share the same directory. The temporary
+	 * file is deleted if it could not be renamed.
+	 *
+	 * @param key the key of the request
+	 * @param answer the answer of the request
+	 */
+	public void put(final String key,
+					final String answer)
+	{
+		synchronized (this.memory)
+		{
+			this.memory.put(key, answer);
+		}
+
+		if (this.directory == null)
+		{
+			return;
+		}
+
+		final Path answerPath = this.pathOf(key);
+		Path temporaryPath = null;
+
+		try
+		{
+			Files.createDirectories(answerPath.getParent());
+			temporaryPath = Files.createTempFile(answerPath.getParent(), key, ".tmp");
+			Files.writeString(temporaryPath, answer, StandardCharsets.UTF_8);
+
+			try
+			{
+				Files.move(temporaryPath, answerPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(temporaryPath, answerPath, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			//The temporary file no longer exists
+			temporaryPath = null;
+		}
+		catch (IOException e)
+		{
+			MyOwnLogger.append("Answer could not be cached in \"" + answerPath + "\": " + e.getMessage());
+		}
+		finally
+		{
+			if (temporaryPath != null)
+			{
+				try
+				{
+					Files.deleteIfExists(temporaryPath);
+				}
+				catch (IOException e)
+				{
+					MyOwnLogger.append("Temporary file \"" + temporaryPath + "\" could not be deleted: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	//Private methods
+
+	/**
+	 * Answers are spread over sub-directories named after the first two digits of their key,
+	 * so that no directory grows too large.
+	 */
+	private Path pathOf(final String key)
+	{
+		return Path.of(this.directory.getPath(), key.substring(0, 2), key + ANSWER_EXTENSION);
+	}
+}
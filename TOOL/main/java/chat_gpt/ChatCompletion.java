@@ -0,0 +1,224 @@
+package chat_gpt;
+
+import chat_gpt.json.JsonReader;
+import chat_gpt.json.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * The parts of an answer of the chat completions API that are used by the tool: the content and
+ * the finish reason of its first choice, and the numbers of tokens consumed by the request.
+ * The same class is used for the whole answer of a request and for each chunk of a streamed
+ * answer, whose content is then in a "delta" object instead of a "message" object, and whose usage
+ * is only given by the last chunk.
+ */
+public class ChatCompletion
+{
+	/**
+	 * The finish reason of an answer ended by the model itself, and not cut by the maximal number of
+	 * tokens ("length") or by the content filter ("content_filter").
+	 */
+	public static final String STOP = "stop";
+	private String content;
+	private String finishReason;
+	private long promptTokens;
+	private long completionTokens;
+	private boolean hasUsage;
+
+	ChatCompletion()
+	{
+		this.content = null;
+		this.finishReason = null;
+		this.promptTokens = 0;
+		this.completionTokens = 0;
+		this.hasUsage = false;
+	}
+
+	ChatCompletion(final String content,
+				   final String finishReason,
+				   final long promptTokens,
+				   final long completionTokens,
+				   final boolean hasUsage)
+	{
+		this.content = content;
+		this.finishReason = finishReason;
+		this.promptTokens = promptTokens;
+		this.completionTokens = completionTokens;
+		this.hasUsage = hasUsage;
+	}
+
+	/**
+	 * This function reads an answer (or a chunk of a streamed answer) of the chat completions API.
+	 * Only the fields used by the tool are built: all the other values are skipped.
+	 *
+	 * @param reader the reader positioned at the beginning of the answer
+	 * @return the answer read
+	 * @throws IOException if the answer is not a valid JSON document
+	 */
+	public static ChatCompletion read(final JsonReader reader) throws IOException
+	{
+		final ChatCompletion completion = new ChatCompletion();
+		reader.beginObject();
+
+		while (reader.hasNext())
+		{
+			final String name = reader.nextName();
+
+			if (name.equals("choices")
+				&& reader.peek() == JsonToken.BEGIN_ARRAY)
+			{
+				reader.beginArray();
+
+				while (reader.hasNext())
+				{
+					completion.readChoice(reader);
+				}
+
+				reader.endArray();
+			}
+			else if (name.equals("usage")
+					&& reader.peek() == JsonToken.BEGIN_OBJECT)
+			{
+				completion.readUsage(reader);
+			}
+			else
+			{
+				reader.skipValue();
+			}
+		}
+
+		reader.endObject();
+		return completion;
+	}
+
+	/**
+	 * @return the content of the first choice of the answer, or null if it has none
+	 */
+	public String content()
+	{
+		return this.content;
+	}
+
+	public String finishReason()
+	{
+		return this.finishReason;
+	}
+
+	/**
+	 * @return true if the model ended the answer by itself and the answer has a non-empty content
+	 */
+	public boolean isComplete()
+	{
+		return STOP.equals(this.finishReason)
+				&& this.content != null
+				&& !this.content.isEmpty();
+	}
+
+	public long promptTokens()
+	{
+		return this.promptTokens;
+	}
+
+	public long completionTokens()
+	{
+		return this.completionTokens;
+	}
+
+	/**
+	 * @return true if the answer contains the numbers of tokens consumed by the request
+	 */
+	public boolean hasUsage()
+	{
+		return this.hasUsage;
+	}
+
+	//Private methods
+
+	private void readChoice(final JsonReader reader) throws IOException
+	{
+		if (reader.peek() != JsonToken.BEGIN_OBJECT)
+		{
+			reader.skipValue();
+			return;
+		}
+
+		//Only the first choice is considered
+		final boolean isFirstChoice = this.content == null && this.finishReason == null;
+		reader.beginObject();
+
+		while (reader.hasNext())
+		{
+			final String name = reader.nextName();
+
+			if (isFirstChoice
+				&& (name.equals("message") || name.equals("delta"))
+				&& reader.peek() == JsonToken.BEGIN_OBJECT)
+			{
+				this.readMessage(reader);
+			}
+			else if (isFirstChoice
+					&& name.equals("finish_reason")
+					&& reader.peek() == JsonToken.STRING)
+			{
+				this.finishReason = reader.nextString();
+			}
+			else
+			{
+				reader.skipValue();
+			}
+		}
+
+		reader.endObject();
+	}
+
+	private void readMessage(final JsonReader reader) throws IOException
+	{
+		reader.beginObject();
+
+		while (reader.hasNext())
+		{
+			final String name = reader.nextName();
+
+			if (name.equals("content")
+				&& reader.peek() == JsonToken.STRING)
+			{
+				this.content = reader.nextString();
+			}
+			else
+			{
+				reader.skipValue();
+			}
+		}
+
+		reader.endObject();
+	}
+
+	private void readUsage(final JsonReader reader) throws IOException
+	{
+		reader.beginObject();
+
+		while (reader.hasNext())
+		{
+			final String name = reader.nextName();
+
+			if (name.equals("prompt_tokens")
+				&& reader.peek() == JsonToken.NUMBER)
+			{
+				this.promptTokens = reader.nextLong();
+				this.hasUsage = true;
+			}
+			else if (name.equals("completion_tokens")
+					&& reader.peek() == JsonToken.NUMBER)
+			{
+				this.completionTokens = reader.nextLong();
+				this.hasUsage = true;
+			}
+			else
+			{
+				reader.skipValue();
+			}
+		}
+
+		reader.endObject();
+	}
+}
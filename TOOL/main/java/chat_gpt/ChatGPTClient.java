@@ -0,0 +1,350 @@
+package chat_gpt;
+
+import chat_gpt.json.JsonReader;
+import chat_gpt.json.JsonWriter;
+import other.MyOwnLogger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * A client of the chat completions API of OpenAI.
+ * All the requests of a client go through the same HttpClient, which keeps its connections alive
+ * and multiplexes the requests over HTTP/2 when the server supports it, instead of opening a new
+ * connection per request. Requests are sent asynchronously: complete() returns immediately, so that
+ * many descriptions can be processed at the same time by a single JVM.
+ * The endpoint is given to the constructor, so that the client can be pointed at a local server.
+ */
+public class ChatGPTClient
+{
+	public static final URI DEFAULT_ENDPOINT = URI.create("https://api.openai.com/v1/chat/completions");
+	public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+	public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofMinutes(3);
+	private static final String USER_ROLE = "user";
+	private static final String SYSTEM_ROLE = "system";
+	private static final String DATA_FIELD = "data:";
+	private static final String END_OF_STREAM = "[DONE]";
+	private final HttpClient httpClient;
+	private final URI endpoint;
+	private final Duration requestTimeout;
+
+	public ChatGPTClient()
+	{
+		this(DEFAULT_ENDPOINT, DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT);
+	}
+
+	/**
+	 * @param endpoint the URI of the chat completions endpoint
+	 * @param connectTimeout the maximal duration of the establishment of a connection
+	 * @param requestTimeout the maximal duration between the sending of a request and the reception of the headers
+	 * 						 of its response, and then of the reception of its body by complete(), or between two
+	 * 						 lines of its body by stream(); the request is cancelled when it is exceeded
+	 */
+	public ChatGPTClient(final URI endpoint,
+						 final Duration connectTimeout,
+						 final Duration requestTimeout)
+	{
+		this.endpoint = endpoint;
+		this.requestTimeout = requestTimeout;
+		this.httpClient = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.connectTimeout(connectTimeout)
+				.build();
+	}
+
+	/**
+	 * This function sends a request made of a system prompt and a user text to the given model.
+	 * The returned future fails with an IOException (wrapped in a CompletionException) if the
+	 * request could not be sent, timed out, or was answered with an error status. The request
+	 * times out if the headers of the response, and then its whole body, are not received within
+	 * the request timeout each.
+	 *
+	 * @param apiKey the API key used to authenticate the request
+	 * @param model the identifier of the model
+	 * @param systemPrompt the system prompt of the request
+	 * @param userText the user text of the request
+	 * @param temperature the temperature of the request
+	 * @param topP the top_p of the request
+	 * @param maxTokens the maximal number of tokens of the answer
+	 * @return a future completed with the answer of the model
+	 */
+	public CompletableFuture<ChatCompletion> complete(final String apiKey,
+											  final String model,
+											  final String systemPrompt,
+											  final String userText,
+											  final double temperature,
+											  final double topP,
+											  final int maxTokens)
+	{
+		final HttpRequest request = this.buildRequest(apiKey, model, systemPrompt, userText, temperature, topP, maxTokens, false);
+
+		return this.httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+				.thenApply(this::completionOf);
+	}
+
+	/**
+	 * This function sends the same request as complete(), but asks the server to stream the answer
+	 * as server-sent events. Each fragment of the content of the answer is given to the listener as
+	 * soon as it is received, on a thread of the client, so that the answer can be processed while
+	 * the model is still generating it. Fragments are given in order, by one thread at a time.
+	 * The server is asked to send the usage of the request in the last event of the stream.
+	 * As the generation of a long answer can exceed the request timeout, it only bounds the wait
+	 * for the headers of the response and then between two lines of the stream.
+	 *
+	 * @param listener the function called on each fragment of the content of the answer
+	 * @return a future completed with the whole answer once the stream has ended
+	 * @see #complete(String, String, String, String, double, double, int)
+	 */
+	public CompletableFuture<ChatCompletion> stream(final String apiKey,
+											final String model,
+											final String systemPrompt,
+											final String userText,
+											final double temperature,
+											final double topP,
+											final int maxTokens,
+											final Consumer<String> listener)
+	{
+		final HttpRequest request = this.buildRequest(apiKey, model, systemPrompt, userText, temperature, topP, maxTokens, true);
+
+		return this.httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+				.thenApply(response ->
+				{
+					final StringBuilder content = new StringBuilder();
+					String finishReason = null;
+					ChatCompletion usage = null;
+					final Watchdog watchdog = new Watchdog(response.body(), this.requestTimeout);
+
+					//The body is read by lines directly from the input stream of the response, which the watchdog
+					//can close while a line is awaited
+					try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8)))
+					{
+						if (response.statusCode() / 100 != 2)
+						{
+							final String errorBody = reader.lines().collect(Collectors.joining("\n"));
+							watchdog.check();
+							throw new IOException("Server returned HTTP response code " + response.statusCode() + ": " + errorBody);
+						}
+
+						String line;
+
+						while ((line = reader.readLine()) != null)
+						{
+							watchdog.reset();
+
+							if (!line.startsWith(DATA_FIELD)) continue;
+
+							final String data = line.substring(DATA_FIELD.length()).trim();
+
+							if (data.equals(END_OF_STREAM)) break;
+
+							final ChatCompletion chunk = ChatCompletion.read(new JsonReader(new StringReader(data)));
+
+							if (chunk.content() != null
+								&& !chunk.content().isEmpty())
+							{
+								content.append(chunk.content());
+								listener.accept(chunk.content());
+							}
+
+							if (chunk.finishReason() != null) finishReason = chunk.finishReason();
+							if (chunk.hasUsage()) usage = chunk;
+						}
+
+						watchdog.check();
+					}
+					catch (IOException e)
+					{
+						throw new CompletionException(watchdog.expired() ? watchdog.timeout() : e);
+					}
+					catch (UncheckedIOException e)
+					{
+						throw new CompletionException(watchdog.expired() ? watchdog.timeout() : e.getCause());
+					}
+					finally
+					{
+						watchdog.stop();
+					}
+
+					MyOwnLogger.append("Real answer: " + content);
+
+					return usage == null ?
+							new ChatCompletion(content.toString(), finishReason, 0, 0, false) :
+							new ChatCompletion(content.toString(), finishReason, usage.promptTokens(), usage.completionTokens(), true);
+				});
+	}
+
+	//Private methods
+
+	private HttpRequest buildRequest(final String apiKey,
+									 final String model,
+									 final String systemPrompt,
+									 final String userText,
+									 final double temperature,
+									 final double topP,
+									 final int maxTokens,
+									 final boolean stream)
+	{
+		final JsonWriter writer = new JsonWriter()
+				.beginObject()
+				.name("model").value(model)
+				.name("messages").beginArray()
+					.beginObject().name("role").value(SYSTEM_ROLE).name("content").value(systemPrompt).endObject()
+					.beginObject().name("role").value(USER_ROLE).name("content").value(userText).endObject()
+				.endArray()
+				.name("temperature").value(temperature)
+				.name("top_p").value(topP)
+				.name("max_tokens").value(maxTokens);
+
+		if (stream)
+		{
+			writer.name("stream").value(true)
+					.name("stream_options").beginObject().name("include_usage").value(true).endObject();
+		}
+
+		final String body = writer.endObject().toString();
+
+		MyOwnLogger.append(body);
+
+		return HttpRequest.newBuilder(this.endpoint)
+				.timeout(this.requestTimeout)
+				.header("Content-Type", "application/json")
+				.header("Authorization", "Bearer " + apiKey)
+				.POST(HttpRequest.BodyPublishers.ofString(body))
+				.build();
+	}
+
+	/**
+	 * This function reads the answer of a request directly from the body of the response, without
+	 * building the body as a String.
+	 */
+	private ChatCompletion completionOf(final HttpResponse<InputStream> response)
+	{
+		final Watchdog watchdog = new Watchdog(response.body(), this.requestTimeout);
+
+		try (JsonReader reader = new JsonReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8)))
+		{
+			if (response.statusCode() / 100 != 2)
+			{
+				final String errorBody = new String(response.body().readAllBytes(), StandardCharsets.UTF_8);
+				throw new IOException("Server returned HTTP response code " + response.statusCode() + ": " + errorBody);
+			}
+
+			final ChatCompletion completion = ChatCompletion.read(reader);
+			watchdog.check();
+
+			if (completion.content() == null)
+			{
+				throw new IOException("Answer contains no content.");
+			}
+
+			MyOwnLogger.append("Real answer: " + completion.content());
+			return completion;
+		}
+		catch (IOException e)
+		{
+			throw new CompletionException(watchdog.expired() ? watchdog.timeout() : e);
+		}
+		finally
+		{
+			watchdog.stop();
+		}
+	}
+
+	/**
+	 * HttpRequest.timeout() stops applying once the headers of the response are received, so a body
+	 * that stalls would be awaited forever. A Watchdog closes the body of a response when it has not
+	 * been reset for the request timeout, which cancels the request and makes the thread reading the
+	 * body fail. It is checked once in a while, so that resetting it only costs a volatile write.
+	 */
+	private static final class Watchdog implements Runnable
+	{
+		private final InputStream body;
+		private final long timeout;
+		private volatile long deadline;
+		private volatile boolean stopped;
+		private volatile boolean expired;
+
+		private Watchdog(final InputStream body,
+						 final Duration timeout)
+		{
+			this.body = body;
+			this.timeout = timeout.toNanos();
+			this.reset();
+			this.schedule(this.timeout);
+		}
+
+		private void reset()
+		{
+			this.deadline = System.nanoTime() + this.timeout;
+		}
+
+		private void stop()
+		{
+			this.stopped = true;
+		}
+
+		private boolean expired()
+		{
+			return this.expired;
+		}
+
+		private HttpTimeoutException timeout()
+		{
+			return new HttpTimeoutException("Response body timed out after " + Duration.ofNanos(this.timeout).toSeconds() + " seconds, request cancelled.");
+		}
+
+		/**
+		 * The end of the body can be read as a normal end once it is closed, hence this check.
+		 */
+		private void check() throws HttpTimeoutException
+		{
+			if (this.expired) throw this.timeout();
+		}
+
+		@Override
+		public void run()
+		{
+			if (this.stopped) return;
+
+			final long remaining = this.deadline - System.nanoTime();
+
+			if (remaining > 0)
+			{
+				this.schedule(remaining);
+				return;
+			}
+
+			this.expired = true;
+
+			try
+			{
+				this.body.close();
+			}
+			catch (IOException e)
+			{
+				MyOwnLogger.append("Could not close a timed out response: " + e.getMessage());
+			}
+		}
+
+		private void schedule(final long delay)
+		{
+			CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(this);
+		}
+	}
+}
@@ -5,12 +5,10 @@ import exceptions.ExpectedException;
 import other.MyOwnLogger;
 import refactoring.legacy.exceptions.BadDependencyException;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 public class ChatGPTManager
 {
@@ -137,153 +135,252 @@ public class ChatGPTManager
 	private static final String FINE_TUNED_MODEL_V30_L = "ft:gpt-4o-2024-08-06:personal:inria-nivon-salaun:AmcqjZ5b";
 	private static final String FINE_TUNED_MODEL_V31_L_NO_FORCED_END_EVENTS = "ft:gpt-4o-2024-08-06:personal:inria-nivon-salaun:AmimwWhn";
 	private static final String FINE_TUNED_MODEL_V32_L_NO_FORCED_END_EVENTS = "ft:gpt-4o-2024-08-06:personal:inria-nivon-salaun:AnoT9dYH";
-	private static final String URL = "https://api.openai.com/v1/chat/completions";
-	private static final String REQUEST_METHOD = "POST";
-	private static final String USER_ROLE = "user";
-	private static final String SYSTEM_ROLE = "system";
 	private static final double TEMPERATURE = 0; //Set to 0 so that the model behaves deterministically
 	private static final double TOP_P = 0;
 	private static final double FREQUENCE_PENALTY = 0;
 	private static final double PRESENCE_PENALTY = 0;
 	private static final int MAX_TOKENS = 2048;
+	private static final AnswerCache ANSWER_CACHE = AnswerCache.defaultCache();
+	private static final ChatGPTUsage USAGE = new ChatGPTUsage();
+	private static volatile ChatGPTClient client = new ChatGPTClient();
 
 	private ChatGPTManager()
 	{
 
 	}
 
+	/**
+	 * @param chatGPTClient the client used to send the requests (for instance, a client pointing at a local server)
+	 */
+	public static void setClient(final ChatGPTClient chatGPTClient)
+	{
+		ChatGPTManager.client = chatGPTClient;
+	}
+
+	/**
+	 * @return the numbers of tokens consumed by the requests sent since the start of the JVM
+	 */
+	public static ChatGPTUsage usage()
+	{
+		return USAGE;
+	}
+
 	public static String generateAnswer(final String question,
 										final String apiKey,
 										final boolean tasksNamed) throws ExpectedException
 	{
-		final String textToUse;
+		return ChatGPTManager.generateAnswer(question, apiKey, tasksNamed, null);
+	}
+
+	/**
+	 * @param listener the function called on each fragment of the answer as soon as it is received,
+	 *                 or null if the answer does not need to be streamed
+	 * @see #generateAnswerAsync(String, String, boolean, Consumer)
+	 */
+	public static String generateAnswer(final String question,
+										final String apiKey,
+										final boolean tasksNamed,
+										final Consumer<String> listener) throws ExpectedException
+	{
+		return ChatGPTManager.generateAnswer(question, apiKey, tasksNamed, listener, true);
+	}
+
+	/**
+	 * @param useCache false to send the requests even if their answers are cached (the answers
+	 *                 received are still cached), e.g. to measure the latency of the model
+	 * @see #generateAnswerAsync(String, String, boolean, Consumer)
+	 */
+	public static String generateAnswer(final String question,
+										final String apiKey,
+										final boolean tasksNamed,
+										final Consumer<String> listener,
+										final boolean useCache) throws ExpectedException
+	{
+		try
+		{
+			return ChatGPTManager.generateAnswerAsync(question, apiKey, tasksNamed, listener, useCache).join();
+		}
+		catch (CompletionException e)
+		{
+			if (e.getCause() instanceof ExpectedException)
+			{
+				throw (ExpectedException) e.getCause();
+			}
+			else if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw e;
+		}
+	}
+
+	/**
+	 * This function generates the answer of the given question without blocking the calling thread.
+	 * If the tasks are not named, the question is first rephrased by the formatting model, and the
+	 * rephrased text is then sent to the constraints model.
+	 *
+	 * @param question the textual description to analyse
+	 * @param apiKey the API key used to authenticate the requests
+	 * @param tasksNamed whether the tasks are already named in the description
+	 * @return a future completed with the answer, or failing with an ExpectedException (wrapped in a
+	 * 			CompletionException) if the constraints model could not be reached or its answer is
+	 * 			incomplete (see ChatCompletion.isComplete())
+	 */
+	public static CompletableFuture<String> generateAnswerAsync(final String question,
+																final String apiKey,
+																final boolean tasksNamed)
+	{
+		return ChatGPTManager.generateAnswerAsync(question, apiKey, tasksNamed, null);
+	}
+
+	/**
+	 * This function generates the answer of the given question as generateAnswerAsync(String, String, boolean)
+	 * does, but streams the answer of the constraints model: each of its fragments is given to the
+	 * listener as soon as it is received (see ChatGPTClient.stream()), so that the answer can be
+	 * processed while it is being generated. A cached answer is given to the listener at once.
+	 *
+	 * @param listener the function called on each fragment of the answer, or null if the answer
+	 *                 does not need to be streamed
+	 */
+	public static CompletableFuture<String> generateAnswerAsync(final String question,
+																final String apiKey,
+																final boolean tasksNamed,
+																final Consumer<String> listener)
+	{
+		return ChatGPTManager.generateAnswerAsync(question, apiKey, tasksNamed, listener, true);
+	}
+
+	/**
+	 * @param useCache false to send the requests even if their answers are cached (the answers
+	 *                 received are still cached)
+	 * @see #generateAnswerAsync(String, String, boolean, Consumer)
+	 */
+	public static CompletableFuture<String> generateAnswerAsync(final String question,
+																final String apiKey,
+																final boolean tasksNamed,
+																final Consumer<String> listener,
+																final boolean useCache)
+	{
+		final CompletableFuture<String> textToUse;
 
 		if (tasksNamed)
 		{
-			textToUse = question;
+			textToUse = CompletableFuture.completedFuture(question);
 		}
 		else
 		{
-			final String formattedText = ChatGPTManager.getFormattedTextFromRawText(question, apiKey);
-			textToUse = formattedText.contains("already rephrased") ? question : formattedText;
+			textToUse = ChatGPTManager.getFormattedTextFromRawText(question, apiKey, useCache)
+					.thenApply(formattedText -> formattedText.contains("already rephrased") ? question : formattedText);
 		}
 
-		return ChatGPTManager.getConstraintsFromText(textToUse, apiKey);
+		return textToUse.thenCompose(text -> ChatGPTManager.getConstraintsFromText(text, apiKey, listener, useCache));
 	}
 
 	//Private methods
 
-	private static String getFormattedTextFromRawText(final String rawText,
-													  final String apiKey)
+	private static CompletableFuture<String> getFormattedTextFromRawText(final String rawText,
+																		 final String apiKey,
+																		 final boolean useCache)
 	{
-		try
+		final String key = AnswerCache.key(BASE_MODEL_FOR_FORMATTING, FORMATTING_SYSTEM_BASE_V3, rawText, TEMPERATURE, TOP_P, MAX_TOKENS_FOR_FORMATTING);
+		final String cachedAnswer = useCache ? ANSWER_CACHE.get(key) : null;
+
+		if (cachedAnswer != null)
 		{
-			final URL url = new URL(URL);
-			final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-			connection.setRequestMethod(REQUEST_METHOD);
-			connection.setRequestProperty("Content-Type", "application/json");
-			connection.setRequestProperty("Authorization", "Bearer " + apiKey);
-			connection.setDoOutput(true);
-
-			final String body =
-			"{" +
-				"\"model\": \"" + BASE_MODEL_FOR_FORMATTING + "\"," +
-				"\"messages\":" +
-					"[" +
-						"{\"role\": \"" + SYSTEM_ROLE + "\", \"content\": \"" + FORMATTING_SYSTEM_BASE_V3 + "\"}" + ", " +
-						"{\"role\": \"" + USER_ROLE + "\", \"content\": \"" + rawText + "\"}" +
-					"]," +
-				"\"temperature\": " + TEMPERATURE + ", " +
-				"\"top_p\": " + TOP_P + ", " +
-				"\"max_tokens\": " + MAX_TOKENS_FOR_FORMATTING + /* ", " +
-				"\"frequence_penalty\": " + FREQUENCE_PENALTY + ", " +
-				"\"presence_penalty\": " + PRESENCE_PENALTY + */
-			"}";
-
-			MyOwnLogger.append(body);
-
-			final OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream());
-			writer.write(body);
-			writer.flush();
-			writer.close();
-
-			final BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-			final StringBuilder response = new StringBuilder();
-			String line;
-
-			while ((line = reader.readLine()) != null)
-			{
-				response.append(line);
-			}
+			MyOwnLogger.append("Cached answer: " + cachedAnswer);
+			return CompletableFuture.completedFuture(cachedAnswer);
+		}
 
-			reader.close();
+		return client.complete(apiKey, BASE_MODEL_FOR_FORMATTING, FORMATTING_SYSTEM_BASE_V3, rawText, TEMPERATURE, TOP_P, MAX_TOKENS_FOR_FORMATTING)
+				.handle((completion, throwable) ->
+				{
+					if (throwable != null)
+					{
+						throw new CompletionException(new IllegalStateException(ChatGPTManager.causeOf(throwable)));
+					}
 
-			System.out.println("Real answer: " + response);
-			MyOwnLogger.append("Real answer: " + response);
+					USAGE.record(BASE_MODEL_FOR_FORMATTING, completion);
 
-			final int startIndex = response.indexOf("content") + 11;
-			final int endIndex = response.indexOf("\"", startIndex);
+					if (!completion.isComplete())
+					{
+						throw new CompletionException(new IllegalStateException(ChatGPTManager.incompleteAnswerMessage(completion)));
+					}
 
-			final String parseableResponse = response.substring(startIndex, endIndex);
-			return parseableResponse;
-			//return parseableResponse.substring(parseableResponse.indexOf("Rephrased Text:") + 15);
-		}
-		catch (IOException e)
-		{
-			throw new IllegalStateException(e);
-		}
+					ANSWER_CACHE.put(key, completion.content());
+					return completion.content();
+				});
 	}
 
-	private static String getConstraintsFromText(final String text,
-												 final String apiKey) throws ExpectedException
+	private static CompletableFuture<String> getConstraintsFromText(final String text,
+																	final String apiKey,
+																	final Consumer<String> listener,
+																	final boolean useCache)
 	{
-		try
+		final String key = AnswerCache.key(FINE_TUNED_MODEL_V32_L_NO_FORCED_END_EVENTS, SYSTEM_BASE_V2_CLEAN, text, TEMPERATURE, TOP_P, MAX_TOKENS);
+		final String cachedAnswer = useCache ? ANSWER_CACHE.get(key) : null;
+
+		if (cachedAnswer != null)
 		{
-			final URL url = new URL(URL);
-			final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-			connection.setRequestMethod(REQUEST_METHOD);
-			connection.setRequestProperty("Content-Type", "application/json");
-			connection.setRequestProperty("Authorization", "Bearer " + apiKey);
-			connection.setDoOutput(true);
-
-			final String body = "{\"model\": \"" + FINE_TUNED_MODEL_V32_L_NO_FORCED_END_EVENTS + "\"," +
-					"\"messages\": [" +
-					"{\"role\": \"" + SYSTEM_ROLE + "\", \"content\": \"" + SYSTEM_BASE_V2_CLEAN + "\"}" + ", " +
-					"{\"role\": \"" + USER_ROLE + "\", \"content\": \"" + text + "\"}" +
-					"]," +
-					"\"temperature\": " + TEMPERATURE + ", " +
-					"\"top_p\": " + TOP_P + ", " +
-					"\"max_tokens\": " + MAX_TOKENS +
-					"}";
-
-			MyOwnLogger.append(body);
-
-			final OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream());
-			writer.write(body);
-			writer.flush();
-			writer.close();
-
-			final BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-			final StringBuilder response = new StringBuilder();
-			String line;
-
-			while ((line = reader.readLine()) != null)
-			{
-				response.append(line);
-			}
+			if (listener != null) listener.accept(cachedAnswer);
+			return CompletableFuture.completedFuture(cachedAnswer);
+		}
 
-			reader.close();
+		final CompletableFuture<ChatCompletion> answer = listener == null ?
+				client.complete(apiKey, FINE_TUNED_MODEL_V32_L_NO_FORCED_END_EVENTS, SYSTEM_BASE_V2_CLEAN, text, TEMPERATURE, TOP_P, MAX_TOKENS) :
+				client.stream(apiKey, FINE_TUNED_MODEL_V32_L_NO_FORCED_END_EVENTS, SYSTEM_BASE_V2_CLEAN, text, TEMPERATURE, TOP_P, MAX_TOKENS,
+						fragment -> listener.accept(ChatGPTManager.toAnswerFormat(fragment)));
+
+		return answer
+				.handle((completion, throwable) ->
+				{
+					if (throwable != null)
+					{
+						final Throwable cause = ChatGPTManager.causeOf(throwable);
+
+						if (cause instanceof IOException)
+						{
+							throw new CompletionException(new ExpectedException((IOException) cause, ExceptionStatus.CHATGPT_IO));
+						}
+
+						throw new CompletionException(cause);
+					}
+
+					USAGE.record(FINE_TUNED_MODEL_V32_L_NO_FORCED_END_EVENTS, completion);
+
+					if (!completion.isComplete())
+					{
+						throw new CompletionException(new ExpectedException(ChatGPTManager.incompleteAnswerMessage(completion), ExceptionStatus.CHATGPT_IO));
+					}
+
+					final String constraints = ChatGPTManager.toAnswerFormat(completion.content());
+					ANSWER_CACHE.put(key, constraints);
+					return constraints;
+				});
+	}
 
-			//System.out.println("Real answer: " + response);
+	/**
+	 * The conversion of answers to ASTs (see AnswerToAST) expects their line breaks to be written
+	 * as in the JSON answers of the API, that is, as the two characters '\' and 'n'.
+	 */
+	private static String toAnswerFormat(final String content)
+	{
+		return content.replace("\n", "\\n");
+	}
 
-			final int startIndex = response.indexOf("content") + 11;
-			final int endIndex = response.indexOf("\"", startIndex);
+	/**
+	 * Incomplete answers (cut at the maximal number of tokens, filtered, or empty) are neither
+	 * converted nor cached, so that the request is sent again next time.
+	 */
+	private static String incompleteAnswerMessage(final ChatCompletion completion)
+	{
+		return completion.content() == null || completion.content().isEmpty() ?
+				"The answer of the model is empty (finish reason: " + completion.finishReason() + ")." :
+				"The answer of the model is incomplete (finish reason: " + completion.finishReason() + ").";
+	}
 
-			return response.substring(startIndex, endIndex);
-		}
-		catch (IOException e)
-		{
-			throw new ExpectedException(e, ExceptionStatus.CHATGPT_IO);
-		}
+	private static Throwable causeOf(final Throwable throwable)
+	{
+		return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
 	}
 }
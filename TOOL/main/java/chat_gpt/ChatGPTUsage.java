@@ -0,0 +1,96 @@
+package chat_gpt;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The numbers of requests and of tokens consumed by the requests sent to each model, as reported
+ * by the usage field of the answers of the API. They are the basis of the cost of a run, since the
+ * API bills the prompt and completion tokens of each model.
+ * Requests can be recorded by several threads at the same time.
+ */
+public class ChatGPTUsage
+{
+	private static final int REQUESTS = 0;
+	private static final int PROMPT_TOKENS = 1;
+	private static final int COMPLETION_TOKENS = 2;
+	private final ConcurrentHashMap<String, AtomicLongArray> usagePerModel;
+
+	public ChatGPTUsage()
+	{
+		this.usagePerModel = new ConcurrentHashMap<>();
+	}
+
+	public void record(final String model,
+					   final ChatCompletion completion)
+	{
+		final AtomicLongArray usage = this.usagePerModel.computeIfAbsent(model, m -> new AtomicLongArray(3));
+		usage.incrementAndGet(REQUESTS);
+		usage.addAndGet(PROMPT_TOKENS, completion.promptTokens());
+		usage.addAndGet(COMPLETION_TOKENS, completion.completionTokens());
+	}
+
+	public long requests()
+	{
+		return this.total(REQUESTS);
+	}
+
+	public long promptTokens()
+	{
+		return this.total(PROMPT_TOKENS);
+	}
+
+	public long completionTokens()
+	{
+		return this.total(COMPLETION_TOKENS);
+	}
+
+	public long promptTokensOf(final String model)
+	{
+		final AtomicLongArray usage = this.usagePerModel.get(model);
+		return usage == null ? 0 : usage.get(PROMPT_TOKENS);
+	}
+
+	public long completionTokensOf(final String model)
+	{
+		final AtomicLongArray usage = this.usagePerModel.get(model);
+		return usage == null ? 0 : usage.get(COMPLETION_TOKENS);
+	}
+
+	//Private methods
+
+	private long total(final int index)
+	{
+		long total = 0;
+
+		for (AtomicLongArray usage : this.usagePerModel.values())
+		{
+			total += usage.get(index);
+		}
+
+		return total;
+	}
+
+	//Override
+
+	@Override
+	public String toString()
+	{
+		final StringBuilder builder = new StringBuilder("ChatGPT usage: ")
+				.append(this.requests()).append(" request(s), ")
+				.append(this.promptTokens()).append(" prompt token(s), ")
+				.append(this.completionTokens()).append(" completion token(s).");
+
+		for (Map.Entry<String, AtomicLongArray> entry : new TreeMap<>(this.usagePerModel).entrySet())
+		{
+			builder.append("\n    - ").append(entry.getKey()).append(": ")
+					.append(entry.getValue().get(REQUESTS)).append(" request(s), ")
+					.append(entry.getValue().get(PROMPT_TOKENS)).append(" prompt token(s), ")
+					.append(entry.getValue().get(COMPLETION_TOKENS)).append(" completion token(s)");
+		}
+
+		return builder.toString();
+	}
+}
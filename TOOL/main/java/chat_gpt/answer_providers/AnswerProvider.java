@@ -0,0 +1,27 @@
+package chat_gpt.answer_providers;
+
+import exceptions.ExpectedException;
+
+import java.util.function.Consumer;
+
+/**
+ * An answer provider gives the answer (the constraints between the tasks, one per line) to a
+ * textual description. The answer may come from the model (see LiveAnswerProvider), be handwritten,
+ * or be replayed from a log of previous answers (see RecordingAnswerProvider and ReplayingAnswerProvider),
+ * so that the rest of the pipeline does not depend on the network.
+ */
+public interface AnswerProvider
+{
+	/**
+	 * @param question the textual description to analyse
+	 * @param apiKey the API key used to authenticate the requests, if any
+	 * @param tasksNamed whether the tasks are already named in the description
+	 * @param listener the function called on each fragment of the answer as soon as it is available,
+	 *                 or null if the answer does not need to be streamed
+	 * @return the whole answer
+	 */
+	String answer(String question,
+				  String apiKey,
+				  boolean tasksNamed,
+				  Consumer<String> listener) throws ExpectedException;
+}
@@ -0,0 +1,68 @@
+package chat_gpt.answer_providers;
+
+import chat_gpt.ast_management.constants.AnswerType;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * This class builds the answer provider of each type of answer.
+ * The type, the answer log and the latency factor of replays can be chosen when starting the tool
+ * with the system properties "answer.type" (e.g., -Danswer.type=REPLAYED), "answer.log" and
+ * "answer.latency" (see ReplayingAnswerProvider).
+ */
+public class AnswerProviders
+{
+	private static final String TYPE_PROPERTY = "answer.type";
+	private static final String LOG_PROPERTY = "answer.log";
+	private static final String LATENCY_PROPERTY = "answer.latency";
+	private static final String DEFAULT_LOG = "answers.log";
+
+	private AnswerProviders()
+	{
+
+	}
+
+	/**
+	 * @param type the type of the answers
+	 * @param log the answer log written by RECORDED_CHAT_GPT and read by REPLAYED
+	 * @param latencyFactor the factor applied to the recorded latencies by REPLAYED
+	 * @return the provider of the answers of the given type
+	 */
+	public static AnswerProvider create(final AnswerType type,
+										final File log,
+										final double latencyFactor) throws IOException
+	{
+		switch (type)
+		{
+			case HANDWRITTEN:
+				return new HandwrittenAnswerProvider();
+			case CHAT_GPT:
+				return new LiveAnswerProvider();
+			case RECORDED_CHAT_GPT:
+				//Cached answers would be recorded with no latency, and replayed faster than the model answers
+				return new RecordingAnswerProvider(new LiveAnswerProvider(false), log);
+			case REPLAYED:
+				return new ReplayingAnswerProvider(log, latencyFactor);
+			default:
+				throw new IllegalStateException("Unsupported answer type " + type + ".");
+		}
+	}
+
+	/**
+	 * @param defaultType the type of the answers if the "answer.type" property is not set
+	 * @return the provider chosen by the system properties
+	 */
+	public static AnswerProvider fromSystemProperties(final AnswerType defaultType) throws IOException
+	{
+		final String type = System.getProperty(TYPE_PROPERTY);
+		final String log = System.getProperty(LOG_PROPERTY, DEFAULT_LOG);
+		final String latencyFactor = System.getProperty(LATENCY_PROPERTY, "0");
+
+		return AnswerProviders.create(
+			type == null ? defaultType : AnswerType.valueOf(type.trim().toUpperCase()),
+			new File(log),
+			Double.parseDouble(latencyFactor)
+		);
+	}
+}
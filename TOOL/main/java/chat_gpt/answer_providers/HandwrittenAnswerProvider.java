@@ -0,0 +1,23 @@
+package chat_gpt.answer_providers;
+
+import chat_gpt.tests.Expressions;
+
+import java.util.function.Consumer;
+
+/**
+ * This provider ignores the question and gives the handwritten expression currently used for
+ * testing (see Expressions.getExpressionToUse()).
+ */
+public class HandwrittenAnswerProvider implements AnswerProvider
+{
+	@Override
+	public String answer(final String question,
+						 final String apiKey,
+						 final boolean tasksNamed,
+						 final Consumer<String> listener)
+	{
+		final String answer = Expressions.getExpressionToUse();
+		if (listener != null) listener.accept(answer);
+		return answer;
+	}
+}
@@ -0,0 +1,37 @@
+package chat_gpt.answer_providers;
+
+import chat_gpt.ChatGPTManager;
+import exceptions.ExpectedException;
+
+import java.util.function.Consumer;
+
+/**
+ * This provider asks the model for the answer (see ChatGPTManager.generateAnswer()).
+ */
+public class LiveAnswerProvider implements AnswerProvider
+{
+	private final boolean useCache;
+
+	public LiveAnswerProvider()
+	{
+		this(true);
+	}
+
+	/**
+	 * @param useCache false to always ask the model, even if the answer is cached (see AnswerCache),
+	 *                 so that the time taken to produce each answer is the latency of the model
+	 */
+	public LiveAnswerProvider(final boolean useCache)
+	{
+		this.useCache = useCache;
+	}
+
+	@Override
+	public String answer(final String question,
+						 final String apiKey,
+						 final boolean tasksNamed,
+						 final Consumer<String> listener) throws ExpectedException
+	{
+		return ChatGPTManager.generateAnswer(question, apiKey, tasksNamed, listener, this.useCache);
+	}
+}
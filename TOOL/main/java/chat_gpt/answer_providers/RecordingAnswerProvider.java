@@ -0,0 +1,219 @@
+package chat_gpt.answer_providers;
+
+import exceptions.ExceptionStatus;
+import exceptions.ExpectedException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * This provider gives the answers of another provider (usually a LiveAnswerProvider not using the
+ * answer cache, whose answers would be recorded with no latency), and records each of them in a
+ * compact binary log, read by ReplayingAnswerProvider.
+ * The log starts with the MAGIC header, followed by one record per answer: the ANSWER tag, whether
+ * the tasks were named (boolean), the time taken to produce the answer in nanoseconds (long), the
+ * question and the answer (each as its length in bytes (int), at most MAX_STRING_LENGTH, followed
+ * by its UTF-8 bytes).
+ * The API key is never recorded. If the log already exists, the new records are appended to it,
+ * after its last complete record: a record left incomplete by a previous run is dropped.
+ */
+public class RecordingAnswerProvider implements AnswerProvider, Closeable
+{
+	static final String MAGIC = "BPMNANSWERS1";
+	static final byte ANSWER = 0;
+	static final int MAX_STRING_LENGTH = 1 << 24;
+	private final AnswerProvider delegate;
+	private final DataOutputStream out;
+
+	public RecordingAnswerProvider(final AnswerProvider delegate,
+								   final File log) throws IOException
+	{
+		this.delegate = delegate;
+		final boolean append = log.isFile() && log.length() > 0;
+
+		if (append)
+		{
+			final long completeLength;
+
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(log))))
+			{
+				completeLength = RecordingAnswerProvider.completeLength(in, log);
+			}
+
+			if (completeLength < log.length())
+			{
+				try (RandomAccessFile file = new RandomAccessFile(log, "rw"))
+				{
+					file.setLength(completeLength);
+				}
+			}
+		}
+
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(log, append)));
+
+		if (!append)
+		{
+			this.out.writeUTF(MAGIC);
+			this.out.flush();
+		}
+	}
+
+	@Override
+	public String answer(final String question,
+						 final String apiKey,
+						 final boolean tasksNamed,
+						 final Consumer<String> listener) throws ExpectedException
+	{
+		final long startTime = System.nanoTime();
+		final String answer = this.delegate.answer(question, apiKey, tasksNamed, listener);
+		final long latency = System.nanoTime() - startTime;
+
+		try
+		{
+			this.record(question, tasksNamed, latency, answer);
+		}
+		catch (IOException e)
+		{
+			throw new ExpectedException(e, ExceptionStatus.FILE_GENERATION_FAILED);
+		}
+
+		return answer;
+	}
+
+	//Private methods
+
+	/**
+	 * Records are flushed one by one, so that the log is complete even if the tool is not closed properly.
+	 */
+	private synchronized void record(final String question,
+									 final boolean tasksNamed,
+									 final long latency,
+									 final String answer) throws IOException
+	{
+		//Both strings are checked before any byte of the record is written, so that a rejected record leaves nothing
+		//behind to be flushed with the next one
+		final byte[] questionBytes = RecordingAnswerProvider.encode(question);
+		final byte[] answerBytes = RecordingAnswerProvider.encode(answer);
+
+		this.out.writeByte(ANSWER);
+		this.out.writeBoolean(tasksNamed);
+		this.out.writeLong(latency);
+		RecordingAnswerProvider.writeBytes(this.out, questionBytes);
+		RecordingAnswerProvider.writeBytes(this.out, answerBytes);
+		this.out.flush();
+	}
+
+	/**
+	 * Strings are not written with writeUTF(), which is limited to 65535 bytes.
+	 */
+	private static byte[] encode(final String string) throws IOException
+	{
+		final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+		if (bytes.length > MAX_STRING_LENGTH) throw new IOException("String too long to be recorded (" + bytes.length + " bytes).");
+
+		return bytes;
+	}
+
+	private static void writeBytes(final DataOutputStream out,
+								   final byte[] bytes) throws IOException
+	{
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * This function reads the records of a log without building them.
+	 *
+	 * @return the length in bytes of the header and the complete records of the log
+	 */
+	private static long completeLength(final DataInputStream in,
+									   final File log) throws IOException
+	{
+		final String magic;
+
+		try
+		{
+			magic = in.readUTF();
+		}
+		catch (EOFException e)
+		{
+			throw new IOException("File \"" + log + "\" is not an answer log.");
+		}
+
+		if (!MAGIC.equals(magic))
+		{
+			throw new IOException("File \"" + log + "\" is not an answer log.");
+		}
+
+		long length = 2 + magic.getBytes(StandardCharsets.UTF_8).length;
+
+		while (true)
+		{
+			final int tag = in.read();
+
+			if (tag < 0)
+			{
+				return length;
+			}
+			else if (tag != ANSWER)
+			{
+				throw new IOException("Corrupted answer log \"" + log + "\": unknown record " + tag);
+			}
+
+			try
+			{
+				in.readBoolean();
+				in.readLong();
+				final int questionLength = RecordingAnswerProvider.skipString(in);
+				final int answerLength = RecordingAnswerProvider.skipString(in);
+				final long recordLength = 1 + 1 + 8 + 4 + questionLength + 4 + answerLength;
+
+				//Files can be skipped beyond their end without EOFException
+				if (length + recordLength > log.length()) return length;
+
+				length += recordLength;
+			}
+			catch (EOFException e)
+			{
+				//The last record was not completely written
+				return length;
+			}
+		}
+	}
+
+	private static int skipString(final DataInputStream in) throws IOException
+	{
+		final int length = RecordingAnswerProvider.readLength(in);
+		in.skipNBytes(length);
+		return length;
+	}
+
+	static int readLength(final DataInputStream in) throws IOException
+	{
+		final int length = in.readInt();
+
+		if (length < 0 || length > MAX_STRING_LENGTH) throw new IOException("Corrupted answer log: invalid length " + length);
+
+		return length;
+	}
+
+	//Override
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		this.out.close();
+	}
+}
@@ -0,0 +1,212 @@
+package chat_gpt.answer_providers;
+
+import exceptions.ExceptionStatus;
+import exceptions.ExpectedException;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * This provider gives the answers recorded in a log written by RecordingAnswerProvider, without any
+ * network access. A question is answered with the last answer recorded for it.
+ * The time taken to produce each answer when it was recorded can be simulated: the provider then
+ * waits for this time multiplied by the latency factor (0 to answer at full speed, 1 to answer as
+ * slowly as when recording). When the answer is streamed, this time is spread over its lines, so
+ * that the streamed conversion of the answer (see StreamingAnswerToAST) behaves as with the model.
+ */
+public class ReplayingAnswerProvider implements AnswerProvider
+{
+	private static final String LINE_SEPARATOR = "\\n";
+	private final HashMap<Question, Record> records;
+	private final List<String> questions;
+	private final double latencyFactor;
+
+	public ReplayingAnswerProvider(final File log,
+								   final double latencyFactor) throws IOException
+	{
+		this(new FileInputStream(log), latencyFactor);
+	}
+
+	/**
+	 * @param log the stream of the log, closed once read
+	 * @param latencyFactor the factor applied to the recorded latencies
+	 */
+	public ReplayingAnswerProvider(final InputStream log,
+								   final double latencyFactor) throws IOException
+	{
+		if (latencyFactor < 0)
+		{
+			throw new IllegalArgumentException("The latency factor must be positive (got " + latencyFactor + ").");
+		}
+
+		this.records = new HashMap<>();
+		this.questions = new ArrayList<>();
+		this.latencyFactor = latencyFactor;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(log)))
+		{
+			this.read(in);
+		}
+	}
+
+	/**
+	 * @return the recorded questions, in the order in which they were recorded (with repetitions),
+	 * 			which gives a realistic mix of questions to replay
+	 */
+	public List<String> questions()
+	{
+		return Collections.unmodifiableList(this.questions);
+	}
+
+	@Override
+	public String answer(final String question,
+						 final String apiKey,
+						 final boolean tasksNamed,
+						 final Consumer<String> listener) throws ExpectedException
+	{
+		final Record record = this.records.get(new Question(question, tasksNamed));
+
+		if (record == null)
+		{
+			throw new ExpectedException("No answer was recorded for question \"" + question + "\".", ExceptionStatus.CHATGPT_IO);
+		}
+
+		final long latency = (long) (record.latency * this.latencyFactor);
+
+		if (listener == null)
+		{
+			ReplayingAnswerProvider.sleep(latency);
+			return record.answer;
+		}
+
+		int lineStart = 0;
+
+		while (lineStart < record.answer.length())
+		{
+			final int separatorIndex = record.answer.indexOf(LINE_SEPARATOR, lineStart);
+			final int lineEnd = separatorIndex == -1 ? record.answer.length() : separatorIndex + LINE_SEPARATOR.length();
+			ReplayingAnswerProvider.sleep(latency * (lineEnd - lineStart) / record.answer.length());
+			listener.accept(record.answer.substring(lineStart, lineEnd));
+			lineStart = lineEnd;
+		}
+
+		return record.answer;
+	}
+
+	//Private methods
+
+	private void read(final DataInputStream in) throws IOException
+	{
+		if (!RecordingAnswerProvider.MAGIC.equals(in.readUTF()))
+		{
+			throw new IOException("Not an answer log");
+		}
+
+		while (true)
+		{
+			final int tag = in.read();
+
+			if (tag < 0)
+			{
+				return;
+			}
+			else if (tag == RecordingAnswerProvider.ANSWER)
+			{
+				try
+				{
+					final boolean tasksNamed = in.readBoolean();
+					final long latency = in.readLong();
+					final String question = ReplayingAnswerProvider.readString(in);
+					final String answer = ReplayingAnswerProvider.readString(in);
+					this.records.put(new Question(question, tasksNamed), new Record(answer, latency));
+					this.questions.add(question);
+				}
+				catch (EOFException e)
+				{
+					//The last record was not completely written: it is ignored
+					return;
+				}
+			}
+			else
+			{
+				throw new IOException("Corrupted answer log: unknown record " + tag);
+			}
+		}
+	}
+
+	private static String readString(final DataInputStream in) throws IOException
+	{
+		final int length = RecordingAnswerProvider.readLength(in);
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void sleep(final long nanoseconds)
+	{
+		if (nanoseconds <= 0) return;
+
+		try
+		{
+			Thread.sleep(nanoseconds / 1_000_000, (int) (nanoseconds % 1_000_000));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static class Question
+	{
+		private final String question;
+		private final boolean tasksNamed;
+
+		private Question(final String question,
+						 final boolean tasksNamed)
+		{
+			this.question = question;
+			this.tasksNamed = tasksNamed;
+		}
+
+		@Override
+		public boolean equals(final Object o)
+		{
+			if (!(o instanceof Question)) return false;
+
+			final Question other = (Question) o;
+			return this.tasksNamed == other.tasksNamed
+					&& this.question.equals(other.question);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(this.question, this.tasksNamed);
+		}
+	}
+
+	private static class Record
+	{
+		private final String answer;
+		private final long latency;
+
+		private Record(final String answer,
+					   final long latency)
+		{
+			this.answer = answer;
+			this.latency = latency;
+		}
+	}
+}
@@ -370,7 +370,7 @@ public class AnswerToAST
 		}
 	}
 
-	private static String correctLine(final String line)
+	static String correctLine(final String line)
 	{
 		final StringBuilder builder = new StringBuilder();
 
@@ -0,0 +1,196 @@
+package chat_gpt.ast_management;
+
+import exceptions.ExceptionStatus;
+import exceptions.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+/**
+ * This class converts an answer to abstract syntax trees while the answer is being received.
+ * The answer is given fragment by fragment to accept(), and each of its lines is converted (see
+ * AnswerToAST.convert()) as soon as it is known to be complete and to belong to the part of the
+ * answer that AnswerToAST.convertAnswerToConstraints() would convert. The resulting trees are
+ * thus the same as those of AnswerToAST.convertAnswerToConstraints() on the whole answer, in the
+ * same order, but each of them is handed to the listener while the rest of the answer is still
+ * being generated.
+ * As in AnswerToAST, lines are separated by the two characters '\' and 'n' (the answer is not
+ * unescaped), and only the first block of lines (delimited by an empty line) containing constraints
+ * is converted.
+ * Fragments must be given by one thread at a time, in order.
+ */
+public class StreamingAnswerToAST
+{
+	private static final String LINE_SEPARATOR = "\\n";
+	private static final String BLOCK_SEPARATOR = "\\n\\n";
+	private final StringBuilder answer;
+	private final ArrayList<AbstractSyntaxTree> trees;
+	private final HashMap<String, AbstractSyntaxNode> tasks;
+	private final int[] nbEndEvents;
+	private final Consumer<AbstractSyntaxTree> listener;
+	private int regionStart;
+	private int lineStart;
+	private boolean closed;
+
+	public StreamingAnswerToAST()
+	{
+		this(tree -> {});
+	}
+
+	/**
+	 * @param listener the function called on each tree as soon as it has been generated
+	 */
+	public StreamingAnswerToAST(final Consumer<AbstractSyntaxTree> listener)
+	{
+		this.answer = new StringBuilder();
+		this.trees = new ArrayList<>();
+		this.tasks = new HashMap<>();
+		this.nbEndEvents = new int[]{0};
+		this.listener = listener;
+		this.regionStart = -1;
+		this.lineStart = -1;
+		this.closed = false;
+	}
+
+	/**
+	 * This function appends a fragment to the answer and converts the lines that it completes.
+	 *
+	 * @param fragment the next fragment of the answer
+	 */
+	public void accept(final String fragment)
+	{
+		if (this.closed) return;
+
+		this.answer.append(fragment);
+		this.advance(false);
+	}
+
+	/**
+	 * This function converts the lines remaining once the whole answer has been received.
+	 *
+	 * @return the trees generated from the answer, in the order of its lines
+	 * @throws ExpectedException if the answer does not contain any line separator
+	 */
+	public ArrayList<AbstractSyntaxTree> finish() throws ExpectedException
+	{
+		if (!this.closed)
+		{
+			if (this.answer.indexOf(LINE_SEPARATOR) == -1)
+			{
+				throw new ExpectedException("No '\\n\\n' found in the answer.", ExceptionStatus.NON_PARSABLE_ANSWER);
+			}
+
+			this.advance(true);
+		}
+
+		return this.trees;
+	}
+
+	public ArrayList<AbstractSyntaxTree> trees()
+	{
+		return this.trees;
+	}
+
+	//Private methods
+
+	private void advance(final boolean ended)
+	{
+		if (this.regionStart == -1
+			&& !this.locateRegion(ended))
+		{
+			return;
+		}
+
+		while (!this.closed)
+		{
+			final int lineEnd = this.answer.indexOf(LINE_SEPARATOR, this.lineStart);
+
+			if (lineEnd == -1)
+			{
+				if (ended)
+				{
+					this.convert(this.answer.substring(this.lineStart));
+					this.closed = true;
+				}
+
+				return;
+			}
+
+			if (!ended
+				&& this.answer.length() < lineEnd + BLOCK_SEPARATOR.length())
+			{
+				//We cannot know yet whether this line ends the block
+				return;
+			}
+
+			final boolean endsBlock = this.answer.indexOf(BLOCK_SEPARATOR, lineEnd) == lineEnd;
+			this.convert(this.answer.substring(this.lineStart, lineEnd));
+			this.lineStart = lineEnd + LINE_SEPARATOR.length();
+			this.closed = endsBlock;
+		}
+	}
+
+	/**
+	 * This function locates the beginning of the part of the answer to convert, as done by
+	 * AnswerToAST.convertAnswerToConstraints(): if the first line contains constraints, the
+	 * answer is converted from its beginning; otherwise, if the answer contains an empty line,
+	 * its first block is converted if it contains constraints, and its second block otherwise;
+	 * otherwise, the answer is converted from its second line.
+	 *
+	 * @return true if the beginning of the part to convert is known
+	 */
+	private boolean locateRegion(final boolean ended)
+	{
+		final int firstLineEnd = this.answer.indexOf(LINE_SEPARATOR);
+
+		if (firstLineEnd == -1) return false;
+
+		if (StreamingAnswerToAST.containsConstraints(this.answer.substring(0, firstLineEnd)))
+		{
+			this.regionStart = 0;
+		}
+		else
+		{
+			final int firstBlockEnd = this.answer.indexOf(BLOCK_SEPARATOR);
+
+			if (firstBlockEnd != -1)
+			{
+				this.regionStart = StreamingAnswerToAST.containsConstraints(this.answer.substring(0, firstBlockEnd)) ? 0 : firstBlockEnd + BLOCK_SEPARATOR.length();
+			}
+			else if (ended)
+			{
+				this.regionStart = firstLineEnd + LINE_SEPARATOR.length();
+			}
+			else
+			{
+				//The first line may still belong to a block containing constraints
+				return false;
+			}
+		}
+
+		this.lineStart = this.regionStart;
+		return true;
+	}
+
+	private void convert(final String line)
+	{
+		final AbstractSyntaxTree tree = AnswerToAST.convert(AnswerToAST.correctLine(line), this.tasks, this.nbEndEvents);
+
+		if (tree != null)
+		{
+			this.trees.add(tree);
+			this.listener.accept(tree);
+		}
+	}
+
+	private static boolean containsConstraints(final String text)
+	{
+		return text.contains("<")
+				|| text.contains("|")
+				|| text.contains("&")
+				|| text.contains("+")
+				|| text.contains("?")
+				|| text.contains(",");
+	}
+}
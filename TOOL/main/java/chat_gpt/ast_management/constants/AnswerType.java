@@ -3,5 +3,7 @@ package chat_gpt.ast_management.constants;
 public enum AnswerType
 {
 	HANDWRITTEN,
-	CHAT_GPT
+	CHAT_GPT,
+	RECORDED_CHAT_GPT,
+	REPLAYED
 }
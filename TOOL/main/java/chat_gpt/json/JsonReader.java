@@ -0,0 +1,520 @@
+package chat_gpt.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A streaming pull parser of JSON documents.
+ * The document is read from a Reader through a fixed-size buffer, one token at a time (see peek()),
+ * so that it never has to be held entirely in memory: the caller walks the structure with
+ * beginObject(), nextName(), nextString(), etc., and skips the values it does not need with
+ * skipValue(), which does not build them.
+ * Malformed documents make the functions of the parser throw an IOException.
+ */
+public class JsonReader implements Closeable
+{
+	private static final int BUFFER_SIZE = 8192;
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_OBJECT = 2;
+	private static final int DANGLING_NAME = 3;
+	private static final int NONEMPTY_OBJECT = 4;
+	private static final int EMPTY_ARRAY = 5;
+	private static final int NONEMPTY_ARRAY = 6;
+	private final Reader reader;
+	private final char[] buffer;
+	private final StringBuilder scratch;
+	private int position;
+	private int limit;
+	private int[] scopes;
+	private int depth;
+	private JsonToken peeked;
+
+	public JsonReader(final Reader reader)
+	{
+		this.reader = reader;
+		this.buffer = new char[BUFFER_SIZE];
+		this.scratch = new StringBuilder();
+		this.position = 0;
+		this.limit = 0;
+		this.scopes = new int[16];
+		this.scopes[0] = EMPTY_DOCUMENT;
+		this.depth = 1;
+		this.peeked = null;
+	}
+
+	/**
+	 * @return the type of the next token of the document, without consuming it
+	 */
+	public JsonToken peek() throws IOException
+	{
+		if (this.peeked != null)
+		{
+			return this.peeked;
+		}
+
+		final int scope = this.scopes[this.depth - 1];
+		int c;
+
+		switch (scope)
+		{
+			case EMPTY_ARRAY:
+			case NONEMPTY_ARRAY:
+				this.scopes[this.depth - 1] = NONEMPTY_ARRAY;
+				c = this.nextNonWhitespace();
+
+				if (c == ']')
+				{
+					return this.peeked = JsonToken.END_ARRAY;
+				}
+
+				if (scope == NONEMPTY_ARRAY)
+				{
+					if (c != ',') throw this.syntaxError("Expected ',' or ']'");
+					c = this.nextNonWhitespace();
+				}
+
+				return this.peeked = this.valueToken(c);
+			case EMPTY_OBJECT:
+			case NONEMPTY_OBJECT:
+				c = this.nextNonWhitespace();
+
+				if (c == '}')
+				{
+					return this.peeked = JsonToken.END_OBJECT;
+				}
+
+				if (scope == NONEMPTY_OBJECT)
+				{
+					if (c != ',') throw this.syntaxError("Expected ',' or '}'");
+					c = this.nextNonWhitespace();
+				}
+
+				if (c != '"') throw this.syntaxError("Expected a name");
+
+				this.scopes[this.depth - 1] = DANGLING_NAME;
+				return this.peeked = JsonToken.NAME;
+			case DANGLING_NAME:
+				if (this.nextNonWhitespace() != ':') throw this.syntaxError("Expected ':'");
+
+				this.scopes[this.depth - 1] = NONEMPTY_OBJECT;
+				return this.peeked = this.valueToken(this.nextNonWhitespace());
+			case EMPTY_DOCUMENT:
+				this.scopes[this.depth - 1] = NONEMPTY_DOCUMENT;
+				return this.peeked = this.valueToken(this.nextNonWhitespace());
+			default:
+				if (this.nextNonWhitespace() != -1) throw this.syntaxError("Expected the end of the document");
+
+				return this.peeked = JsonToken.END_DOCUMENT;
+		}
+	}
+
+	/**
+	 * @return true if the current object or array has another element
+	 */
+	public boolean hasNext() throws IOException
+	{
+		final JsonToken token = this.peek();
+		return token != JsonToken.END_OBJECT
+				&& token != JsonToken.END_ARRAY
+				&& token != JsonToken.END_DOCUMENT;
+	}
+
+	public void beginObject() throws IOException
+	{
+		this.expect(JsonToken.BEGIN_OBJECT);
+		this.push(EMPTY_OBJECT);
+	}
+
+	public void endObject() throws IOException
+	{
+		this.expect(JsonToken.END_OBJECT);
+		this.depth--;
+	}
+
+	public void beginArray() throws IOException
+	{
+		this.expect(JsonToken.BEGIN_ARRAY);
+		this.push(EMPTY_ARRAY);
+	}
+
+	public void endArray() throws IOException
+	{
+		this.expect(JsonToken.END_ARRAY);
+		this.depth--;
+	}
+
+	public String nextName() throws IOException
+	{
+		this.expect(JsonToken.NAME);
+		return this.readString();
+	}
+
+	/**
+	 * @return the next string of the document, unescaped (numbers are returned as written)
+	 */
+	public String nextString() throws IOException
+	{
+		final JsonToken token = this.peek();
+
+		if (token == JsonToken.NUMBER)
+		{
+			this.peeked = null;
+			return this.readLiteral();
+		}
+
+		this.expect(JsonToken.STRING);
+		return this.readString();
+	}
+
+	public long nextLong() throws IOException
+	{
+		this.expect(JsonToken.NUMBER);
+		final String literal = this.readLiteral();
+
+		try
+		{
+			return Long.parseLong(literal);
+		}
+		catch (NumberFormatException e)
+		{
+			final double value = this.parseDouble(literal);
+
+			if (value != (long) value) throw this.syntaxError("Expected an integer but was " + literal);
+
+			return (long) value;
+		}
+	}
+
+	public double nextDouble() throws IOException
+	{
+		this.expect(JsonToken.NUMBER);
+		return this.parseDouble(this.readLiteral());
+	}
+
+	public boolean nextBoolean() throws IOException
+	{
+		this.expect(JsonToken.BOOLEAN);
+		final String literal = this.readLiteral();
+
+		if (literal.equals("true")) return true;
+		if (literal.equals("false")) return false;
+
+		throw this.syntaxError("Unexpected literal " + literal);
+	}
+
+	public void nextNull() throws IOException
+	{
+		this.expect(JsonToken.NULL);
+		final String literal = this.readLiteral();
+
+		if (!literal.equals("null")) throw this.syntaxError("Unexpected literal " + literal);
+	}
+
+	/**
+	 * This function skips the next value of the document, including all the elements of an object
+	 * or an array, without building any of them.
+	 */
+	public void skipValue() throws IOException
+	{
+		int skippedDepth = 0;
+
+		do
+		{
+			final JsonToken token = this.peek();
+
+			switch (token)
+			{
+				case BEGIN_OBJECT:
+					this.beginObject();
+					skippedDepth++;
+					break;
+				case BEGIN_ARRAY:
+					this.beginArray();
+					skippedDepth++;
+					break;
+				case END_OBJECT:
+					this.endObject();
+					skippedDepth--;
+					break;
+				case END_ARRAY:
+					this.endArray();
+					skippedDepth--;
+					break;
+				case NAME:
+				case STRING:
+					this.peeked = null;
+					this.skipString();
+					break;
+				case NUMBER:
+				case BOOLEAN:
+				case NULL:
+					this.peeked = null;
+					this.skipLiteral();
+					break;
+				default:
+					throw this.syntaxError("Unexpected end of the document");
+			}
+		}
+		while (skippedDepth > 0);
+	}
+
+	//Private methods
+
+	private void expect(final JsonToken expected) throws IOException
+	{
+		final JsonToken token = this.peek();
+
+		if (token != expected)
+		{
+			throw this.syntaxError("Expected " + expected + " but was " + token);
+		}
+
+		this.peeked = null;
+	}
+
+	private void push(final int scope)
+	{
+		if (this.depth == this.scopes.length)
+		{
+			final int[] scopes = new int[this.depth * 2];
+			System.arraycopy(this.scopes, 0, scopes, 0, this.depth);
+			this.scopes = scopes;
+		}
+
+		this.scopes[this.depth++] = scope;
+	}
+
+	/**
+	 * This function computes the type of the value starting with the given character.
+	 * Strings are left right after their opening quote, and literals right before their first character.
+	 */
+	private JsonToken valueToken(final int c) throws IOException
+	{
+		switch (c)
+		{
+			case '{':
+				return JsonToken.BEGIN_OBJECT;
+			case '[':
+				return JsonToken.BEGIN_ARRAY;
+			case '"':
+				return JsonToken.STRING;
+			case 't':
+			case 'f':
+				this.position--;
+				return JsonToken.BOOLEAN;
+			case 'n':
+				this.position--;
+				return JsonToken.NULL;
+			case -1:
+				throw this.syntaxError("Unexpected end of the document");
+			default:
+				if (c == '-'
+					|| (c >= '0' && c <= '9'))
+				{
+					this.position--;
+					return JsonToken.NUMBER;
+				}
+
+				throw this.syntaxError("Unexpected character '" + (char) c + "'");
+		}
+	}
+
+	private boolean fill() throws IOException
+	{
+		if (this.position < this.limit) return true;
+
+		this.position = 0;
+		this.limit = 0;
+		int read;
+
+		while ((read = this.reader.read(this.buffer, 0, this.buffer.length)) == 0)
+		{
+			//Readers may return 0 characters without being at the end of the stream
+		}
+
+		if (read == -1) return false;
+
+		this.limit = read;
+		return true;
+	}
+
+	private int nextNonWhitespace() throws IOException
+	{
+		while (this.fill())
+		{
+			final char c = this.buffer[this.position++];
+
+			if (c != ' '
+				&& c != '\n'
+				&& c != '\r'
+				&& c != '\t')
+			{
+				return c;
+			}
+		}
+
+		return -1;
+	}
+
+	private String readString() throws IOException
+	{
+		this.scratch.setLength(0);
+
+		while (true)
+		{
+			if (!this.fill()) throw this.syntaxError("Unterminated string");
+
+			//Copy the characters that need no unescaping in one go
+			final int start = this.position;
+
+			while (this.position < this.limit
+					&& this.buffer[this.position] != '"'
+					&& this.buffer[this.position] != '\\')
+			{
+				this.position++;
+			}
+
+			if (this.position == this.limit)
+			{
+				this.scratch.append(this.buffer, start, this.position - start);
+				continue;
+			}
+
+			final char c = this.buffer[this.position++];
+
+			if (c == '"'
+				&& this.scratch.length() == 0)
+			{
+				return new String(this.buffer, start, this.position - 1 - start);
+			}
+
+			this.scratch.append(this.buffer, start, this.position - 1 - start);
+
+			if (c == '"')
+			{
+				return this.scratch.toString();
+			}
+
+			this.scratch.append(this.readEscapedCharacter());
+		}
+	}
+
+	private void skipString() throws IOException
+	{
+		while (this.fill())
+		{
+			final char c = this.buffer[this.position++];
+
+			if (c == '"') return;
+
+			if (c == '\\') this.readEscapedCharacter();
+		}
+
+		throw this.syntaxError("Unterminated string");
+	}
+
+	private char readEscapedCharacter() throws IOException
+	{
+		if (!this.fill()) throw this.syntaxError("Unterminated escape sequence");
+
+		final char c = this.buffer[this.position++];
+
+		switch (c)
+		{
+			case 'u':
+				int value = 0;
+
+				for (int i = 0; i < 4; i++)
+				{
+					if (!this.fill()) throw this.syntaxError("Unterminated escape sequence");
+
+					final int digit = Character.digit(this.buffer[this.position++], 16);
+
+					if (digit == -1) throw this.syntaxError("Malformed unicode escape sequence");
+
+					value = (value << 4) | digit;
+				}
+
+				return (char) value;
+			case 'b':
+				return '\b';
+			case 'f':
+				return '\f';
+			case 'n':
+				return '\n';
+			case 'r':
+				return '\r';
+			case 't':
+				return '\t';
+			case '"':
+			case '\\':
+			case '/':
+				return c;
+			default:
+				throw this.syntaxError("Invalid escape sequence '\\" + c + "'");
+		}
+	}
+
+	private String readLiteral() throws IOException
+	{
+		this.scratch.setLength(0);
+
+		while (this.fill()
+				&& this.isLiteralCharacter(this.buffer[this.position]))
+		{
+			this.scratch.append(this.buffer[this.position++]);
+		}
+
+		if (this.scratch.length() == 0) throw this.syntaxError("Expected a literal");
+
+		return this.scratch.toString();
+	}
+
+	private void skipLiteral() throws IOException
+	{
+		while (this.fill()
+				&& this.isLiteralCharacter(this.buffer[this.position]))
+		{
+			this.position++;
+		}
+	}
+
+	private boolean isLiteralCharacter(final char c)
+	{
+		return (c >= 'a' && c <= 'z')
+				|| (c >= 'A' && c <= 'Z')
+				|| (c >= '0' && c <= '9')
+				|| c == '-'
+				|| c == '+'
+				|| c == '.';
+	}
+
+	private double parseDouble(final String literal) throws IOException
+	{
+		try
+		{
+			return Double.parseDouble(literal);
+		}
+		catch (NumberFormatException e)
+		{
+			throw this.syntaxError("Malformed number " + literal);
+		}
+	}
+
+	private IOException syntaxError(final String message)
+	{
+		return new IOException("Malformed JSON: " + message + ".");
+	}
+
+	//Override
+
+	@Override
+	public void close() throws IOException
+	{
+		this.peeked = null;
+		this.depth = 0;
+		this.reader.close();
+	}
+}
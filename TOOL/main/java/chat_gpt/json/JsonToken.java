@@ -0,0 +1,15 @@
+package chat_gpt.json;
+
+public enum JsonToken
+{
+	BEGIN_OBJECT,
+	END_OBJECT,
+	BEGIN_ARRAY,
+	END_ARRAY,
+	NAME,
+	STRING,
+	NUMBER,
+	BOOLEAN,
+	NULL,
+	END_DOCUMENT
+}
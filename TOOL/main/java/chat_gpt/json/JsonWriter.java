@@ -0,0 +1,242 @@
+package chat_gpt.json;
+
+/**
+ * A minimal JSON writer appending the document directly to a StringBuilder, without building any
+ * intermediate tree. Commas and colons are inserted automatically, and strings are escaped as
+ * required by RFC 8259 (quotes, backslashes and control characters).
+ * Example:
+ * <pre>
+ *     new JsonWriter().beginObject().name("model").value("gpt-4o").endObject().toString()
+ * </pre>
+ */
+public class JsonWriter
+{
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	private final StringBuilder builder;
+	private boolean[] hasElements;
+	private int depth;
+	private boolean afterName;
+
+	public JsonWriter()
+	{
+		this(new StringBuilder());
+	}
+
+	public JsonWriter(final StringBuilder builder)
+	{
+		this.builder = builder;
+		this.hasElements = new boolean[8];
+		this.depth = 0;
+		this.afterName = false;
+	}
+
+	public JsonWriter beginObject()
+	{
+		this.beforeValue();
+		this.builder.append('{');
+		this.push();
+		return this;
+	}
+
+	public JsonWriter endObject()
+	{
+		this.pop();
+		this.builder.append('}');
+		return this;
+	}
+
+	public JsonWriter beginArray()
+	{
+		this.beforeValue();
+		this.builder.append('[');
+		this.push();
+		return this;
+	}
+
+	public JsonWriter endArray()
+	{
+		this.pop();
+		this.builder.append(']');
+		return this;
+	}
+
+	public JsonWriter name(final String name)
+	{
+		if (this.afterName
+			|| this.depth == 0)
+		{
+			throw new IllegalStateException("Name \"" + name + "\" is not expected here.");
+		}
+
+		this.beforeElement();
+		this.writeString(name);
+		this.builder.append(':');
+		this.afterName = true;
+		return this;
+	}
+
+	public JsonWriter value(final String value)
+	{
+		if (value == null)
+		{
+			return this.nullValue();
+		}
+
+		this.beforeValue();
+		this.writeString(value);
+		return this;
+	}
+
+	public JsonWriter value(final long value)
+	{
+		this.beforeValue();
+		this.builder.append(value);
+		return this;
+	}
+
+	public JsonWriter value(final double value)
+	{
+		if (Double.isNaN(value)
+			|| Double.isInfinite(value))
+		{
+			throw new IllegalArgumentException("JSON does not support the number " + value + ".");
+		}
+
+		this.beforeValue();
+		this.builder.append(value);
+		return this;
+	}
+
+	public JsonWriter value(final boolean value)
+	{
+		this.beforeValue();
+		this.builder.append(value);
+		return this;
+	}
+
+	public JsonWriter nullValue()
+	{
+		this.beforeValue();
+		this.builder.append("null");
+		return this;
+	}
+
+	//Private methods
+
+	private void beforeValue()
+	{
+		if (this.afterName)
+		{
+			this.afterName = false;
+		}
+		else
+		{
+			this.beforeElement();
+		}
+	}
+
+	private void beforeElement()
+	{
+		if (this.depth > 0)
+		{
+			if (this.hasElements[this.depth - 1])
+			{
+				this.builder.append(',');
+			}
+
+			this.hasElements[this.depth - 1] = true;
+		}
+	}
+
+	private void push()
+	{
+		if (this.depth == this.hasElements.length)
+		{
+			final boolean[] hasElements = new boolean[this.depth * 2];
+			System.arraycopy(this.hasElements, 0, hasElements, 0, this.depth);
+			this.hasElements = hasElements;
+		}
+
+		this.hasElements[this.depth++] = false;
+	}
+
+	private void pop()
+	{
+		if (this.depth == 0
+			|| this.afterName)
+		{
+			throw new IllegalStateException("No object or array to close.");
+		}
+
+		this.depth--;
+	}
+
+	private void writeString(final String string)
+	{
+		this.builder.append('"');
+		int start = 0;
+
+		for (int i = 0; i < string.length(); i++)
+		{
+			final char c = string.charAt(i);
+			final String replacement;
+
+			switch (c)
+			{
+				case '"':
+					replacement = "\\\"";
+					break;
+				case '\\':
+					replacement = "\\\\";
+					break;
+				case '\n':
+					replacement = "\\n";
+					break;
+				case '\r':
+					replacement = "\\r";
+					break;
+				case '\t':
+					replacement = "\\t";
+					break;
+				case '\b':
+					replacement = "\\b";
+					break;
+				case '\f':
+					replacement = "\\f";
+					break;
+				default:
+					replacement = null;
+			}
+
+			if (replacement == null
+				&& c >= 0x20)
+			{
+				continue;
+			}
+
+			//Copy the characters that need no escaping in one go
+			this.builder.append(string, start, i);
+
+			if (replacement != null)
+			{
+				this.builder.append(replacement);
+			}
+			else
+			{
+				this.builder.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+			}
+
+			start = i + 1;
+		}
+
+		this.builder.append(string, start, string.length()).append('"');
+	}
+
+	//Override
+
+	@Override
+	public String toString()
+	{
+		return this.builder.toString();
+	}
+}
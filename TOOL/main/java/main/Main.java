@@ -5,13 +5,14 @@ import bpmn.graph.GraphToList;
 import bpmn.types.process.BpmnProcessFactory;
 import bpmn.writing.generation.GraphicalGenerationWriter;
 import chat_gpt.ChatGPTManager;
+import chat_gpt.answer_providers.AnswerProvider;
+import chat_gpt.answer_providers.AnswerProviders;
 import chat_gpt.ast_management.*;
 import chat_gpt.ast_management.constants.AnswerType;
 import chat_gpt.exceptions.BadAnswerException;
 import chat_gpt.exceptions.ContradictoryValuesException;
 import chat_gpt.exceptions.UnparsableSequenceException;
 import chat_gpt.no_ast.*;
-import chat_gpt.tests.Expressions;
 import constants.CommandLineOption;
 import constants.PrintLevel;
 import exceptions.ExceptionStatus;
@@ -25,6 +26,7 @@ import refactoring.legacy.exceptions.BadDependencyException;
 import java.io.*;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Consumer;
 
 public class Main
 {
@@ -33,6 +35,7 @@ public class Main
 	public static final boolean LOCAL_TESTING = false;
     public static final int PRINT_LEVEL = PrintLevel.PRINT_SOME_IMPORTANT;
 	private static final AnswerType ANSWER_TYPE = AnswerType.CHAT_GPT;
+	private static AnswerProvider answerProvider;
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
 
     public static void main(String[] args) throws InterruptedException, IOException, BadDependencyException, UnparsableSequenceException, ContradictoryValuesException, BadAnswerException, ExpectedException
@@ -114,27 +117,27 @@ public class Main
 			MyOwnLogger.append("API key: " + apiKey);
 			MyOwnLogger.append("Tasks already named: " + tasksNamed);
 
-			//Prompt GPT
+			//Prompt GPT, and convert its answer to ASTs and reduce them line by line while it is being received
 			MyOwnLogger.append("Waiting for ChatGPT answer...");
-			final String answer = Main.produceAnswer(question, apiKey, tasksNamed);
+			final StreamingAnswerToAST answerToAST = new StreamingAnswerToAST(ASTReductor::reduce);
+			final String answer = Main.produceAnswer(question, apiKey, tasksNamed, answerToAST::accept);
 			MyOwnLogger.append("Answer received.");
 
 			MyOwnLogger.append("Answer: " + answer);
 			Main.writeAnswerToFile(commandLineParser, answer);
 			Main.writeQuestionToFile(commandLineParser, question);
 
-			//Convert GPT's answer to ASTs
+			//Convert the last lines of GPT's answer to ASTs
 			MyOwnLogger.append("Converting answer to abstract syntax trees...");
-			final ArrayList<AbstractSyntaxTree> treesToMerge = new ArrayList<>(AnswerToAST.convertAnswerToConstraints(answer));
+			final ArrayList<AbstractSyntaxTree> treesToMerge = new ArrayList<>(answerToAST.finish());
 
 			MyOwnLogger.append(treesToMerge.size() + " ASTs were generated: ");
 
 			if (treesToMerge.isEmpty()) throw new ExpectedException("AST generation did not fail but generated 0 AST!!!", ExceptionStatus.NO_AST_GENERATED);
 
-			//Reduce the generated ASTs
+			//The generated ASTs were reduced as soon as they were generated
 			for (AbstractSyntaxTree tree : treesToMerge)
 			{
-				ASTReductor.reduce(tree);
 				MyOwnLogger.append(tree.toString());
 			}
 
@@ -174,6 +177,7 @@ public class Main
 			final long endTime = System.nanoTime();
 			final long totalTime = endTime - time;
 
+			MyOwnLogger.append(ChatGPTManager.usage().toString());
 			MyOwnLogger.append("Generating the BPMN process took " + Utils.nanoSecToReadable(totalTime) + ".\n");
 			MyOwnLogger.writeStdOut((File) commandLineParser.get(CommandLineOption.WORKING_DIRECTORY));
 			MyOwnLogger.writeStdErr((File) commandLineParser.get(CommandLineOption.WORKING_DIRECTORY), "");
@@ -207,6 +211,7 @@ public class Main
 				exitCode = ExceptionStatus.NO_CODE;
 			}
 
+			MyOwnLogger.append(ChatGPTManager.usage().toString());
 			MyOwnLogger.append("Generating the BPMN process took " + Utils.nanoSecToReadable(totalTime) + ".\n");
 			MyOwnLogger.writeStdOut((File) commandLineParser.get(CommandLineOption.WORKING_DIRECTORY));
 			MyOwnLogger.writeStdErr((File) commandLineParser.get(CommandLineOption.WORKING_DIRECTORY), Utils.getStackTrace(e));
@@ -219,14 +224,28 @@ public class Main
 									   final String apiKey,
 									   final boolean tasksNamed) throws ExpectedException
 	{
-		if (ANSWER_TYPE == AnswerType.HANDWRITTEN)
-		{
-			return Expressions.getExpressionToUse();
-		}
-		else
-		{
-			return ChatGPTManager.generateAnswer(question, apiKey, tasksNamed);
-		}
+		return Main.produceAnswer(question, apiKey, tasksNamed, null);
+	}
+
+	/**
+	 * @param listener the function called on each fragment of the answer as soon as it is available,
+	 *                 or null if the answer does not need to be streamed
+	 */
+	public static String produceAnswer(final String question,
+									   final String apiKey,
+									   final boolean tasksNamed,
+									   final Consumer<String> listener) throws ExpectedException
+	{
+		return Main.answerProvider().answer(question, apiKey, tasksNamed, listener);
+	}
+
+	/**
+	 * @param provider the provider of the answers of the next questions (for instance, a
+	 *                 ReplayingAnswerProvider to benchmark the tool without network access)
+	 */
+	public static synchronized void setAnswerProvider(final AnswerProvider provider)
+	{
+		Main.answerProvider = provider;
 	}
 
 	public static void writeTimeFile(final CommandLineParser parser,
@@ -294,4 +313,27 @@ public class Main
 		writer.flush();
 		writer.close();
 	}
+
+	//Private methods
+
+	/**
+	 * The provider of the answers is chosen by the system properties (see AnswerProviders), ANSWER_TYPE being the
+	 * type of the answers by default.
+	 */
+	private static synchronized AnswerProvider answerProvider() throws ExpectedException
+	{
+		if (Main.answerProvider == null)
+		{
+			try
+			{
+				Main.answerProvider = AnswerProviders.fromSystemProperties(ANSWER_TYPE);
+			}
+			catch (IOException e)
+			{
+				throw new ExpectedException(e, ExceptionStatus.FILE_GENERATION_FAILED);
+			}
+		}
+
+		return Main.answerProvider;
+	}
 }
\ No newline at end of file
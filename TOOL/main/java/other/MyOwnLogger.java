@@ -14,19 +14,19 @@ public class MyOwnLogger
 
 	}
 
-	public static void appendNextTo(String msg)
+	public static synchronized void appendNextTo(String msg)
 	{
 		//System.out.println(msg);
 		MyOwnLogger.builder.append(msg);
 	}
 
-	public static void append(String msg)
+	public static synchronized void append(String msg)
 	{
 		//System.out.println(msg);
 		MyOwnLogger.builder.append("\n\n").append(msg);
 	}
 
-	public static void writeStdOut(final File workingDirectory)
+	public static synchronized void writeStdOut(final File workingDirectory)
 	{
 		final String stdOutPath = Path.of(workingDirectory.getPath(), "std.out").toString();
 		final File stdOutFile = new File(stdOutPath);
@@ -0,0 +1,221 @@
+package resources;
+
+import java.util.Arrays;
+
+/**
+ * A resource pool stored as an array of numbers of replicas indexed by the ordinals of the
+ * resources in a global resource set, instead of a map. Element-wise maximum, inclusion and
+ * comparison are then simple loops over the array, without hashing any resource.
+ * As in ResourcePool, a resource may be absent from the pool, which differs from being present
+ * with 0 replicas when comparing pools. Pools are converted from and to ResourcePool with
+ * fromResourcePool() and toResourcePool().
+ */
+public class DenseResourcePool
+{
+	private static final int ABSENT = -1;
+	private final GlobalResourceSet globalResourceSet;
+	private final int[] replicas;
+
+	public DenseResourcePool(final GlobalResourceSet globalResourceSet)
+	{
+		this.globalResourceSet = globalResourceSet;
+		this.replicas = new int[globalResourceSet.size()];
+		Arrays.fill(this.replicas, ABSENT);
+	}
+
+	private DenseResourcePool(final GlobalResourceSet globalResourceSet,
+							  final int[] replicas)
+	{
+		this.globalResourceSet = globalResourceSet;
+		this.replicas = replicas;
+	}
+
+	/**
+	 * @param resourcePool the pool to convert
+	 * @param globalResourceSet the set giving the ordinals of the resources of the pool
+	 * @return the dense representation of the pool
+	 */
+	public static DenseResourcePool fromResourcePool(final ResourcePool resourcePool,
+													 final GlobalResourceSet globalResourceSet)
+	{
+		final DenseResourcePool densePool = new DenseResourcePool(globalResourceSet);
+
+		for (Resource resource : resourcePool.resources())
+		{
+			densePool.addResource(resource, resourcePool.getUsageOf(resource));
+		}
+
+		return densePool;
+	}
+
+	public void addResource(final Resource resource,
+							final int nbReplicas)
+	{
+		final int ordinal = this.ordinalOf(resource);
+
+		if (this.replicas[ordinal] != ABSENT)
+		{
+			throw new IllegalStateException("Resource pool already contains resource " + resource.name());
+		}
+
+		this.replicas[ordinal] = nbReplicas;
+	}
+
+	public void addResourceIfGreater(final Resource resource,
+									 final int nbReplicas)
+	{
+		final int ordinal = this.ordinalOf(resource);
+		this.replicas[ordinal] = Math.max(this.replicas[ordinal], nbReplicas);
+	}
+
+	/**
+	 * Sets the number of replicas of the resource of the given ordinal, adding it to the pool
+	 * if needed.
+	 */
+	public void setUsageAt(final int ordinal,
+						   final int nbReplicas)
+	{
+		this.replicas[ordinal] = nbReplicas;
+	}
+
+	public int getUsageOf(final Resource resource)
+	{
+		final int ordinal = this.globalResourceSet.ordinalOf(resource);
+		return ordinal == -1 ? 0 : this.getUsageAt(ordinal);
+	}
+
+	public int getUsageAt(final int ordinal)
+	{
+		return Math.max(this.replicas[ordinal], 0);
+	}
+
+	public boolean contains(final int ordinal)
+	{
+		return this.replicas[ordinal] != ABSENT;
+	}
+
+	/**
+	 * This function sets the number of replicas of each resource to the maximum of its number
+	 * of replicas in this pool and in the given one, adding the resources absent from this pool.
+	 *
+	 * @param resourcePool the second pool, indexed by the same global resource set
+	 */
+	public void maxWith(final DenseResourcePool resourcePool)
+	{
+		this.checkSameSet(resourcePool);
+
+		for (int i = 0; i < this.replicas.length; i++)
+		{
+			this.replicas[i] = Math.max(this.replicas[i], resourcePool.replicas[i]);
+		}
+	}
+
+	/**
+	 * This function compares two resource pools between them, as ResourcePool.compareTo() does:
+	 * only the resources belonging to the second pool are considered.
+	 *
+	 * @param resourcePool the second pool, indexed by the same global resource set
+	 * @return -1 if the first pool is included in the second, 0 if they are equal, 1 if the first pool is not
+	 * 			included in the second pool
+	 */
+	public int compareTo(final DenseResourcePool resourcePool)
+	{
+		this.checkSameSet(resourcePool);
+		boolean equals = true;
+
+		for (int i = 0; i < this.replicas.length; i++)
+		{
+			if (resourcePool.replicas[i] == ABSENT)
+			{
+				continue;
+			}
+
+			final int firstReplicas = this.getUsageAt(i);
+			final int secondReplicas = resourcePool.replicas[i];
+
+			if (firstReplicas > secondReplicas)
+			{
+				return 1;
+			}
+			else if (firstReplicas < secondReplicas)
+			{
+				equals = false;
+			}
+		}
+
+		return equals ? 0 : -1;
+	}
+
+	public boolean isNotIncludedIn(final DenseResourcePool resourcePool)
+	{
+		return this.compareTo(resourcePool) == 1;
+	}
+
+	public DenseResourcePool copy()
+	{
+		return new DenseResourcePool(this.globalResourceSet, this.replicas.clone());
+	}
+
+	public boolean isEmpty()
+	{
+		for (int nbReplicas : this.replicas)
+		{
+			if (nbReplicas != ABSENT)
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return the pool as a map-based resource pool, containing the resources present in this pool
+	 */
+	public ResourcePool toResourcePool()
+	{
+		final ResourcePool resourcePool = new ResourcePool();
+
+		for (int i = 0; i < this.replicas.length; i++)
+		{
+			if (this.replicas[i] != ABSENT)
+			{
+				resourcePool.addResource(this.globalResourceSet.resourceAt(i), this.replicas[i]);
+			}
+		}
+
+		return resourcePool;
+	}
+
+	//Private methods
+
+	private int ordinalOf(final Resource resource)
+	{
+		final int ordinal = this.globalResourceSet.ordinalOf(resource);
+
+		if (ordinal == -1
+			|| ordinal >= this.replicas.length)
+		{
+			throw new IllegalStateException("Resource " + resource.name() + " has no ordinal in the global resource set of the pool.");
+		}
+
+		return ordinal;
+	}
+
+	private void checkSameSet(final DenseResourcePool resourcePool)
+	{
+		if (resourcePool.globalResourceSet != this.globalResourceSet
+			|| resourcePool.replicas.length != this.replicas.length)
+		{
+			throw new IllegalStateException("Resource pools indexed by different global resource sets cannot be compared.");
+		}
+	}
+
+	//Override
+
+	@Override
+	public String toString()
+	{
+		return this.toResourcePool().toString();
+	}
+}
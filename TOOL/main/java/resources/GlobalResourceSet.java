@@ -4,11 +4,19 @@ import bpmn.types.process.BpmnProcessObject;
 import bpmn.types.process.Task;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 
+/**
+ * The set of resources used by a process. Each resource is given an ordinal, in the order in
+ * which resources are added to the set, which indexes it in dense resource pools (see
+ * DenseResourcePool).
+ */
 public class GlobalResourceSet
 {
 	private final LinkedHashSet<Resource> resourcesSet;
+	private final HashMap<Resource, Integer> ordinals;
+	private final ArrayList<Resource> resourcesByOrdinal;
 	private final ArrayList<BpmnProcessObject> objects;
 	private final ResourcePool resourcePool;
 
@@ -16,6 +24,8 @@ public class GlobalResourceSet
 	{
 		this.objects = objects;
 		this.resourcesSet = new LinkedHashSet<>();
+		this.ordinals = new HashMap<>();
+		this.resourcesByOrdinal = new ArrayList<>();
 		this.resourcePool = null;
 	}
 
@@ -23,6 +33,8 @@ public class GlobalResourceSet
 	{
 		this.objects = null;
 		this.resourcesSet = new LinkedHashSet<>();
+		this.ordinals = new HashMap<>();
+		this.resourcesByOrdinal = new ArrayList<>();
 		this.resourcePool = pool;
 	}
 
@@ -42,6 +54,37 @@ public class GlobalResourceSet
 		{
 			this.resourcesSet.addAll(this.resourcePool.resources());
 		}
+
+		for (Resource resource : this.resourcesSet)
+		{
+			if (!this.ordinals.containsKey(resource))
+			{
+				this.ordinals.put(resource, this.resourcesByOrdinal.size());
+				this.resourcesByOrdinal.add(resource);
+			}
+		}
+	}
+
+	/**
+	 * @param resource the resource considered
+	 * @return the ordinal of the resource, -1 if it does not belong to the set
+	 */
+	public int ordinalOf(final Resource resource)
+	{
+		return this.ordinals.getOrDefault(resource, -1);
+	}
+
+	public Resource resourceAt(final int ordinal)
+	{
+		return this.resourcesByOrdinal.get(ordinal);
+	}
+
+	/**
+	 * @return the number of resources having an ordinal
+	 */
+	public int size()
+	{
+		return this.resourcesByOrdinal.size();
 	}
 
 	public LinkedHashSet<Resource> resourcesSet()
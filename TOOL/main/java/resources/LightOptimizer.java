@@ -22,6 +22,14 @@ public class LightOptimizer extends Optimizer
 		throw new IllegalStateException("Should not be used in light optimizer.");
 	}
 
+	@Override
+	@Deprecated
+	public HashMap<Resource, Double> computeGlobalResourceUsageOverTime(final ResourceProfile resourceProfile,
+																		final ResourcePool optimalPool)
+	{
+		throw new IllegalStateException("Should not be used in light optimizer.");
+	}
+
 	@Override
 	@Deprecated
 	public ResourcePool computeMaximalPoolForOneProcess()
@@ -1,6 +1,5 @@
 package resources;
 
-import other.Utils;
 import bpmn.graph.Graph;
 import bpmn.graph.Node;
 import bpmn.types.process.*;
@@ -8,27 +7,39 @@ import other.Pair;
 
 import java.util.*;
 
+/**
+ * The optimizer computes the pools of resources needed to execute one or several instances of a
+ * process without waiting, by traversing the process to find the tasks executing at any time.
+ * Tasks are not sampled per unit of time: their executions are intervals of time, which are swept
+ * through their start and end events to build piecewise-constant profiles of the tasks executing
+ * and of the resources they use (see ResourceProfile). The cost of the computation thus depends on
+ * the number of task executions, not on their durations.
+ * The process is analysed once, on the first query: all the queries then read the same immutable
+ * analysis (see ProcessAnalysis), so the process must not be modified afterwards. Optimizers can
+ * be shared by threads.
+ */
 public class Optimizer
 {
 	private static final double THRESHOLD = 0.01d; //Stop when node has less than 1% chance of execution
-	private final int interval;
 	private final Graph graph;
 	private final GlobalResourceSet globalResourceSet;
+	//Resources used by the tasks, whose ordinals index the pools of the resource profiles
+	private final GlobalResourceSet taskResourceSet;
 	private final ResourcePool minimalResourcePool;
 	private final int iat;
-	private HashMap<Integer, ResourcePool> resourcesPerInstantOfTime;
+	private volatile ProcessAnalysis analysis;
 
 	public Optimizer(final ArrayList<BpmnProcessObject> objects,
 					 final Graph graph,
 					 final GlobalResourceSet globalResourceSet,
 					 final int iat)
 	{
-		this.interval = 1;
 		this.graph = graph;
 		this.globalResourceSet = globalResourceSet;
 		this.iat = iat;
 		this.minimalResourcePool = this.computeMinimalPool(objects);
-		this.resourcesPerInstantOfTime = new HashMap<>();
+		this.taskResourceSet = new GlobalResourceSet(objects);
+		this.taskResourceSet.computeGlobalResources();
 
 		if (this.iat == 0)
 		{
@@ -39,10 +50,37 @@ public class Optimizer
 		}
 	}
 
+	/**
+	 * This function returns the analysis of the process, computing it on the first call.
+	 *
+	 * @return the analysis of the process
+	 */
+	public ProcessAnalysis analysis()
+	{
+		ProcessAnalysis analysis = this.analysis;
+
+		if (analysis == null)
+		{
+			//The parallel merge gateways of the graph keep the execution times of their paths, so
+			//a graph is analysed by one optimizer at a time
+			synchronized (this.graph)
+			{
+				analysis = this.analysis;
+
+				if (analysis == null)
+				{
+					analysis = this.analyse();
+					this.analysis = analysis;
+				}
+			}
+		}
+
+		return analysis;
+	}
+
 	public int computeProcessExecutionTime()
 	{
-		final HashMap<Integer, ArrayList<Pair<Task, Double>>> tasksPerInstantOfTime = this.computeTasksPerInstantOfTime();
-		return Utils.max(tasksPerInstantOfTime.keySet()) + 1;
+		return this.analysis().executionTime();
 	}
 
 	/**
@@ -65,7 +103,7 @@ public class Optimizer
 		//We iterate over each resource at each given instant of time
 		while ((currentPool = resourcesPerInstantOfTime.get(interval)) != null)
 		{
-			interval += this.interval;
+			interval++;
 			nbIterations++;
 
 			//We iterate over all the resources at the given time
@@ -96,6 +134,49 @@ public class Optimizer
 		return resourceUsage;
 	}
 
+	/**
+	 * This function computes the average percentage of use of each resource according
+	 * to the lifecycle of the process, described by its resource profile.
+	 *
+	 * @param resourceProfile the resource profile of the process
+	 * @param optimalPool the optimal pool of resources computed for the given process
+	 * @return a map containing a resource as key, and its average percentage of use as value
+	 */
+	public HashMap<Resource, Double> computeGlobalResourceUsageOverTime(final ResourceProfile resourceProfile,
+																		final ResourcePool optimalPool)
+	{
+		final HashMap<Resource, Double> resourceUsage = new HashMap<>();
+		double executionTime = 0d;
+
+		//We iterate over the segments of the profile, as long as they follow each other from time 0
+		for (ResourceProfile.Segment segment : resourceProfile.segments())
+		{
+			if (segment.start() != executionTime)
+			{
+				break;
+			}
+
+			executionTime = segment.end();
+
+			for (Resource resource : optimalPool.resources())
+			{
+				final int currentValue = segment.usageOf(resource);
+				final int maxValue = optimalPool.getUsageOf(resource);
+				final double percentageOfUse = (double) currentValue / (double) maxValue;
+				resourceUsage.merge(resource, percentageOfUse * segment.duration(), Double::sum);
+			}
+		}
+
+		//At this point, we have a resource associated to a sum of percentages of use weighted by
+		//the durations of the segments, so we divide this value by the execution time considered
+		for (Resource resource : this.globalResourceSet.resourcesSet())
+		{
+			resourceUsage.put(resource, (resourceUsage.get(resource) / executionTime) * 100);
+		}
+
+		return resourceUsage;
+	}
+
 	/**
 	 * This function computes the maximal pool of resources needed to execute 1 instance
 	 * of the current process without waiting for any given resource.
@@ -106,10 +187,7 @@ public class Optimizer
 	 */
 	public ResourcePool computeMaximalPoolForOneProcess()
 	{
-		final HashMap<Integer, ArrayList<Pair<Task, Double>>> tasksPerInstantOfTime = this.computeTasksPerInstantOfTime();
-		final HashMap<Integer, ResourcePool> resourcesPerInstantOfTime = this.computeResourcePoolsPerInstantOfTime(tasksPerInstantOfTime, false);
-
-		return this.computeOptimalPool(resourcesPerInstantOfTime);
+		return this.analysis().maximalPoolForOneProcess();
 	}
 
 	/**
@@ -120,24 +198,16 @@ public class Optimizer
 	 */
 	public ResourcePool computeOptimalPoolForOneProcess()
 	{
-		final HashMap<Integer, ArrayList<Pair<Task, Double>>> tasksPerInstantOfTime = this.computeTasksPerInstantOfTime();
-		this.resourcesPerInstantOfTime = this.computeResourcePoolsPerInstantOfTime(tasksPerInstantOfTime, true);
-
-		return this.computeOptimalPool(this.resourcesPerInstantOfTime);
+		return this.analysis().optimalPoolForOneProcess();
 	}
 
-	public Double computeAverageUsageOf(final Resource resource)
+	/**
+	 * @param resource the resource
+	 * @return the average number of instances of the resource used by 1 instance of the process
+	 */
+	public Double computeAverageUsageForOneProcess(final Resource resource)
 	{
-		int usage = 0;
-		final int executionTime = Utils.max(this.resourcesPerInstantOfTime.keySet()) + 1;
-
-		for (int time : this.resourcesPerInstantOfTime.keySet())
-		{
-			final ResourcePool resourcePool = this.resourcesPerInstantOfTime.get(time);
-			usage += resourcePool.getUsageOf(resource);
-		}
-
-		return ((double) usage) / ((double) executionTime);
+		return this.analysis().oneProcessProfile().averageUsageOf(resource);
 	}
 
 	/**
@@ -150,11 +220,7 @@ public class Optimizer
 	 */
 	public ResourcePool computeMaximalPoolForNProcesses()
 	{
-		final HashMap<Integer, ArrayList<Pair<Task, Double>>> tasksPerInstantOfTime = this.computeTasksPerInstantOfTime();
-		final HashMap<Integer, ArrayList<Pair<Task, Double>>> multiProcTasksPerInstantOfTime = this.computeMultiProcTasksPerInstantOfTime(tasksPerInstantOfTime);
-		final HashMap<Integer, ResourcePool> resourcesPerInstantOfTime = this.computeResourcePoolsPerInstantOfTime(multiProcTasksPerInstantOfTime, false);
-
-		return this.computeOptimalPool(resourcesPerInstantOfTime);
+		return this.analysis().maximalPoolForNProcesses();
 	}
 
 	/**
@@ -165,192 +231,269 @@ public class Optimizer
 	 */
 	public ResourcePool computeOptimalPoolForNProcesses()
 	{
-		final HashMap<Integer, ArrayList<Pair<Task, Double>>> tasksPerInstantOfTime = this.computeTasksPerInstantOfTime();
-		final HashMap<Integer, ArrayList<Pair<Task, Double>>> multiProcTasksPerInstantOfTime = this.computeMultiProcTasksPerInstantOfTime(tasksPerInstantOfTime);
-		this.resourcesPerInstantOfTime = this.computeResourcePoolsPerInstantOfTime(multiProcTasksPerInstantOfTime, true);
-
-		return this.computeOptimalPool(this.resourcesPerInstantOfTime);
+		return this.analysis().optimalPoolForNProcesses();
 	}
 
-	public HashMap<Resource, Integer> computeProcessAbsorbance(final ResourcePool realPool)
+	/**
+	 * @param resource the resource
+	 * @return the average number of instances of the resource used by n instances of the process
+	 */
+	public Double computeAverageUsageForNProcesses(final Resource resource)
 	{
-		final HashMap<Resource, Integer> absorbanceMap = new HashMap<>();
-		final HashMap<Resource, Integer> exceedingUsage = new HashMap<>();
-		final HashMap<Resource, Integer> recedingUsage = new HashMap<>();
-
-		for (int time : this.resourcesPerInstantOfTime.keySet())
-		{
-			final ResourcePool currentPool = this.resourcesPerInstantOfTime.get(time);
-
-			for (Resource resource : globalResourceSet.resourcesSet())
-			{
-				final int currentUsage = currentPool.getUsageOf(resource);
-				final int maxUsage = realPool.getUsageOf(resource);
-
-				if (currentUsage > maxUsage)
-				{
-					//We are overusing the resource
-					final int overuse = currentUsage - maxUsage;
-					final int totalOveruse = exceedingUsage.getOrDefault(resource, 0) + overuse;
-					exceedingUsage.put(resource, totalOveruse);
-				}
-				else if (currentUsage < maxUsage)
-				{
-					//We are underusing the resource
-					final int underuse = maxUsage - currentUsage;
-					final int totalUnderuse = recedingUsage.getOrDefault(resource, 0) + underuse;
-					recedingUsage.put(resource, totalUnderuse);
-				}
-			}
-		}
+		return this.analysis().nProcessesProfile().averageUsageOf(resource);
+	}
 
-		for (Resource resource : exceedingUsage.keySet())
-		{
-			final int totalOveruse = exceedingUsage.get(resource);
-			final int totalUnderuse = recedingUsage.getOrDefault(resource, 1);
-			final int absorbance = (int) (((double) totalOveruse / ((double) totalUnderuse * (double) 10)) * 100);
-			absorbanceMap.put(resource, absorbance);
-		}
+	/**
+	 * @param realPool the pool of resources available
+	 * @return the absorbance of each resource of the pool by 1 instance of the process
+	 */
+	public HashMap<Resource, Integer> computeProcessAbsorbanceForOneProcess(final ResourcePool realPool)
+	{
+		return this.analysis().oneProcessProfile().absorbance(this.globalResourceSet.resourcesSet(), realPool);
+	}
 
-		return absorbanceMap;
+	/**
+	 * @param realPool the pool of resources available
+	 * @return the absorbance of each resource of the pool by n instances of the process
+	 */
+	public HashMap<Resource, Integer> computeProcessAbsorbanceForNProcesses(final ResourcePool realPool)
+	{
+		return this.analysis().nProcessesProfile().absorbance(this.globalResourceSet.resourcesSet(), realPool);
 	}
 
 	//Private methods
 
+	/**
+	 * This function traverses the BPMN process once to compute its execution time, its resource
+	 * profiles for 1 and n instances, and the pools derived from them.
+	 *
+	 * @return the analysis of the process
+	 */
+	private ProcessAnalysis analyse()
+	{
+		final ArrayList<TaskSegment> taskSegments = this.computeTaskSegments();
+		final ArrayList<TaskSegment> multiProcTaskSegments = this.computeMultiProcTaskSegments(taskSegments);
+		final ResourceProfile oneProcessProfile = this.computeResourceProfile(taskSegments, true);
+		final ResourceProfile nProcessesProfile = this.computeResourceProfile(multiProcTaskSegments, true);
+
+		return new ProcessAnalysis(
+			(int) Math.ceil(this.computeGET(taskSegments)),
+			this.globalResourceSet.resourcesSet(),
+			this.computeOptimalPool(this.computeResourceProfile(taskSegments, false)),
+			this.computeOptimalPool(oneProcessProfile),
+			this.computeOptimalPool(this.computeResourceProfile(multiProcTaskSegments, false)),
+			this.computeOptimalPool(nProcessesProfile),
+			oneProcessProfile,
+			nProcessesProfile
+		);
+	}
+
 	/**
 	 * This function uses the execution flow of the given BPMN process to compute
-	 * the set of tasks executed at any given time t of the execution flow for
+	 * the tasks executing at any given time t of the execution flow for
 	 * any number of instances of the process such that there exists at least
 	 * one process instance which competes for resources against
-	 * (ceil(get/iat) - 1) * 2 other instances
+	 * (ceil(get/iat) - 1) * 2 other instances.
+	 * Each segment of the execution of one instance is shifted by the start time of each of these
+	 * instances, and the shifted segments are swept over [0 ; get[.
 	 *
-	 * @param tasksPerInstantOfTime the tasks executing at any instant t of the execution
-	 * @return a map containing execution times as keys, and the tasks executing at this given time as values
+	 * @param taskSegments the tasks executing on each segment of the execution of one instance
+	 * @return the tasks executing on each segment of [0 ; get[, including those on which no task executes
 	 */
-	private HashMap<Integer, ArrayList<Pair<Task, Double>>> computeMultiProcTasksPerInstantOfTime(final HashMap<Integer, ArrayList<Pair<Task, Double>>> tasksPerInstantOfTime)
+	private ArrayList<TaskSegment> computeMultiProcTaskSegments(final ArrayList<TaskSegment> taskSegments)
 	{
-		final HashMap<Integer, ArrayList<Pair<Task, Double>>> multiProcTasksPerInstantOfTime = new HashMap<>();
-		final int get = this.computeGET(tasksPerInstantOfTime);
+		final double get = this.computeGET(taskSegments);
+		final int firstProcessConsidered = (int) Math.ceil(((float) get / (float) this.iat)) - 1;
+		final ArrayList<TaskSegment> shiftedSegments = new ArrayList<>();
 
-		for (int interval = 0; interval < get; interval += this.interval)
+		//Segments are added by decreasing process index, which is the order in which their tasks are summed
+		for (int procIndex = firstProcessConsidered; procIndex >= -firstProcessConsidered; procIndex--)
 		{
-			final ArrayList<Pair<Task, Double>> multiProcTasksAtCurrentTime = new ArrayList<>();
-			final int firstProcessConsidered = (int) Math.ceil(((float) get / (float) this.iat)) - 1;
+			final double shift = (double) procIndex * this.iat;
 
-			for (int procIndex = firstProcessConsidered; procIndex >= -firstProcessConsidered; procIndex--)
+			for (TaskSegment taskSegment : taskSegments)
 			{
-				final int execTimeCurrentProc = procIndex * this.iat + interval;
+				final double start = Math.max(taskSegment.start - shift, 0d);
+				final double end = Math.min(taskSegment.end - shift, get);
 
-				if (execTimeCurrentProc >= 0
-					&& execTimeCurrentProc < get)
+				if (start < end)
 				{
-					multiProcTasksAtCurrentTime.addAll(tasksPerInstantOfTime.get(execTimeCurrentProc));
+					shiftedSegments.add(new TaskSegment(start, end, taskSegment.tasks));
 				}
 			}
-
-			multiProcTasksPerInstantOfTime.put(interval, multiProcTasksAtCurrentTime);
 		}
 
-		this.correctTasks(multiProcTasksPerInstantOfTime, true);
-
-		return multiProcTasksPerInstantOfTime;
+		return this.sweep(shiftedSegments, false, get);
 	}
 
 	/**
-	 * This function iterates over the tasks per instant of time to compute the resources
-	 * needed per instant of time.
+	 * This function computes the resources needed on each segment of the execution.
 	 *
-	 * @param tasksPerInstantOfTime the tasks executing at every instant of time
+	 * @param taskSegments the tasks executing on each segment of the execution
 	 * @param considerProbabilities whether we should or not consider the probabilities of execution of the tasks
-	 * @return a map with execution time as key, and resource pool as value
+	 * @return the resource profile of the execution
 	 */
-	private HashMap<Integer, ResourcePool> computeResourcePoolsPerInstantOfTime(final HashMap<Integer, ArrayList<Pair<Task, Double>>> tasksPerInstantOfTime,
-																				final boolean considerProbabilities)
+	private ResourceProfile computeResourceProfile(final ArrayList<TaskSegment> taskSegments,
+												   final boolean considerProbabilities)
 	{
-		final HashMap<Integer, ResourcePool> resourcePoolsPerInstantOfTime = new HashMap<>();
+		final ResourceProfile resourceProfile = new ResourceProfile();
 
-		for (Integer executionTime : tasksPerInstantOfTime.keySet())
+		for (TaskSegment taskSegment : taskSegments)
 		{
-			final ArrayList<Pair<Task, Double>> tasksExecutingTimeAtCurrentTime = tasksPerInstantOfTime.get(executionTime);
-			final ArrayList<Pair<Resource, Double>> resourceUsageAtCurrentTime = new ArrayList<>();
+			resourceProfile.addSegment(taskSegment.start, taskSegment.end, this.computeResourcePool(taskSegment.tasks, considerProbabilities));
+		}
 
-			for (Pair<Task, Double> taskWithProbability : tasksExecutingTimeAtCurrentTime)
-			{
-				final Task currentTask = taskWithProbability.first();
-				final Double currentProbability = taskWithProbability.second();
+		return resourceProfile;
+	}
 
-				for (Resource resource : currentTask.resourceUsage().resources())
-				{
-					final double currentResourceUsage = (considerProbabilities ? currentProbability : 1d) * currentTask.resourceUsage().getUsageOf(resource);
-					final Pair<Resource, Double> resourceWithInstances = this.getPairFromResource(resourceUsageAtCurrentTime, resource);
+	/**
+	 * This function iterates over the tasks executing at the same time to compute the
+	 * resources they need.
+	 *
+	 * @param tasksExecutingAtCurrentTime the tasks executing, with their probability of execution
+	 * @param considerProbabilities whether we should or not consider the probabilities of execution of the tasks
+	 * @return the pool of resources needed, indexed by the resources of the tasks
+	 */
+	private DenseResourcePool computeResourcePool(final ArrayList<Pair<Task, Double>> tasksExecutingAtCurrentTime,
+												  final boolean considerProbabilities)
+	{
+		final double[] resourceUsageAtCurrentTime = new double[this.taskResourceSet.size()];
+		final boolean[] resourceUsedAtCurrentTime = new boolean[this.taskResourceSet.size()];
 
-					if (resourceWithInstances == null)
-					{
-						final Pair<Resource, Double> newResource = new Pair<>(resource, currentResourceUsage);
-						resourceUsageAtCurrentTime.add(newResource);
-					}
-					else
-					{
-						resourceWithInstances.setSecond(currentResourceUsage + resourceWithInstances.second());
-					}
-				}
+		for (Pair<Task, Double> taskWithProbability : tasksExecutingAtCurrentTime)
+		{
+			final Task currentTask = taskWithProbability.first();
+			final Double currentProbability = taskWithProbability.second();
+
+			for (Resource resource : currentTask.resourceUsage().resources())
+			{
+				final int ordinal = this.taskResourceSet.ordinalOf(resource);
+				resourceUsageAtCurrentTime[ordinal] += (considerProbabilities ? currentProbability : 1d) * currentTask.resourceUsage().getUsageOf(resource);
+				resourceUsedAtCurrentTime[ordinal] = true;
 			}
+		}
 
-			final ResourcePool resourcePool = new ResourcePool();
+		final DenseResourcePool resourcePool = new DenseResourcePool(this.taskResourceSet);
 
-			for (Pair<Resource, Double> currentResource : resourceUsageAtCurrentTime)
+		for (int i = 0; i < resourceUsageAtCurrentTime.length; i++)
+		{
+			if (resourceUsedAtCurrentTime[i])
 			{
-				resourcePool.addResource(currentResource.first(), (int) Math.ceil(currentResource.second()));
+				resourcePool.setUsageAt(i, (int) Math.ceil(resourceUsageAtCurrentTime[i]));
 			}
-
-			resourcePoolsPerInstantOfTime.put(executionTime, resourcePool);
 		}
 
-		//this.printResourcePoolsPerInstantOfTime(resourcePoolsPerInstantOfTime);
+		return resourcePool;
+	}
 
-		return resourcePoolsPerInstantOfTime;
+	/**
+	 * This function traverses the BPMN process to compute the executions of its tasks, along with
+	 * their probability of execution, and sweeps over them to compute the tasks executing on each
+	 * segment of time during which they do not change.
+	 *
+	 * @return the tasks executing on each segment of the execution, sorted by time
+	 */
+	private ArrayList<TaskSegment> computeTaskSegments()
+	{
+		final ArrayList<TaskSegment> taskExecutions = new ArrayList<>();
+		this.computeTaskExecutionsRec(this.graph.initialNode(), this.graph.initialNode().bpmnObject().probability(), 0, taskExecutions);
+		return this.sweep(taskExecutions, true, 0d);
 	}
 
 	/**
-	 * This function traverses the BPMN process to compute the list (here a hashmap) of
-	 * tasks executing at any given time t (discrete time --> interval is the PGCD of
-	 * the execution time of all the tasks) along with their probability of execution
+	 * This function sweeps over the start and end events of the given segments, which may overlap,
+	 * to compute the tasks executing on each segment of time during which they do not change.
+	 * The tasks of a resulting segment are those of the segments covering it, considered in the
+	 * order of the given list, the probabilities of the same task being summed.
 	 *
-	 * @return a hashmap with the execution time as key and the list of tasks executing at this time as value
+	 * @param segments the segments of execution of tasks
+	 * @param ignoreDuplicates whether identical pairs of task and probability executing at the same time should be considered once
+	 * @param horizon if positive, every instant of [0 ; horizon[ belongs to a resulting segment, even if no task executes
+	 * @return the non-overlapping segments of execution, sorted by time
 	 */
-	private HashMap<Integer, ArrayList<Pair<Task, Double>>> computeTasksPerInstantOfTime()
+	private ArrayList<TaskSegment> sweep(final ArrayList<TaskSegment> segments,
+										 final boolean ignoreDuplicates,
+										 final double horizon)
 	{
-		final HashMap<Integer, ArrayList<Pair<Task, Double>>> tasksPerInstantOfTime = new HashMap<>();
-		this.computeTasksPerInstantOfTimeRec(this.graph.initialNode(), this.graph.initialNode().bpmnObject().probability(), 0, tasksPerInstantOfTime);
-		this.correctTasks(tasksPerInstantOfTime, false);
-		return tasksPerInstantOfTime;
+		final TreeMap<Double, ArrayList<Integer>> startingSegments = new TreeMap<>();
+		final TreeMap<Double, ArrayList<Integer>> endingSegments = new TreeMap<>();
+		final TreeSet<Double> eventTimes = new TreeSet<>();
+
+		for (int i = 0; i < segments.size(); i++)
+		{
+			final TaskSegment segment = segments.get(i);
+			startingSegments.computeIfAbsent(segment.start, t -> new ArrayList<>()).add(i);
+			endingSegments.computeIfAbsent(segment.end, t -> new ArrayList<>()).add(i);
+			eventTimes.add(segment.start);
+			eventTimes.add(segment.end);
+		}
+
+		if (horizon > 0)
+		{
+			eventTimes.add(0d);
+			eventTimes.add(horizon);
+		}
+
+		final ArrayList<TaskSegment> sweptSegments = new ArrayList<>();
+		final TreeSet<Integer> activeSegments = new TreeSet<>();
+		Double currentTime = eventTimes.pollFirst();
+
+		while (currentTime != null)
+		{
+			activeSegments.removeAll(endingSegments.getOrDefault(currentTime, new ArrayList<>()));
+			activeSegments.addAll(startingSegments.getOrDefault(currentTime, new ArrayList<>()));
+			final Double nextTime = eventTimes.pollFirst();
+
+			if (nextTime != null
+				&& (!activeSegments.isEmpty() || horizon > 0))
+			{
+				final ArrayList<Pair<Task, Double>> tasks = new ArrayList<>();
+
+				for (int i : activeSegments)
+				{
+					for (Pair<Task, Double> pair : segments.get(i).tasks)
+					{
+						if (!ignoreDuplicates
+							|| !this.listStronglyContainsPair(tasks, pair))
+						{
+							tasks.add(pair);
+						}
+					}
+				}
+
+				sweptSegments.add(new TaskSegment(currentTime, nextTime, this.correctTasks(tasks)));
+			}
+
+			currentTime = nextTime;
+		}
+
+		return sweptSegments;
 	}
 
 	/**
-	 * This function recursively traverses the BPMN process to compute the list of tasks
-	 * executing at any given time t (discrete time --> interval is the PGCD of
-	 * the execution time of all the tasks) along with their probability of execution
+	 * This function recursively traverses the BPMN process to compute the executions of
+	 * its tasks, as segments of time [start ; start + duration[, along with their probability
+	 * of execution
 	 *
 	 * @param currentNode the node being processed
 	 * @param currentProbability the probability of the previous node
 	 * @param currentExecutionTime the time at which the current node starts executing
-	 * @param tasksPerInstant the hashmap containing an execution time as key, and a list of tasks and probability as value
+	 * @param taskExecutions the list of executions of tasks, in the order in which they are found
 	 * <p>
-	 * NB: In case of loops, this function may generate for some entries of the map ArrayLists containing pairs with
-	 *     the same task but different probabilities. After executing this function, we need to standardize the
-	 *     ArrayLists by keeping only 1 of these pair, with form Pair<Task, sum(Double)>.
-	 *     An example can be seen in BUG-1 Calcul pool optimal by considering a duration of 40 for F and building the
-	 *     hashmap manually.
+	 * NB: In case of loops, this function may generate executions of the same task at the same
+	 *     time but with different probabilities. These are merged into a single pair with form
+	 *     Pair<Task, sum(Double)> when sweeping over the executions.
+	 *     An example can be seen in BUG-1 Calcul pool optimal by considering a duration of 40 for F.
 	 */
-	private void computeTasksPerInstantOfTimeRec(final Node currentNode,
-												 final double currentProbability,
-												 final int currentExecutionTime,
-												 final HashMap<Integer, ArrayList<Pair<Task, Double>>> tasksPerInstant)
+	private void computeTaskExecutionsRec(final Node currentNode,
+										  final double currentProbability,
+										  final int currentExecutionTime,
+										  final ArrayList<TaskSegment> taskExecutions)
 	{
 		if (currentProbability < THRESHOLD)
 		{
 			//Note that this behaviour may induce fragmented loops, for which certain tasks
-			//belong to the HashMap of tasks at instant t, and others note (see BUG-1 Calcul pool optimal)
+			//belong to the executions, and others note (see BUG-1 Calcul pool optimal)
 			return;
 		}
 
@@ -359,35 +502,19 @@ public class Optimizer
 
 		if (currentNode.bpmnObject() instanceof Task)
 		{
-			//Current node is task, add it to each entry of the map that belongs to the interval
+			//Current node is task, add its execution on the segment
 			// [currentExecutionTime ; currentExecutionTime + task.duration()[
-			final Pair<Task, Double> pair = new Pair<>((Task) currentNode.bpmnObject(), currentProbability);
+			final Task task = (Task) currentNode.bpmnObject();
 
-			for (int i = currentExecutionTime; i < currentExecutionTime + ((Task) currentNode.bpmnObject()).duration(); i += this.interval)
+			if (task.duration() > 0)
 			{
-				if (tasksPerInstant.containsKey(i))
-				{
-					//If the current execution time already exists, add the pair to the list of
-					//tasks executing at this instant, if it does not already belong to it
-					final ArrayList<Pair<Task, Double>> tasksList = tasksPerInstant.get(i);
-
-					if (!this.listStronglyContainsPair(tasksList, pair))
-					{
-						tasksList.add(pair);
-					}
-				}
-				else
-				{
-					//If the current execution time does not exist yet, create it and
-					//initialize it with the current task
-					final ArrayList<Pair<Task, Double>> tasksList = new ArrayList<>();
-					tasksList.add(pair);
-					tasksPerInstant.put(i, tasksList);
-				}
+				final ArrayList<Pair<Task, Double>> tasks = new ArrayList<>();
+				tasks.add(new Pair<>(task, currentProbability));
+				taskExecutions.add(new TaskSegment(currentExecutionTime, currentExecutionTime + task.duration(), tasks));
 			}
 
 			nextProbability = currentProbability;
-			nextExecutionTime = currentExecutionTime + ((Task) currentNode.bpmnObject()).duration();
+			nextExecutionTime = currentExecutionTime + task.duration();
 		}
 		else if (currentNode.bpmnObject() instanceof Gateway)
 		{
@@ -421,7 +548,7 @@ public class Optimizer
 					{
 						final int currentChildExecutionTime = currentExecutionTime + executionTime;
 						final double currentChildProbability = currentProbability * pathsExecutionTimes.get(executionTime);
-						this.computeTasksPerInstantOfTimeRec(mergeGatewayChild, currentChildProbability, currentChildExecutionTime, tasksPerInstant);
+						this.computeTaskExecutionsRec(mergeGatewayChild, currentChildProbability, currentChildExecutionTime, taskExecutions);
 					}
 				}
 				else
@@ -455,7 +582,7 @@ public class Optimizer
 		//Call the function recursively on all of its child
 		for (Node child : currentNode.childNodes())
 		{
-			this.computeTasksPerInstantOfTimeRec(child, nextProbability, nextExecutionTime, tasksPerInstant);
+			this.computeTaskExecutionsRec(child, nextProbability, nextExecutionTime, taskExecutions);
 		}
 	}
 
@@ -854,52 +981,6 @@ public class Optimizer
 		return null;
 	}
 
-	/**
-	 * This function computes the PGCD of the execution time of all the tasks
-	 * executed in the current BPMN process and the IAT.
-	 *
-	 * @param objects the list of objects forming the BPMN process
-	 * @return the PGCD of the execution time of the tasks (integer)
-	 */
-	private int computeInterval(final ArrayList<BpmnProcessObject> objects)
-	{
-		int currentPGCD = 0;
-
-		for (BpmnProcessObject object : objects)
-		{
-			if (object instanceof Task)
-			{
-				if (currentPGCD == 0)
-				{
-					currentPGCD = ((Task) object).duration();
-				}
-				else
-				{
-					currentPGCD = pgcd(currentPGCD, ((Task) object).duration());
-				}
-			}
-		}
-
-		return pgcd(currentPGCD, this.iat);
-	}
-
-	/**
-	 * This function computes the PGCD of two integers, using the Euclidian technic
-	 *
-	 * @param a the first integer
-	 * @param b the second integer
-	 * @return the PGCD of a and b
-	 */
-	private int pgcd(int a, int b)
-	{
-		if (b == 0)
-		{
-			return a;
-		}
-
-		return this.pgcd(b, a%b);
-	}
-
 	/**
 	 * This function verifies whether the given Pair<Task, Double> belongs to
 	 * the list of Pair<Task, Double>.
@@ -947,96 +1028,53 @@ public class Optimizer
 	}
 
 	/**
-	 * This function loops over a list of Pair<Resource, Double> and returns the current pair
-	 * if its resource equals the resource passed as parameter.
-	 *
-	 * @param list the list of pairs to check
-	 * @param resource the resource of the desired pair
-	 * @return a pair containing the resource passed as parameter if found, null otherwise
-	 */
-	private Pair<Resource, Double> getPairFromResource(final ArrayList<Pair<Resource, Double>> list,
-													   final Resource resource)
-	{
-		for (Pair<Resource, Double> currentPair : list)
-		{
-			if (resource.equals(currentPair.first()))
-			{
-				return currentPair;
-			}
-		}
-
-		return null;
-	}
-
-	/**
-	 * This function iterates over the hashmap of tasks execution over time and identifies for each
-	 * map key entries of type Pair<Task, Double1> / Pair<Task, Double2>.
+	 * This function identifies in the list of tasks executing at the same time the entries of type
+	 * Pair<Task, Double1> / Pair<Task, Double2>.
 	 * When such entries are found, only one of them is kept as Pair<Task, Double1 + Double2>.
 	 *
-	 * @param tasks the hashmap containing the tasks executing at each instant of time
-	 * @param multiInstances a boolean value telling whether we are correcting tasks in the single instance
-	 *                       case of in the multi instances case. For single instance, probability of a task
-	 *                       should never exceed 1.
+	 * @param tasksAtCurrentTime the tasks executing at the same time
+	 * @return the corrected list of tasks
 	 */
-	private void correctTasks(final HashMap<Integer, ArrayList<Pair<Task, Double>>> tasks,
-							  final boolean multiInstances)
+	private ArrayList<Pair<Task, Double>> correctTasks(final ArrayList<Pair<Task, Double>> tasksAtCurrentTime)
 	{
-		final HashMap<Integer, ArrayList<Pair<Task, Double>>> tasksCopy = new HashMap<>(tasks);
-		tasks.clear();
+		final ArrayList<Pair<Task, Double>> correctedTasksAtCurrentTime = new ArrayList<>();
 
-		for (Integer executionTime : tasksCopy.keySet())
+		for (Pair<Task, Double> currentTask : tasksAtCurrentTime)
 		{
-			final ArrayList<Pair<Task, Double>> tasksAtCurrentTime = tasksCopy.get(executionTime);
-			final ArrayList<Pair<Task, Double>> correctedTasksAtCurrentTime = new ArrayList<>();
+			final Pair<Task, Double> duplicate = getWeakEquivalentTaskPair(correctedTasksAtCurrentTime, currentTask);
 
-			for (Pair<Task, Double> currentTask : tasksAtCurrentTime)
+			if (duplicate == null)
 			{
-				final Pair<Task, Double> duplicate = getWeakEquivalentTaskPair(correctedTasksAtCurrentTime, currentTask);
-
-				if (duplicate == null)
-				{
-					//No mergeable pair has been seen for the current pair yet
-					correctedTasksAtCurrentTime.add(currentTask.copy());
-				}
-				else
-				{
-					//Merge is possible --> duplicate takes sum of both probabilities
-					final double newProbability = duplicate.second() + currentTask.second();
-					duplicate.setSecond(newProbability);
-				}
+				//No mergeable pair has been seen for the current pair yet
+				correctedTasksAtCurrentTime.add(currentTask.copy());
+			}
+			else
+			{
+				//Merge is possible --> duplicate takes sum of both probabilities
+				final double newProbability = duplicate.second() + currentTask.second();
+				duplicate.setSecond(newProbability);
 			}
-
-			tasks.put(executionTime, correctedTasksAtCurrentTime);
 		}
+
+		return correctedTasksAtCurrentTime;
 	}
 
 	/**
 	 * This function computes a pool of resources containing the maximum number of
 	 * replicas of each resource for any given time t of the process execution
 	 *
-	 * @param resourcePools a list of resource pools [R1, R2, ..., Rn]
+	 * @param resourceProfile the resource profile of the process execution
 	 * @return a resource pool containing the maximal usage of each resource
 	 */
-	private ResourcePool computeOptimalPool(HashMap<Integer, ResourcePool> resourcePools)
+	private ResourcePool computeOptimalPool(final ResourceProfile resourceProfile)
 	{
 		final ResourcePool optimalPool = new ResourcePool();
+		final DenseResourcePool maximalUsage = resourceProfile.maximalUsage(this.taskResourceSet);
 
 		for (Resource resource : this.globalResourceSet.resourcesSet())
 		{
-			int currentResourceMax = 0;
-
-			for (ResourcePool resourcePool : resourcePools.values())
-			{
-				final int replicas = resourcePool.getUsageOf(resource);
-
-				if (replicas > currentResourceMax)
-				{
-					currentResourceMax = replicas;
-				}
-			}
-
 			//We need at least the number of resource needed to execute each task independently
-			optimalPool.addResource(resource, Math.max(currentResourceMax, this.minimalResourcePool.getUsageOf(resource)));
+			optimalPool.addResource(resource, Math.max(maximalUsage.getUsageOf(resource), this.minimalResourcePool.getUsageOf(resource)));
 		}
 
 		return optimalPool;
@@ -1046,12 +1084,12 @@ public class Optimizer
 	 * This functions computes the Global Execution Time (GET) of the process,
 	 * which is the (worst) execution time of the process.
 	 *
-	 * @param tasksPerInstantOfTime a map containing execution times as keys, and tasks with probability as value
-	 * @return the maximum value of the execution times + the interval
+	 * @param taskSegments the tasks executing on each segment of the execution, sorted by time
+	 * @return the end of the last segment, 0 if no task executes
 	 */
-	private int computeGET(final HashMap<Integer, ArrayList<Pair<Task, Double>>> tasksPerInstantOfTime)
+	private double computeGET(final ArrayList<TaskSegment> taskSegments)
 	{
-		return Collections.max(tasksPerInstantOfTime.keySet()) + this.interval;
+		return taskSegments.isEmpty() ? 0d : taskSegments.get(taskSegments.size() - 1).end;
 	}
 
 	/**
@@ -1113,4 +1151,24 @@ public class Optimizer
 			builder.append("\n	- ").append(keyValue.getKey()).append(" UT with probability ").append(keyValue.getValue());
 		}
 	}
+
+	/**
+	 * Tasks executing on the segment [start ; end[ of the execution of the process, with their
+	 * probability of execution.
+	 */
+	private static class TaskSegment
+	{
+		private final double start;
+		private final double end;
+		private final ArrayList<Pair<Task, Double>> tasks;
+
+		private TaskSegment(final double start,
+							final double end,
+							final ArrayList<Pair<Task, Double>> tasks)
+		{
+			this.start = start;
+			this.end = end;
+			this.tasks = tasks;
+		}
+	}
 }
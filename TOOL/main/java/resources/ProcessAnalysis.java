@@ -0,0 +1,88 @@
+package resources;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The analysis of a process computed once by an optimizer (see Optimizer.analysis()): its
+ * execution time, its resource profiles for one and n instances, and the pools derived from them.
+ * An analysis is immutable (pools are returned as copies), so it can be shared by threads and
+ * answer all the queries of the optimizer without traversing the process again.
+ */
+public final class ProcessAnalysis
+{
+	private final int executionTime;
+	private final Set<Resource> resources;
+	private final ResourcePool maximalPoolForOneProcess;
+	private final ResourcePool optimalPoolForOneProcess;
+	private final ResourcePool maximalPoolForNProcesses;
+	private final ResourcePool optimalPoolForNProcesses;
+	private final ResourceProfile oneProcessProfile;
+	private final ResourceProfile nProcessesProfile;
+
+	ProcessAnalysis(final int executionTime,
+					final Set<Resource> resources,
+					final ResourcePool maximalPoolForOneProcess,
+					final ResourcePool optimalPoolForOneProcess,
+					final ResourcePool maximalPoolForNProcesses,
+					final ResourcePool optimalPoolForNProcesses,
+					final ResourceProfile oneProcessProfile,
+					final ResourceProfile nProcessesProfile)
+	{
+		this.executionTime = executionTime;
+		this.resources = Collections.unmodifiableSet(new LinkedHashSet<>(resources));
+		this.maximalPoolForOneProcess = maximalPoolForOneProcess;
+		this.optimalPoolForOneProcess = optimalPoolForOneProcess;
+		this.maximalPoolForNProcesses = maximalPoolForNProcesses;
+		this.optimalPoolForNProcesses = optimalPoolForNProcesses;
+		this.oneProcessProfile = oneProcessProfile;
+		this.nProcessesProfile = nProcessesProfile;
+	}
+
+	public int executionTime()
+	{
+		return this.executionTime;
+	}
+
+	public Set<Resource> resources()
+	{
+		return this.resources;
+	}
+
+	public ResourcePool maximalPoolForOneProcess()
+	{
+		return this.maximalPoolForOneProcess.copy();
+	}
+
+	public ResourcePool optimalPoolForOneProcess()
+	{
+		return this.optimalPoolForOneProcess.copy();
+	}
+
+	public ResourcePool maximalPoolForNProcesses()
+	{
+		return this.maximalPoolForNProcesses.copy();
+	}
+
+	public ResourcePool optimalPoolForNProcesses()
+	{
+		return this.optimalPoolForNProcesses.copy();
+	}
+
+	/**
+	 * @return the resource profile of 1 instance of the process, considering the probabilities of execution of the tasks
+	 */
+	public ResourceProfile oneProcessProfile()
+	{
+		return this.oneProcessProfile;
+	}
+
+	/**
+	 * @return the resource profile of n instances of the process, considering the probabilities of execution of the tasks
+	 */
+	public ResourceProfile nProcessesProfile()
+	{
+		return this.nProcessesProfile;
+	}
+}
@@ -0,0 +1,239 @@
+package resources;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A resource profile describes the resources used by a process along its execution as a
+ * piecewise-constant function of time: a list of consecutive segments [start ; end[ during
+ * which the pool of resources used does not change. Segments are sorted by start time and do
+ * not overlap, but there may be gaps between them (instants at which nothing executes).
+ * Times are real numbers, so that the profile does not depend on any time unit.
+ * Profiles are built by the optimizer and cannot be modified afterwards, so they can be shared
+ * by threads.
+ */
+public class ResourceProfile
+{
+	private final ArrayList<Segment> segments;
+
+	ResourceProfile()
+	{
+		this.segments = new ArrayList<>();
+	}
+
+	void addSegment(final double start,
+					final double end,
+					final DenseResourcePool pool)
+	{
+		if (end <= start)
+		{
+			throw new IllegalArgumentException("Segment [" + start + " ; " + end + "[ is empty.");
+		}
+
+		if (!this.segments.isEmpty()
+			&& start < this.segments.get(this.segments.size() - 1).end())
+		{
+			throw new IllegalArgumentException("Segment [" + start + " ; " + end + "[ overlaps the previous one.");
+		}
+
+		this.segments.add(new Segment(start, end, pool));
+	}
+
+	public List<Segment> segments()
+	{
+		return Collections.unmodifiableList(this.segments);
+	}
+
+	public boolean isEmpty()
+	{
+		return this.segments.isEmpty();
+	}
+
+	/**
+	 * @return the end of the last segment of the profile, 0 if the profile is empty
+	 */
+	public double end()
+	{
+		return this.segments.isEmpty() ? 0d : this.segments.get(this.segments.size() - 1).end();
+	}
+
+	/**
+	 * This function computes the maximal usage of the given resource over the profile.
+	 *
+	 * @param resource the resource considered
+	 * @return the maximal number of replicas of the resource used at any time
+	 */
+	public int maxUsageOf(final Resource resource)
+	{
+		int max = 0;
+
+		for (Segment segment : this.segments)
+		{
+			max = Math.max(max, segment.usageOf(resource));
+		}
+
+		return max;
+	}
+
+	/**
+	 * This function computes the maximal usage of each resource over the profile.
+	 *
+	 * @param globalResourceSet the set indexing the pools of the profile
+	 * @return a pool containing the maximal number of replicas of each resource used at any time
+	 */
+	public DenseResourcePool maximalUsage(final GlobalResourceSet globalResourceSet)
+	{
+		final DenseResourcePool maximalUsage = new DenseResourcePool(globalResourceSet);
+
+		for (Segment segment : this.segments)
+		{
+			maximalUsage.maxWith(segment.pool);
+		}
+
+		return maximalUsage;
+	}
+
+	/**
+	 * This function computes the integral over time of the usage of the given resource,
+	 * that is, the sum of its usage on each segment weighted by the duration of the segment.
+	 *
+	 * @param resource the resource considered
+	 * @return the total usage of the resource
+	 */
+	public double totalUsageOf(final Resource resource)
+	{
+		double total = 0d;
+
+		for (Segment segment : this.segments)
+		{
+			total += segment.usageOf(resource) * segment.duration();
+		}
+
+		return total;
+	}
+
+	/**
+	 * @param resource the resource considered
+	 * @return the average usage of the resource over [0 ; end()[
+	 */
+	public double averageUsageOf(final Resource resource)
+	{
+		return this.totalUsageOf(resource) / this.end();
+	}
+
+	/**
+	 * This function computes the absorbance of each resource given the real pool of resources,
+	 * that is, how much of its overuse (usage above the real pool) could be absorbed by its
+	 * underuse (usage below the real pool), both being weighted by the durations of the segments.
+	 *
+	 * @param resources the resources considered
+	 * @param realPool the real pool of resources
+	 * @return a map containing each overused resource as key, and its absorbance as value
+	 */
+	public HashMap<Resource, Integer> absorbance(final Collection<Resource> resources,
+												 final ResourcePool realPool)
+	{
+		final HashMap<Resource, Integer> absorbanceMap = new HashMap<>();
+		final HashMap<Resource, Double> exceedingUsage = new HashMap<>();
+		final HashMap<Resource, Double> recedingUsage = new HashMap<>();
+
+		for (Segment segment : this.segments)
+		{
+			for (Resource resource : resources)
+			{
+				final int currentUsage = segment.usageOf(resource);
+				final int maxUsage = realPool.getUsageOf(resource);
+
+				if (currentUsage > maxUsage)
+				{
+					//We are overusing the resource during the whole segment
+					final double overuse = (currentUsage - maxUsage) * segment.duration();
+					exceedingUsage.merge(resource, overuse, Double::sum);
+				}
+				else if (currentUsage < maxUsage)
+				{
+					//We are underusing the resource during the whole segment
+					final double underuse = (maxUsage - currentUsage) * segment.duration();
+					recedingUsage.merge(resource, underuse, Double::sum);
+				}
+			}
+		}
+
+		for (Resource resource : exceedingUsage.keySet())
+		{
+			final double totalOveruse = exceedingUsage.get(resource);
+			final double totalUnderuse = recedingUsage.getOrDefault(resource, 1d);
+			final int absorbance = (int) ((totalOveruse / (totalUnderuse * (double) 10)) * 100);
+			absorbanceMap.put(resource, absorbance);
+		}
+
+		return absorbanceMap;
+	}
+
+	//Override
+
+	@Override
+	public String toString()
+	{
+		final StringBuilder builder = new StringBuilder("\n\nThis resource profile contains the following segments:");
+
+		for (Segment segment : this.segments)
+		{
+			builder.append("\n    - [").append(segment.start()).append(" ; ").append(segment.end()).append("[:");
+
+			for (Resource resource : segment.pool().resources())
+			{
+				builder.append(" \"").append(resource.name()).append("\" x").append(segment.usageOf(resource));
+			}
+		}
+
+		return builder.toString();
+	}
+
+	public static class Segment
+	{
+		private final double start;
+		private final double end;
+		private final DenseResourcePool pool;
+
+		private Segment(final double start,
+						final double end,
+						final DenseResourcePool pool)
+		{
+			this.start = start;
+			this.end = end;
+			this.pool = pool;
+		}
+
+		public double start()
+		{
+			return this.start;
+		}
+
+		public double end()
+		{
+			return this.end;
+		}
+
+		public double duration()
+		{
+			return this.end - this.start;
+		}
+
+		public int usageOf(final Resource resource)
+		{
+			return this.pool.getUsageOf(resource);
+		}
+
+		/**
+		 * @return a copy of the pool of resources used on the segment
+		 */
+		public ResourcePool pool()
+		{
+			return this.pool.toResourcePool();
+		}
+	}
+}
@@ -1,74 +1,289 @@
 package simulator;
 
+import org.apache.commons.math3.distribution.TDistribution;
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import simulator.model.HistoryPolicy;
+import simulator.model.QuantileSketch;
 import simulator.model.SimulationResult;
 
 import java.time.Duration;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class SimulationResultsAggregator
 {
-	private SimulationResultsAggregator()
+	private int nbResults;
+	private Integer population;
+	private HistoryPolicy historyPolicy;
+	/*
+		Sketches of the exec times and sync times of the instances of all the replications
+	 */
+	private final QuantileSketch execTimeSketch;
+	private final Map<String, QuantileSketch> syncTimeSketches;
+	private Duration simulationTime;
+	private double totalExecutionTime;
+	private double avgExecTime;
+	private double totalCost;
+	private double totalEmissions;
+	private final Map<String, Double> usagePercentage;
+	private final Map<String, Map<Double, Integer>> avlHistory; //TODO A revoir
+	private final Map<String, Double> syncTimes;
+	private final Map<String, Map<Double, Double>> emissionsHistory; //TODO A revoir
+	private final Map<String, Map<Double, Double>> costHistory; //TODO A revoir
+	/*
+		Results of replications that completed before some of the previous ones, waiting to be merged in order
+	 */
+	private final TreeMap<Integer, SimulationResult> pendingResults;
+	/*
+		Statistics of the replications, used to compute the confidence intervals of the means
+	 */
+	private final SummaryStatistics avgExecTimeStatistics;
+	private final SummaryStatistics totalCostStatistics;
+	private final SummaryStatistics totalEmissionsStatistics;
+	private final double confidenceLevel;
+	/*
+		Stopping rule: the aggregation is complete once at least minResults results have been merged and the
+		confidence intervals of the means are narrower than the target precision (relative to the means)
+	 */
+	private double targetPrecision;
+	private int minResults;
+	private boolean complete;
+
+	public SimulationResultsAggregator()
 	{
+		this(0.95);
+	}
 
+	/**
+	 * @param confidenceLevel the level of the confidence intervals reported with the aggregated result (e.g. 0.95)
+	 */
+	public SimulationResultsAggregator(final double confidenceLevel)
+	{
+		if (confidenceLevel <= 0 || confidenceLevel >= 1) throw new IllegalArgumentException("The confidence level must be in (0,1) (got " + confidenceLevel + ").");
+		this.confidenceLevel = confidenceLevel;
+		this.avgExecTimeStatistics = new SummaryStatistics();
+		this.totalCostStatistics = new SummaryStatistics();
+		this.totalEmissionsStatistics = new SummaryStatistics();
+		this.targetPrecision = -1;
+		this.minResults = 0;
+		this.complete = false;
+		this.nbResults = 0;
+		this.simulationTime = Duration.ZERO;
+		this.usagePercentage = new HashMap<>();
+		this.avlHistory = new HashMap<>();
+		this.syncTimes = new HashMap<>();
+		this.emissionsHistory = new HashMap<>();
+		this.costHistory = new HashMap<>();
+		this.pendingResults = new TreeMap<>();
+		this.execTimeSketch = new QuantileSketch();
+		this.syncTimeSketches = new HashMap<>();
 	}
 
 	public static SimulationResult aggregate(final Collection<SimulationResult> simulationResults)
 	{
-		final double nbResults = simulationResults.size();
-		final SimulationResult firstResult = simulationResults.iterator().next();
-		final int population = firstResult.getPopulation();
-		Duration simulationTime = Duration.ZERO;
-		double totalExecutionTime = 0d;
-		double avgExecTime = 0d;
-		double totalCost = 0d;
-		double totalEmissions = 0d;
-		final Map<String, Double> usagePercentage = new HashMap<>();
-		final Map<String, Map<Double, Integer>> avlHistory = new HashMap<>(); //TODO A revoir
-		final Map<String, Double> syncTimes = new HashMap<>();
-		final Map<String, Map<Double, Double>> emissionsHistory = new HashMap<>(); //TODO A revoir
-		final Map<String, Map<Double, Double>> costHistory = new HashMap<>(); //TODO A revoir
+		final SimulationResultsAggregator aggregator = new SimulationResultsAggregator();
 
 		for (SimulationResult simulationResult : simulationResults)
 		{
-			simulationTime = simulationTime.plus(simulationResult.getSimulationTime());
-			totalExecutionTime += simulationResult.getTotalExecutionTime();
-			avgExecTime += simulationResult.getAvgExecTime();
-			totalCost += simulationResult.getTotalCost();
-			totalEmissions += simulationResult.getTotalEmissions();
+			aggregator.add(simulationResult);
+		}
 
-			for (String key : simulationResult.getUsagePercentage().keySet())
-			{
-				usagePercentage.put(key, usagePercentage.getOrDefault(key, 0d) + simulationResult.getUsagePercentage().get(key));
-			}
+		return aggregator.getAggregatedResult();
+	}
 
-			for (String key : simulationResult.getSyncTimes().keySet())
-			{
-				syncTimes.put(key, syncTimes.getOrDefault(key, 0d) + simulationResult.getSyncTimes().get(key));
-			}
+	/**
+	 * Merges the result of the given replication as soon as all the previous replications have been merged.
+	 * Replications running in parallel may complete in any order, but their results are always summed in the order of
+	 * the replications, so that the aggregated result does not depend on the number of threads.
+	 *
+	 * @param replication the index of the replication (starting from 0)
+	 * @param simulationResult the result of the replication
+	 */
+	public synchronized void add(final int replication,
+								 final SimulationResult simulationResult)
+	{
+		if (this.complete)
+		{
+			return;
+		}
+
+		this.pendingResults.put(replication, simulationResult);
+
+		while (!this.complete
+				&& !this.pendingResults.isEmpty()
+				&& this.pendingResults.firstKey() == this.nbResults)
+		{
+			this.merge(this.pendingResults.pollFirstEntry().getValue());
+			this.complete = this.targetPrecision >= 0 && this.isPrecise();
 		}
 
-		simulationTime = simulationTime.dividedBy(simulationResults.size());
-		totalExecutionTime = totalExecutionTime / nbResults;
-		avgExecTime = avgExecTime / nbResults;
-		totalCost = totalCost / nbResults;
-		totalEmissions = totalEmissions / nbResults;
+		if (this.complete)
+		{
+			this.pendingResults.clear();
+		}
+	}
+
+	/**
+	 * Sets a stopping rule: the aggregation is complete as soon as at least minResults results have been merged and
+	 * the half-widths of the confidence intervals of the average execution time, the cost and the emissions are all
+	 * lower than targetPrecision times their means.
+	 * The rule is checked after each result merged in order, so the number of results aggregated does not depend on
+	 * the order in which parallel replications complete. Results added once the aggregation is complete are ignored.
+	 *
+	 * @param targetPrecision the target half-width of the confidence intervals, relative to the means (e.g. 0.05)
+	 * @param minResults the minimal number of results to aggregate (at least 2 to estimate a variance)
+	 */
+	public synchronized void setStoppingRule(final double targetPrecision,
+											 final int minResults)
+	{
+		if (targetPrecision < 0) throw new IllegalArgumentException("The target precision must be positive (got " + targetPrecision + ").");
+		if (minResults < 2) throw new IllegalArgumentException("At least 2 results are needed to compute confidence intervals (got " + minResults + ").");
+		this.targetPrecision = targetPrecision;
+		this.minResults = minResults;
+	}
+
+	public synchronized boolean hasStoppingRule()
+	{
+		return this.targetPrecision >= 0;
+	}
+
+	/**
+	 * @return true if the stopping rule is satisfied
+	 */
+	public synchronized boolean isComplete()
+	{
+		return this.complete;
+	}
+
+	/**
+	 * Merges the given result after all the results merged so far.
+	 *
+	 * @param simulationResult the result to merge
+	 */
+	public synchronized void add(final SimulationResult simulationResult)
+	{
+		this.add(this.nbResults + this.pendingResults.size(), simulationResult);
+	}
+
+	public synchronized int nbResults()
+	{
+		return this.nbResults;
+	}
+
+	public synchronized SimulationResult getAggregatedResult()
+	{
+		final double nbResults = this.nbResults;
+		final Map<String, Double> usagePercentage = new HashMap<>(this.usagePercentage);
+		final Map<String, Double> syncTimes = new HashMap<>(this.syncTimes);
 		usagePercentage.replaceAll((k, v) -> usagePercentage.get(k) / nbResults);
 		syncTimes.replaceAll((k,v) -> syncTimes.get(k) / nbResults);
 
-		return new SimulationResult(
-				population,
-				simulationTime,
-				totalExecutionTime,
-				avgExecTime,
-				totalCost,
+		final SimulationResult aggregatedResult = new SimulationResult(
+				this.population,
+				this.simulationTime.dividedBy(this.nbResults),
+				this.totalExecutionTime / nbResults,
+				this.avgExecTime / nbResults,
+				this.totalCost / nbResults,
 				usagePercentage,
-				avlHistory,
+				this.avlHistory,
 				syncTimes,
-				totalEmissions,
-				emissionsHistory,
-				costHistory
+				this.totalEmissions / nbResults,
+				this.emissionsHistory,
+				this.costHistory
 		);
+		aggregatedResult.setHistoryPolicy(this.historyPolicy);
+		aggregatedResult.setExecTimeSketch(this.execTimeSketch.copy());
+		final Map<String, QuantileSketch> syncTimeSketches = new HashMap<>();
+		this.syncTimeSketches.forEach((k, v) -> syncTimeSketches.put(k, v.copy()));
+		aggregatedResult.setSyncTimeSketches(syncTimeSketches);
+		aggregatedResult.setNbReplications(this.nbResults);
+		aggregatedResult.setConfidenceLevel(this.confidenceLevel);
+		aggregatedResult.setAvgExecTimeHalfWidth(this.halfWidth(this.avgExecTimeStatistics));
+		aggregatedResult.setTotalCostHalfWidth(this.halfWidth(this.totalCostStatistics));
+		aggregatedResult.setTotalEmissionsHalfWidth(this.halfWidth(this.totalEmissionsStatistics));
+
+		return aggregatedResult;
+	}
+
+	//Private methods
+
+	private void merge(final SimulationResult simulationResult)
+	{
+		if (this.population == null)
+		{
+			this.population = simulationResult.getPopulation();
+			this.historyPolicy = simulationResult.getHistoryPolicy();
+		}
+
+		this.simulationTime = this.simulationTime.plus(simulationResult.getSimulationTime());
+		this.totalExecutionTime += simulationResult.getTotalExecutionTime();
+		this.avgExecTime += simulationResult.getAvgExecTime();
+		this.totalCost += simulationResult.getTotalCost();
+		this.totalEmissions += simulationResult.getTotalEmissions();
+
+		for (String key : simulationResult.getUsagePercentage().keySet())
+		{
+			this.usagePercentage.put(key, this.usagePercentage.getOrDefault(key, 0d) + simulationResult.getUsagePercentage().get(key));
+		}
+
+		for (String key : simulationResult.getSyncTimes().keySet())
+		{
+			this.syncTimes.put(key, this.syncTimes.getOrDefault(key, 0d) + simulationResult.getSyncTimes().get(key));
+		}
+
+		if (simulationResult.getExecTimeSketch() != null)
+		{
+			this.execTimeSketch.merge(simulationResult.getExecTimeSketch());
+		}
+
+		if (simulationResult.getSyncTimeSketches() != null)
+		{
+			for (Map.Entry<String, QuantileSketch> entry : simulationResult.getSyncTimeSketches().entrySet())
+			{
+				this.syncTimeSketches.computeIfAbsent(entry.getKey(), k -> new QuantileSketch()).merge(entry.getValue());
+			}
+		}
+
+		this.avgExecTimeStatistics.addValue(simulationResult.getAvgExecTime());
+		this.totalCostStatistics.addValue(simulationResult.getTotalCost());
+		this.totalEmissionsStatistics.addValue(simulationResult.getTotalEmissions());
+
+		this.nbResults++;
+	}
+
+	private boolean isPrecise()
+	{
+		return this.nbResults >= this.minResults
+				&& this.isPrecise(this.avgExecTimeStatistics)
+				&& this.isPrecise(this.totalCostStatistics)
+				&& this.isPrecise(this.totalEmissionsStatistics);
+	}
+
+	private boolean isPrecise(final SummaryStatistics statistics)
+	{
+		return this.halfWidth(statistics) <= this.targetPrecision * Math.abs(statistics.getMean());
+	}
+
+	/**
+	 * Computes the half-width of the Student confidence interval of the mean of the given statistics.
+	 *
+	 * @param statistics the statistics of the replications
+	 * @return the half-width of the confidence interval, NaN if there are less than 2 values
+	 */
+	private double halfWidth(final SummaryStatistics statistics)
+	{
+		final long n = statistics.getN();
+
+		if (n < 2)
+		{
+			return Double.NaN;
+		}
+
+		final TDistribution distribution = new TDistribution(null, n - 1);
+		final double quantile = distribution.inverseCumulativeProbability(1 - (1 - this.confidenceLevel) / 2);
+
+		return quantile * statistics.getStandardDeviation() / Math.sqrt(n);
 	}
 }
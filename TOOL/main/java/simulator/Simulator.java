@@ -20,6 +20,8 @@ import simulator.transform.intermediate.BpmnWorkflow;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class Simulator
 {
@@ -32,6 +34,12 @@ public class Simulator
 	private final ResourcePool availablePool;
 	private final AbstractRealDistribution iat;
 	private final int nbInstances;
+	private int parallelism;
+	private Long seed;
+	private HistoryPolicy historyPolicy;
+	private boolean compiled;
+	private BpmnWorkflow bpmnWorkflow;
+	private Workflow workflow;
 
 	public Simulator(final File bpmnFile,
 					 final Collection<BpmnProcessObject> objects,
@@ -46,13 +54,62 @@ public class Simulator
 		this.availablePool = resourcePool;
 		this.iat = iat;
 		this.nbInstances = nbInstances;
+		this.parallelism = 1;
+		this.seed = null;
+		this.historyPolicy = HistoryPolicy.FULL;
+		this.compiled = false;
+	}
+
+	/**
+	 * Sets the number of replications run at the same time. Replications are independent, each of them running on its
+	 * own copy of the workflow with its own random stream, so their results do not depend on the degree of
+	 * parallelism.
+	 *
+	 * @param parallelism the number of replications run at the same time (1 runs them on the calling thread)
+	 */
+	public void setParallelism(final int parallelism)
+	{
+		if (parallelism < 1) throw new IllegalArgumentException("The degree of parallelism must be positive (got " + parallelism + ").");
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Sets the seed from which the random streams of the replications are split.
+	 * Seeded replications are reproducible bit for bit, whatever the degree of parallelism.
+	 *
+	 * @param seed the seed of the replications
+	 */
+	public void setSeed(final long seed)
+	{
+		this.seed = seed;
+	}
+
+	/**
+	 * Sets how the histories of cost, emissions and resource usage of the replications are recorded.
+	 *
+	 * @param historyPolicy the history policy of the replications
+	 */
+	public void setHistoryPolicy(final HistoryPolicy historyPolicy)
+	{
+		this.historyPolicy = historyPolicy;
+	}
+
+	/**
+	 * Runs the replications on the compiled engine of the simulation (see Simulation.setCompiled), which falls back to
+	 * the object model for processes it does not support.
+	 *
+	 * @param compiled true to run the replications on the compiled process
+	 */
+	public void setCompiled(final boolean compiled)
+	{
+		this.compiled = compiled;
 	}
 
 	public ArrayList<SimulationResult> simulateMultipleInstances()
 	{
 		try
 		{
-			return this.simulate(this.bpmnFile, NB_REP, this.nbInstances);
+			return this.simulate(NB_REP, this.nbInstances, null);
 		}
 		catch (IOException e)
 		{
@@ -64,19 +121,79 @@ public class Simulator
 	{
 		try
 		{
-			return this.simulate(this.bpmnFile, NB_REP, 1);
+			return this.simulate(NB_REP, 1, null);
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Simulates the process NB_REP times and merges the results of the replications as they complete.
+	 *
+	 * @return the aggregated result of the replications
+	 */
+	public SimulationResult simulateMultipleInstancesAggregated()
+	{
+		final SimulationResultsAggregator aggregator = new SimulationResultsAggregator();
+
+		try
+		{
+			this.simulate(NB_REP, this.nbInstances, aggregator);
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+
+		return aggregator.getAggregatedResult();
+	}
+
+	/**
+	 * Simulates the process until the results are precise enough: replications are run until the half-widths of the
+	 * confidence intervals of the average execution time, the cost and the emissions are all lower than the given
+	 * fraction of their means, with at least minRep and at most maxRep replications.
+	 * Parallel replications are run by waves of the degree of parallelism, and the results of the replications
+	 * following the one satisfying the stopping rule are discarded, so that the number of replications (and hence the
+	 * result) does not depend on the degree of parallelism.
+	 *
+	 * @param relativePrecision the target half-width of the confidence intervals, relative to the means (e.g. 0.05)
+	 * @param confidenceLevel the level of the confidence intervals (e.g. 0.95)
+	 * @param minRep the minimal number of replications (at least 2)
+	 * @param maxRep the maximal number of replications
+	 * @return the aggregated result of the replications, with the number of replications and the achieved precision
+	 */
+	public SimulationResult simulateMultipleInstancesAggregated(final double relativePrecision,
+																final double confidenceLevel,
+																final int minRep,
+																final int maxRep)
+	{
+		if (maxRep < minRep) throw new IllegalArgumentException("The maximal number of replications (" + maxRep + ") is lower than the minimal one (" + minRep + ").");
+
+		final SimulationResultsAggregator aggregator = new SimulationResultsAggregator(confidenceLevel);
+		aggregator.setStoppingRule(relativePrecision, minRep);
+
+		try
+		{
+			this.simulate(maxRep, this.nbInstances, aggregator);
 		}
 		catch (IOException e)
 		{
 			throw new RuntimeException(e);
 		}
+
+		final SimulationResult simulationResult = aggregator.getAggregatedResult();
+		logger.debug("{} replications run ({} the target precision of {}).", simulationResult.getNbReplications(), aggregator.isComplete() ? "reaching" : "not reaching", relativePrecision);
+
+		return simulationResult;
 	}
 
 	//Private methods
 
-	private ArrayList<SimulationResult> simulate(final File bpmnFile,
-												 final int nbRep,
-												 final int nbInstances) throws IOException
+	private ArrayList<SimulationResult> simulate(final int nbRep,
+												 final int nbInstances,
+												 final SimulationResultsAggregator aggregator) throws IOException
 	{
 		final ArrayList<SimulationResult> simulationResults = new ArrayList<>();
 
@@ -93,76 +210,243 @@ public class Simulator
 		final ListToGraph listToGraph = new ListToGraph(myParser.bpmnProcess().objects());
 		System.out.println("Graph:\n\n" + listToGraph.convert().toString());*/
 
-		for (int i = 0; i < nbRep; i++)
+		final RandomStreams[] randomStreams = this.splitRandomStreams(nbRep);
+
+		if (this.parallelism == 1)
 		{
-			final InputStream inputStream = new FileInputStream(bpmnFile);
-			final BpmnXmlParser parser = new BpmnXmlParser(inputStream);
-			parser.handle();
-			final BpmnWorkflow bpmnWorkflow = parser.getOutputWorklow();
-			final BpmnWorkflowTransformer transformer = new BpmnWorkflowTransformer(bpmnWorkflow);
-			transformer.transform();
-			final Workflow workflow = transformer.getWorkflow();
-			inputStream.close();
-
-			//Associate resource instances
-			for (BpmnProcessObject object : this.objects)
+			final Workflow workflow = this.getWorkflow();
+
+			for (int i = 0; i < nbRep; i++)
 			{
-				if (object instanceof bpmn.types.process.Task)
+				if (aggregator != null
+					&& aggregator.isComplete())
 				{
-					final bpmn.types.process.Task task = (bpmn.types.process.Task) object;
-					final Map<String, Integer> currentMap = new HashMap<>();
+					break;
+				}
 
-					for (Resource resource : task.resourceUsage().resources())
-					{
-						currentMap.put(resource.name(), task.resourceUsage().getUsageOf(resource));
-					}
+				final SimulationResult simulationResult = this.replicate(workflow, nbInstances, randomStreams[i]);
+				simulationResults.add(simulationResult);
 
-					((Task) workflow.getNodes().get(task.id())).setRequiredResources(currentMap);
+				if (aggregator != null)
+				{
+					aggregator.add(i, simulationResult);
 				}
+
+				//System.out.println("Finished simulation n°" + i);
 			}
+		}
+		else
+		{
+			//Each thread simulates its own copy of the workflow
+			final BpmnWorkflow bpmnWorkflow = this.getBpmnWorkflow();
+			final ThreadLocal<Workflow> workflows = ThreadLocal.withInitial(() -> this.buildWorkflow(bpmnWorkflow));
+			final ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+			//With a stopping rule, replications are run by waves so that few of them are run uselessly
+			final int waveSize = aggregator != null && aggregator.hasStoppingRule() ? this.parallelism : nbRep;
 
-			//Set durations (task/flow)
-			for (BpmnProcessObject object : this.objects)
+			try
 			{
-				if (object instanceof bpmn.types.process.Task)
+				for (int start = 0; start < nbRep; start += waveSize)
 				{
-					final bpmn.types.process.Task task = (bpmn.types.process.Task) object;
-					((Task) workflow.getNodes().get(task.id())).setDuration(new ConstantRealDistribution(task.duration()));
+					if (aggregator != null
+						&& aggregator.isComplete())
+					{
+						break;
+					}
+
+					final List<ForkJoinTask<SimulationResult>> replications = new ArrayList<>();
+
+					for (int i = start; i < Math.min(start + waveSize, nbRep); i++)
+					{
+						final int replication = i;
+
+						replications.add(pool.submit(() ->
+						{
+							final SimulationResult simulationResult = this.replicate(workflows.get(), nbInstances, randomStreams[replication]);
+
+							if (aggregator != null)
+							{
+								aggregator.add(replication, simulationResult);
+							}
+
+							return simulationResult;
+						}));
+					}
+
+					for (ForkJoinTask<SimulationResult> replication : replications)
+					{
+						simulationResults.add(replication.join());
+					}
 				}
-				else if (object instanceof bpmn.types.process.SequenceFlow)
+
+				if (aggregator != null
+					&& simulationResults.size() > aggregator.nbResults())
 				{
-					final SequenceFlow sequenceFlow = (SequenceFlow) object;
-					(workflow.getFlows().get(sequenceFlow.id())).setDelay(sequenceFlow.duration());
+					//Discard the replications run after the stopping rule was satisfied
+					simulationResults.subList(aggregator.nbResults(), simulationResults.size()).clear();
 				}
 			}
+			finally
+			{
+				pool.shutdown();
+			}
+		}
+
+		//System.out.println("Finished simulation of process \"refactored_process_" + index + ".bpmn\"");
+
+		return simulationResults;
+	}
+
+	private SimulationResult replicate(final Workflow workflow,
+									   final int nbInstances,
+									   final RandomStreams randomStreams)
+	{
+		final List<Node> startEvents = new ArrayList<>(workflow.getStartEvents());
+		final Simulation sequenceSim = new Simulation((StartEvent) startEvents.get(0));
+
+		if (randomStreams != null)
+		{
+			sequenceSim.setRandomStreams(randomStreams);
+		}
+
+		sequenceSim.setHistoryPolicy(this.historyPolicy);
+		sequenceSim.setCompiled(this.compiled);
+
+		// Generate resources
+		final Map<String, Integer> availableResources = new HashMap<>();
+
+		for (Resource resource : this.globalResourceSet.resourcesSet())
+		{
+			sequenceSim.addResource(ResourceBank.createResource(resource.name(), resource.cost()));
+			//System.out.println("Resource cost: " + resource.cost());
+			availableResources.put(resource.name(), this.availablePool.getUsageOf(resource));
+		}
+
+		sequenceSim.runSimulation(availableResources, nbInstances, this.iat);
+
+		if (!sequenceSim.getTokens().isEmpty())
+		{
+			throw new IllegalStateException("Tokens are not empty at the end of the simulation!");
+		}
+
+		return sequenceSim.getSimulationResult();
+	}
+
+	/**
+	 * Splits the random streams of each replication from the seed of the simulator.
+	 * Seeds are split in the order of the replications, before any of them is run, so that each replication gets the
+	 * same streams whatever the thread running it.
+	 * As the i-th replications of two simulators with the same seed get the same streams, simulators of the same
+	 * process with different resource pools are compared on the same sampled workloads (common random numbers).
+	 * Unseeded sequential replications keep the own generators of the distributions, while unseeded parallel ones
+	 * (which can not share these generators) get streams split from a random seed.
+	 *
+	 * @param nbRep the number of replications
+	 * @return the random streams of the replications (null streams for unseeded sequential replications)
+	 */
+	private RandomStreams[] splitRandomStreams(final int nbRep)
+	{
+		final RandomStreams[] randomStreams = new RandomStreams[nbRep];
+
+		if (this.seed == null
+			&& this.parallelism == 1)
+		{
+			return randomStreams;
+		}
 
-			final List<Node> startEvents = new ArrayList<>(workflow.getStartEvents());
-			final Simulation sequenceSim = new Simulation((StartEvent) startEvents.get(0));
+		final SplittableRandom master = this.seed == null ? new SplittableRandom() : new SplittableRandom(this.seed);
 
-			// Generate resources
-			final Map<String, Integer> availableResources = new HashMap<>();
+		for (int i = 0; i < nbRep; i++)
+		{
+			randomStreams[i] = new RandomStreams(master.split().nextLong());
+		}
+
+		return randomStreams;
+	}
 
-			for (Resource resource : this.globalResourceSet.resourcesSet())
+	/**
+	 * Builds the workflow of the sequential replications the first time it is needed.
+	 * The workflow is then reused by all these replications, the per-execution state of its elements being kept by each simulation.
+	 *
+	 * @return the workflow to simulate
+	 * @throws IOException if the BPMN file can not be read
+	 */
+	private Workflow getWorkflow() throws IOException
+	{
+		if (this.workflow == null)
+		{
+			this.workflow = this.buildWorkflow(this.getBpmnWorkflow());
+		}
+
+		return this.workflow;
+	}
+
+	/**
+	 * Parses the BPMN file the first time it is needed.
+	 *
+	 * @return the parsed BPMN workflow
+	 * @throws IOException if the BPMN file can not be read
+	 */
+	private BpmnWorkflow getBpmnWorkflow() throws IOException
+	{
+		if (this.bpmnWorkflow == null)
+		{
+			try (final InputStream inputStream = new FileInputStream(this.bpmnFile))
 			{
-				sequenceSim.addResource(ResourceBank.createResource(resource.name(), resource.cost()));
-				//System.out.println("Resource cost: " + resource.cost());
-				availableResources.put(resource.name(), this.availablePool.getUsageOf(resource));
+				final BpmnXmlParser parser = new BpmnXmlParser(inputStream);
+				parser.handle();
+				this.bpmnWorkflow = parser.getOutputWorklow();
 			}
+		}
+
+		return this.bpmnWorkflow;
+	}
 
-			sequenceSim.runSimulation(availableResources, nbInstances, this.iat);
+	/**
+	 * Transforms the parsed BPMN workflow into a workflow, and associates the resource usages and durations of the
+	 * tasks and flows to it.
+	 *
+	 * @param bpmnWorkflow the parsed BPMN workflow
+	 * @return the workflow to simulate
+	 */
+	private Workflow buildWorkflow(final BpmnWorkflow bpmnWorkflow)
+	{
+		final BpmnWorkflowTransformer transformer = new BpmnWorkflowTransformer(bpmnWorkflow);
+		transformer.transform();
+		final Workflow workflow = transformer.getWorkflow();
 
-			if (!sequenceSim.getTokens().isEmpty())
+		//Associate resource instances
+		for (BpmnProcessObject object : this.objects)
+		{
+			if (object instanceof bpmn.types.process.Task)
 			{
-				throw new IllegalStateException("Tokens are not empty at the end of the simulation!");
-			}
+				final bpmn.types.process.Task task = (bpmn.types.process.Task) object;
+				final Map<String, Integer> currentMap = new HashMap<>();
 
-			simulationResults.add(sequenceSim.getSimulationResult());
+				for (Resource resource : task.resourceUsage().resources())
+				{
+					currentMap.put(resource.name(), task.resourceUsage().getUsageOf(resource));
+				}
 
-			//System.out.println("Finished simulation n°" + i);
+				((Task) workflow.getNodes().get(task.id())).setRequiredResources(currentMap);
+			}
 		}
 
-		//System.out.println("Finished simulation of process \"refactored_process_" + index + ".bpmn\"");
+		//Set durations (task/flow)
+		for (BpmnProcessObject object : this.objects)
+		{
+			if (object instanceof bpmn.types.process.Task)
+			{
+				final bpmn.types.process.Task task = (bpmn.types.process.Task) object;
+				((Task) workflow.getNodes().get(task.id())).setDuration(new ConstantRealDistribution(task.duration()));
+			}
+			else if (object instanceof bpmn.types.process.SequenceFlow)
+			{
+				final SequenceFlow sequenceFlow = (SequenceFlow) object;
+				(workflow.getFlows().get(sequenceFlow.id())).setDelay(sequenceFlow.duration());
+			}
+		}
 
-		return simulationResults;
+		return workflow;
 	}
 }
@@ -0,0 +1,154 @@
+// Copyright 2022 Voyance Systems
+
+package simulator.model;
+
+import org.javatuples.Triplet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * An AssignmentEvaluator decides which simulations the resource optimizers (HillClimbing, SimulatedAnnealing) run to
+ * evaluate their candidate assignments, and which candidates are worth considering. The optimizers provide the
+ * simulations, with their own seeds, cache and parallelism (see CachedSimulations), and only consider the candidates
+ * returned, whose results must be full-fidelity ones (simulations of the whole population), comparable with each
+ * other.
+ */
+public interface AssignmentEvaluator {
+
+    /**
+     * Evaluates candidate assignments.
+     *
+     * @param candidates  candidate assignments
+     * @param population  population of the full-fidelity simulations
+     * @param simulations simulations of the optimizer
+     * @return full-fidelity results (AET, cost, emissions) of the candidates retained, in the order of the candidates
+     */
+    Map<Map<String, Integer>, Triplet<Double, Double, Double>> evaluate(List<Map<String, Integer>> candidates, int population, Simulations simulations);
+
+    /**
+     * @return number of full-fidelity simulations requested so far
+     */
+    long getFullSimulations();
+
+    /**
+     * @return number of full-fidelity simulations avoided so far, as candidates were not retained
+     */
+    long getSavedSimulations();
+
+    /**
+     * Simulations provided by an optimizer.
+     */
+    @FunctionalInterface
+    interface Simulations {
+        /**
+         * Simulates assignments, possibly at the same time. With common random numbers, the simulations of the same
+         * replication use the same random streams, and different replications use different ones.
+         *
+         * @param assignments assignments to simulate
+         * @param population  population of the simulations
+         * @param replication number of the replication, from 0
+         * @return results of the simulations, in the same order
+         */
+        List<Triplet<Double, Double, Double>> run(List<Map<String, Integer>> assignments, int population, int replication);
+    }
+
+    /**
+     * Simulations of the optimizers (HillClimbing, ParetoOptimizer, SimulatedAnnealing): results are taken from the
+     * cache when it has them, and the simulations run are put in it. With common random numbers, the simulations of
+     * replication r are seeded with the common seed plus r. Otherwise, each simulation gets random streams whose seed
+     * is derived from the given search seed, the assignment and the replication, so that its result does not depend on
+     * the search, chain or thread running it first and is cached under that seed. Without search seed, simulations use
+     * the generators of the distributions of the process; replications then only differ by their draws, which the
+     * cache can not tell apart, so only replication 0 is cached.
+     */
+    final class CachedSimulations implements Simulations {
+        private final StartEvent sv;
+        private final Set<Resource> resources;
+        private final Long commonSeed;
+        private final SimulationCache cache;
+        private final ForkJoinPool pool;
+        private final Long searchSeed;
+
+        /**
+         * @param sv          start event of the process
+         * @param resources   set of resources
+         * @param commonSeed  seed of the common random numbers, null if they are not used
+         * @param cache       cache of simulation results, null to run all the simulations
+         * @param pool        pool running the simulations, null to run them on the calling thread
+         * @param searchSeed  seed from which the seeds of the random streams of the simulations without common random
+         *                    numbers are derived, null to use the generators of the distributions of the process
+         */
+        public CachedSimulations(StartEvent sv, Set<Resource> resources, Long commonSeed, SimulationCache cache, ForkJoinPool pool, Long searchSeed) {
+            this.sv = sv;
+            this.resources = resources;
+            this.commonSeed = commonSeed;
+            this.cache = cache;
+            this.pool = pool;
+            this.searchSeed = searchSeed;
+        }
+
+        @Override
+        public List<Triplet<Double, Double, Double>> run(List<Map<String, Integer>> assignments, int population, int replication) {
+            List<Triplet<Double, Double, Double>> results = new ArrayList<>(assignments.size());
+            List<ForkJoinTask<Triplet<Double, Double, Double>>> tasks = pool == null ? null : new ArrayList<>(assignments.size());
+            for (Map<String, Integer> assignment : assignments) {
+                if (pool == null) {
+                    results.add(run(assignment, population, replication));
+                } else {
+                    tasks.add(pool.submit(() -> run(assignment, population, replication)));
+                }
+            }
+            if (pool != null) {
+                for (ForkJoinTask<Triplet<Double, Double, Double>> task : tasks) {
+                    results.add(task.join());
+                }
+            }
+            return results;
+        }
+
+        private Triplet<Double, Double, Double> run(Map<String, Integer> assignment, int population, int replication) {
+            Long seed = seed(assignment, replication);
+            if (cache == null || seed == null && replication > 0) {
+                return newSimulation(seed).runSimulation(assignment, population);
+            }
+            Triplet<Double, Double, Double> result = cache.get(assignment, population, seed);
+            if (result == null) {
+                result = cache.put(assignment, population, seed, newSimulation(seed).runSimulation(assignment, population));
+            }
+            return result;
+        }
+
+        /**
+         * Seed of the random streams of a simulation, null if it is unseeded. Without common random numbers, it only
+         * depends on the search seed, the assignment (in the order of its resources) and the replication.
+         */
+        private Long seed(Map<String, Integer> assignment, int replication) {
+            if (commonSeed != null) {
+                return commonSeed + replication;
+            }
+            if (searchSeed == null) {
+                return null;
+            }
+            long seed = RandomStreams.mix(searchSeed);
+            for (Map.Entry<String, Integer> e : new TreeMap<>(assignment).entrySet()) {
+                seed = RandomStreams.mix(seed + e.getKey().hashCode());
+                seed = RandomStreams.mix(seed + e.getValue());
+            }
+            return RandomStreams.mix(seed + replication);
+        }
+
+        private Simulation newSimulation(Long seed) {
+            Simulation sim = new Simulation(sv, resources);
+            if (seed != null) {
+                sim.setSeed(seed);
+            }
+            return sim;
+        }
+    }
+}
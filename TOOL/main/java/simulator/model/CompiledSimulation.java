@@ -0,0 +1,553 @@
+// Copyright 2022 Voyance Systems
+
+package simulator.model;
+
+import org.apache.commons.math3.distribution.AbstractRealDistribution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import simulator.trace.TraceSink;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * The CompiledSimulation class runs one simulation of a compiled process (see CompiledWorkflow). It follows the event
+ * loop of Simulation step by step, with the readiness checks and actions of the flow elements inlined, but tokens are
+ * slots in primitive arrays: the queue is a binary heap of slots ordered by absolute timestamp, with the same
+ * algorithm as TokenQueue, and the tokens of each execution are chained in the order in which they were queued, which
+ * is the order of the index of TokenQueue. Both engines therefore process the same events in the same order, and the
+ * results of a compiled simulation are those of the event calendar mode for the same seed. Once run, the results are
+ * copied to the simulation (exec times, sync times, pending tokens), which builds its SimulationResult as usual.
+ */
+class CompiledSimulation {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompiledSimulation.class);
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final CompiledWorkflow w;
+    private final Simulation simulation;
+    private final ResourceBank bank;
+    private final ResourceBank.SimulationResource[] resources;
+    private final ResourceBank.SimulationResource[][] demands;
+    /**
+     * random stream of each element when seeded, generator of the gateway choices otherwise
+     */
+    private final SplittableRandom[] streams;
+    private final SplittableRandom arrivals;
+    private final Random random = new Random();
+    private double gtime;
+
+    // tokens: execution, location and absolute timestamp of each slot, and free slots
+    private int[] exec = new int[DEFAULT_CAPACITY];
+    private int[] at = new int[DEFAULT_CAPACITY];
+    private double[] time = new double[DEFAULT_CAPACITY];
+    private int[] nextFree = new int[DEFAULT_CAPACITY];
+    private int free = -1, slots = 0;
+    // heap of slots, and position of each slot in it (-1 if it is not queued)
+    private int[] heap = new int[DEFAULT_CAPACITY];
+    private int[] position = new int[DEFAULT_CAPACITY];
+    private int size = 0;
+    // queued tokens of each execution, in queuing order
+    private int[] next = new int[DEFAULT_CAPACITY], previous = new int[DEFAULT_CAPACITY];
+    private int[] first, last;
+
+    // per-execution results: start time, exec time (NaN until ended), and for each merge, arrival of the first token
+    // and sync time (NaN if none)
+    private double[] startTimes, execTimes;
+    private double[] syncTimestamps, syncTimes;
+    private int[] syncCounters;
+
+    CompiledSimulation(CompiledWorkflow w, Simulation simulation) {
+        this.w = w;
+        this.simulation = simulation;
+        this.bank = simulation.getResources();
+        this.resources = bank.getResources(w.resourceIds);
+        this.demands = new ResourceBank.SimulationResource[w.ids.length][];
+        for (int i = 0; i < w.ids.length; i++) {
+            if (w.demands[i] != null) {
+                demands[i] = new ResourceBank.SimulationResource[w.demands[i].length];
+                for (int j = 0; j < w.demands[i].length; j++) {
+                    demands[i][j] = resources[w.demands[i][j]];
+                }
+            }
+        }
+        RandomStreams randomStreams = simulation.getRandomStreams();
+        if (randomStreams == null) {
+            streams = null;
+            arrivals = null;
+        } else {
+            streams = new SplittableRandom[w.ids.length];
+            for (int i = 0; i < w.ids.length; i++) {
+                if (w.distributions[i] != null || w.kind[i] == CompiledWorkflow.EXCLUSIVE || w.kind[i] == CompiledWorkflow.INCLUSIVE) {
+                    streams[i] = randomStreams.stream(w.ids[i]);
+                }
+            }
+            arrivals = randomStreams.stream(RandomStreams.ARRIVALS);
+        }
+        this.syncCounters = new int[w.mergeIds.length];
+        Arrays.fill(syncCounters, -1);
+    }
+
+    /**
+     * Simulates the given population, with the eager workload of Simulation, and copies the results to the
+     * simulation.
+     *
+     * @param population       number of executions
+     * @param interArrivalTime distribution of the inter-arrival times
+     * @param sink             trace sink, null if the simulation is not traced
+     */
+    void run(int population, AbstractRealDistribution interArrivalTime, TraceSink sink) {
+        first = new int[population];
+        last = new int[population];
+        Arrays.fill(first, -1);
+        Arrays.fill(last, -1);
+        startTimes = new double[population];
+        execTimes = new double[population];
+        Arrays.fill(execTimes, Double.NaN);
+        syncTimestamps = new double[population * w.mergeIds.length];
+        syncTimes = new double[population * w.mergeIds.length];
+        Arrays.fill(syncTimestamps, Double.NaN);
+        Arrays.fill(syncTimes, Double.NaN);
+        double t = 0;
+        for (int i = 0; i < population; i++) {
+            offer(newToken(i, w.start, t));
+            t += arrivals == null ? interArrivalTime.sample() : interArrivalTime.inverseCumulativeProbability(arrivals.nextDouble());
+        }
+        loop(sink);
+        simulation.gtime = gtime;
+        export(population);
+    }
+
+    /**
+     * Event loop, as Simulation.run(TraceSink) in event calendar mode.
+     */
+    private void loop(TraceSink sink) {
+        int[] shifted = new int[DEFAULT_CAPACITY];
+        int nShifted = 0;
+        boolean exit = false;
+        while (!exit && size > 0) {
+            // traverse the tokens queue until a ready one is found
+            int t = heap[0];
+            boolean stop = false;
+            while (!stop && !isReady(w.node[at[t]], t)) {
+                if (timer(t) > 0) {
+                    stop = true;
+                } else {
+                    if (nShifted == shifted.length) {
+                        shifted = Arrays.copyOf(shifted, nShifted * 2);
+                    }
+                    shifted[nShifted++] = poll();
+                    if (size == 0) {
+                        stop = true;
+                    } else {
+                        t = heap[0];
+                    }
+                }
+            }
+            if (size == 0) {
+                exit = true;
+            } else {
+                if (timer(t) > 0) {
+                    // shifted tokens are rescheduled at the current time when they are offered again
+                    gtime = time[t];
+                }
+                int e = w.node[at[t]];
+                if (isReady(e, t)) {
+                    if (sink != null) {
+                        try {
+                            sink.trace(exec[t], w.ids[at[t]], gtime);
+                        } catch (IOException ioe) {
+                            logger.debug("Trace file cannot be written", ioe);
+                            sink = null;
+                        }
+                    }
+                    run(e, t);
+                }
+            }
+            for (int i = 0; i < nShifted; i++) {
+                offer(shifted[i]);
+            }
+            nShifted = 0;
+        }
+    }
+
+    /**
+     * Readiness of element e for the token t at the front of the queue, as the isReady methods of the elements.
+     */
+    private boolean isReady(int e, int t) {
+        int x = exec[t];
+        switch (w.kind[e]) {
+            case CompiledWorkflow.START:
+                return true;
+            case CompiledWorkflow.END:
+                return at[t] == w.incoming[e] || at[t] == e;
+            case CompiledWorkflow.TASK:
+                return timer(t) == 0 && (at[t] == w.incoming[e] && resourcesAvailable(e) || at[t] == e);
+            case CompiledWorkflow.PARALLEL:
+                int m = w.merge[e];
+                if (m >= 0) {
+                    // if it is the first token to get to the gate, save the timestamp
+                    int k = x * w.mergeIds.length + m;
+                    if (Double.isNaN(syncTimestamps[k])) {
+                        syncTimestamps[k] = gtime;
+                    }
+                    if (syncCounters[m] < 0) {
+                        syncCounters[m] = 0;
+                    }
+                }
+                for (int f : w.incomingFlows[e]) {
+                    if (readyToken(x, f) < 0) return false;
+                }
+                return true;
+            default:
+                for (int f : w.incomingFlows[e]) {
+                    if (readyToken(x, f) >= 0) return true;
+                }
+                return false;
+        }
+    }
+
+    /**
+     * Action of element e for the token t at the front of the queue, as the run methods of the elements.
+     */
+    private void run(int e, int t) {
+        int x = exec[t];
+        switch (w.kind[e]) {
+            case CompiledWorkflow.START:
+                poll();
+                move(t, w.outgoing[e]);
+                offer(t);
+                startTimes[x] = gtime;
+                break;
+            case CompiledWorkflow.END:
+                poll();
+                if (at[t] == w.incoming[e]) {
+                    at[t] = e;
+                    offer(t);
+                } else {
+                    // if multiple end events, the last one prevails
+                    execTimes[x] = gtime - startTimes[x];
+                    release(t);
+                }
+                break;
+            case CompiledWorkflow.TASK:
+                poll();
+                if (at[t] == w.incoming[e]) {
+                    bank.grabResources(demands[e], w.amounts[e], gtime);
+                    move(t, e);
+                } else {
+                    bank.releaseResources(demands[e], w.amounts[e], gtime);
+                    move(t, w.outgoing[e]);
+                }
+                offer(t);
+                break;
+            case CompiledWorkflow.PARALLEL:
+                int[] incoming = w.incomingFlows[e];
+                int[] ready = new int[incoming.length];
+                for (int i = 0; i < incoming.length; i++) {
+                    ready[i] = readyToken(x, incoming[i]);
+                }
+                removeTokens(ready);
+                for (int f : w.outgoingFlows[e]) {
+                    offer(newToken(x, f));
+                }
+                int m = w.merge[e];
+                if (m >= 0) {
+                    int k = x * w.mergeIds.length + m;
+                    syncTimes[k] = gtime - syncTimestamps[k];
+                    syncTimestamps[k] = Double.NaN;
+                    syncCounters[m]++;
+                }
+                break;
+            case CompiledWorkflow.EXCLUSIVE:
+                release(poll());
+                double p = choice(e);
+                double[] acum = w.probabilities[e];
+                // branches' probabilities must sum up 1, the object model fails otherwise
+                int i = 0;
+                while (acum[i] < p && i < acum.length - 1) {
+                    i++;
+                }
+                offer(newToken(x, w.outgoingFlows[e][i]));
+                break;
+            default:
+                release(poll());
+                double[] probabilities = w.probabilities[e];
+                boolean[] chosen = new boolean[probabilities.length];
+                for (int j = 0; j < probabilities.length; j++) {
+                    chosen[j] = probabilities[j] > choice(e);
+                }
+                for (int j = 0; j < chosen.length; j++) {
+                    if (chosen[j]) {
+                        offer(newToken(x, w.outgoingFlows[e][j]));
+                    }
+                }
+        }
+    }
+
+    private boolean resourcesAvailable(int e) {
+        ResourceBank.SimulationResource[] rs = demands[e];
+        int[] amounts = w.amounts[e];
+        for (int i = 0; i < rs.length; i++) {
+            if (rs[i].getNumberOfAvailableInstances() < amounts[i]) return false;
+        }
+        return true;
+    }
+
+    private double timer(int t) {
+        return time[t] - gtime;
+    }
+
+    /**
+     * Moves the (unqueued) token t to element e, setting its timer with the delay or duration of e.
+     */
+    private void move(int t, int e) {
+        at[t] = e;
+        time[t] = gtime + sample(e);
+    }
+
+    private double sample(int e) {
+        if (!Double.isNaN(w.constants[e])) {
+            return w.constants[e];
+        }
+        return streams == null ? w.distributions[e].sample() : w.distributions[e].inverseCumulativeProbability(streams[e].nextDouble());
+    }
+
+    private double choice(int e) {
+        return streams == null ? random.nextDouble() : streams[e].nextDouble();
+    }
+
+    /**
+     * First token of the given execution with timer zero at the given element, -1 if there is none.
+     */
+    private int readyToken(int x, int e) {
+        for (int t = first[x]; t >= 0; t = next[t]) {
+            if (at[t] == e && timer(t) == 0) return t;
+        }
+        return -1;
+    }
+
+    private int newToken(int x, int e) {
+        int t = newToken(x, e, 0);
+        time[t] = gtime + sample(e);
+        return t;
+    }
+
+    private int newToken(int x, int e, double timer) {
+        int t;
+        if (free >= 0) {
+            t = free;
+            free = nextFree[t];
+        } else {
+            if (slots == exec.length) {
+                int capacity = slots * 2;
+                exec = Arrays.copyOf(exec, capacity);
+                at = Arrays.copyOf(at, capacity);
+                time = Arrays.copyOf(time, capacity);
+                nextFree = Arrays.copyOf(nextFree, capacity);
+                position = Arrays.copyOf(position, capacity);
+                next = Arrays.copyOf(next, capacity);
+                previous = Arrays.copyOf(previous, capacity);
+            }
+            t = slots++;
+        }
+        exec[t] = x;
+        at[t] = e;
+        time[t] = gtime + timer;
+        position[t] = -1;
+        return t;
+    }
+
+    private void release(int t) {
+        nextFree[t] = free;
+        free = t;
+    }
+
+    /**
+     * Queues the token t, rescheduling it at the current time if its timestamp has passed, as Token.schedule.
+     */
+    private void offer(int t) {
+        if (time[t] < gtime) {
+            time[t] = gtime;
+        }
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        siftUp(size, t);
+        size++;
+        // chains the token at the end of the tokens of its execution
+        int x = exec[t];
+        next[t] = -1;
+        previous[t] = last[x];
+        if (last[x] >= 0) {
+            next[last[x]] = t;
+        } else {
+            first[x] = t;
+        }
+        last[x] = t;
+    }
+
+    private int poll() {
+        int result = heap[0];
+        int n = --size;
+        int x = heap[n];
+        if (n > 0) {
+            siftDown(0, x, n);
+        }
+        position[result] = -1;
+        unchain(result);
+        return result;
+    }
+
+    private void unchain(int t) {
+        int x = exec[t];
+        if (previous[t] >= 0) {
+            next[previous[t]] = next[t];
+        } else {
+            first[x] = next[t];
+        }
+        if (next[t] >= 0) {
+            previous[next[t]] = previous[t];
+        } else {
+            last[x] = previous[t];
+        }
+    }
+
+    /**
+     * Removes the given tokens as TokenQueue.removeTokens does, and frees them.
+     */
+    private void removeTokens(int[] tokens) {
+        int[] pending = tokens.clone();
+        int nPending = pending.length;
+        // tokens moved before the traversal cursor by a removal, an iterator would visit them at the end
+        int[] forgotten = new int[pending.length];
+        int nForgotten = 0;
+        int cursor = 0;
+        while (true) {
+            int nextToken = -1;
+            for (int i = 0; i < nPending; i++) {
+                int t = pending[i];
+                if (position[t] >= cursor && indexOf(forgotten, nForgotten, t) < 0
+                        && (nextToken < 0 || position[t] < position[nextToken])) {
+                    nextToken = t;
+                }
+            }
+            if (nextToken < 0) break;
+            cursor = position[nextToken];
+            nPending = remove(pending, nPending, nextToken);
+            int moved = removeAt(cursor);
+            unchain(nextToken);
+            release(nextToken);
+            if (moved >= 0) {
+                forgotten[nForgotten++] = moved;
+            }
+        }
+        for (int i = 0; i < nForgotten; i++) {
+            int t = forgotten[i];
+            int n = remove(pending, nPending, t);
+            if (n < nPending) {
+                nPending = n;
+                removeAt(position[t]);
+                unchain(t);
+                release(t);
+            }
+        }
+    }
+
+    private static int indexOf(int[] tokens, int n, int t) {
+        for (int i = 0; i < n; i++) {
+            if (tokens[i] == t) return i;
+        }
+        return -1;
+    }
+
+    private static int remove(int[] tokens, int n, int t) {
+        int i = indexOf(tokens, n, t);
+        if (i < 0) return n;
+        System.arraycopy(tokens, i + 1, tokens, i, n - i - 1);
+        return n - 1;
+    }
+
+    /**
+     * Removes the token at position i, as TokenQueue does.
+     *
+     * @return the token moved to a position before i, if the last token of the heap was sifted up, -1 otherwise
+     */
+    private int removeAt(int i) {
+        position[heap[i]] = -1;
+        int s = --size;
+        if (s != i) {
+            int moved = heap[s];
+            siftDown(i, moved, s);
+            if (heap[i] == moved) {
+                siftUp(i, moved);
+                if (heap[i] != moved) {
+                    return moved;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void siftUp(int k, int x) {
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            int e = heap[parent];
+            if (Double.compare(time[x], time[e]) >= 0) break;
+            place(k, e);
+            k = parent;
+        }
+        place(k, x);
+    }
+
+    private void siftDown(int k, int x, int n) {
+        int half = n >>> 1;
+        while (k < half) {
+            int child = (k << 1) + 1;
+            int c = heap[child];
+            int right = child + 1;
+            if (right < n && Double.compare(time[c], time[heap[right]]) > 0) {
+                c = heap[child = right];
+            }
+            if (Double.compare(time[x], time[c]) <= 0) break;
+            place(k, c);
+            k = child;
+        }
+        place(k, x);
+    }
+
+    private void place(int k, int t) {
+        heap[k] = t;
+        position[t] = k;
+    }
+
+    /**
+     * Copies the results to the simulation, as the object model would have left them.
+     */
+    private void export(int population) {
+        int merges = w.mergeIds.length;
+        for (int x = 0; x < population; x++) {
+            if (!Double.isNaN(execTimes[x])) {
+                simulation.getProcessExecs().put(x, execTimes[x]);
+            }
+            Map<String, Double> times = new HashMap<>();
+            for (int m = 0; m < merges; m++) {
+                if (!Double.isNaN(syncTimes[x * merges + m])) {
+                    times.put(w.mergeIds[m], syncTimes[x * merges + m]);
+                }
+            }
+            simulation.getSyncTimes().put(x, times);
+        }
+        for (int m = 0; m < merges; m++) {
+            if (syncCounters[m] >= 0) {
+                simulation.getSyncCounters().put(w.mergeIds[m], syncCounters[m]);
+            }
+        }
+        // pending tokens (e.g., blocked for lack of resources) are left in the queue of the simulation
+        for (int i = 0; i < size; i++) {
+            int t = heap[i];
+            simulation.getTokens().add(new Token(exec[t], w.elements[at[t]], timer(t)));
+        }
+    }
+}
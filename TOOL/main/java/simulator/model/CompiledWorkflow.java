@@ -0,0 +1,232 @@
+// Copyright 2022 Voyance Systems
+
+package simulator.model;
+
+import org.apache.commons.math3.distribution.AbstractRealDistribution;
+import org.apache.commons.math3.distribution.ConstantRealDistribution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * The CompiledWorkflow class is a dense representation of a process, compiled from its object model for the compiled
+ * engine of the simulation (see Simulation#setCompiled). Flow elements and flows are numbered from 0 in a single
+ * space, and so are resources and parallel merges, and the successors of each element, the cumulative probabilities
+ * of the branches of exclusive gateways and the resource demands of tasks are kept in primitive arrays. The event loop
+ * thus switches on the kind of the element instead of dispatching isReady and run calls, and does not hash flows nor
+ * resource names. Flows and resources are numbered in the iteration order of the collections of the object model, so
+ * that both engines draw random numbers and create tokens in the same order.
+ * Start and end events, tasks, and parallel, exclusive and inclusive gateways are supported, compiling a process with
+ * other elements (event-based gateways, intermediate events) fails. Once compiled, a workflow is immutable and can be
+ * shared by simulations running at the same time.
+ */
+public final class CompiledWorkflow {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompiledWorkflow.class);
+
+    static final int FLOW = 0, START = 1, END = 2, TASK = 3, PARALLEL = 4, EXCLUSIVE = 5, INCLUSIVE = 6;
+
+    /**
+     * elements of the object model, and their identifiers and kinds, by number
+     */
+    final FlowElement[] elements;
+    final String[] ids;
+    final int[] kind;
+    /**
+     * element run for a token at an element: the element itself for nodes, its target for flows
+     */
+    final int[] node;
+    /**
+     * incoming flow of tasks and end events, outgoing flow of start events and tasks, -1 for other elements
+     */
+    final int[] incoming;
+    final int[] outgoing;
+    /**
+     * incoming and outgoing flows of gateways, null for other elements
+     */
+    final int[][] incomingFlows;
+    final int[][] outgoingFlows;
+    /**
+     * probabilities of the outgoing flows of exclusive (cumulative) and inclusive (per flow) gateways
+     */
+    final double[][] probabilities;
+    /**
+     * delay of flows and duration of tasks, with the value of constant ones (NaN for the others)
+     */
+    final AbstractRealDistribution[] distributions;
+    final double[] constants;
+    /**
+     * resources required by tasks, as numbers in resourceIds, and number of instances of each
+     */
+    final int[][] demands;
+    final int[][] amounts;
+    final String[] resourceIds;
+    /**
+     * number of the parallel merges (parallel gateways with several incoming flows) in mergeIds, -1 for other elements
+     */
+    final int[] merge;
+    final String[] mergeIds;
+    final int start;
+
+    private CompiledWorkflow(Compiler c) {
+        int n = c.elements.size();
+        elements = c.elements.toArray(new FlowElement[0]);
+        ids = new String[n];
+        kind = new int[n];
+        node = new int[n];
+        incoming = new int[n];
+        outgoing = new int[n];
+        incomingFlows = new int[n][];
+        outgoingFlows = new int[n][];
+        probabilities = new double[n][];
+        distributions = new AbstractRealDistribution[n];
+        constants = new double[n];
+        demands = new int[n][];
+        amounts = new int[n][];
+        merge = new int[n];
+        Arrays.fill(incoming, -1);
+        Arrays.fill(outgoing, -1);
+        Arrays.fill(constants, Double.NaN);
+        Arrays.fill(merge, -1);
+        List<String> resources = new ArrayList<>();
+        List<String> merges = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            FlowElement e = elements[i];
+            ids[i] = e.getId();
+            node[i] = i;
+            if (e instanceof Flow) {
+                Flow f = (Flow) e;
+                kind[i] = FLOW;
+                node[i] = c.number(f.getTarget());
+                setDistribution(i, f.getDelay());
+            } else if (e instanceof StartEvent) {
+                kind[i] = START;
+                outgoing[i] = c.number(((StartEvent) e).getOutgoing());
+            } else if (e instanceof EndEvent) {
+                kind[i] = END;
+                incoming[i] = c.number(((EndEvent) e).getIncoming());
+            } else if (e instanceof Task) {
+                Task t = (Task) e;
+                kind[i] = TASK;
+                incoming[i] = c.number(t.getIncoming());
+                outgoing[i] = c.number(t.getOutgoing());
+                setDistribution(i, t.getDuration());
+                Map<String, Integer> required = t.getRequiredResources();
+                demands[i] = new int[required.size()];
+                amounts[i] = new int[required.size()];
+                int j = 0;
+                for (Map.Entry<String, Integer> r : required.entrySet()) {
+                    int k = resources.indexOf(r.getKey());
+                    if (k < 0) {
+                        k = resources.size();
+                        resources.add(r.getKey());
+                    }
+                    demands[i][j] = k;
+                    amounts[i][j] = r.getValue();
+                    j++;
+                }
+            } else {
+                Gateway g = (Gateway) e;
+                incomingFlows[i] = c.number(g.getIncoming());
+                outgoingFlows[i] = c.number(g.getOutgoing());
+                if (g instanceof ParallelGateway) {
+                    kind[i] = PARALLEL;
+                    if (g.getIncoming().size() > 1) {
+                        merge[i] = merges.size();
+                        merges.add(g.getId());
+                    }
+                } else if (g instanceof ExclusiveGateway) {
+                    kind[i] = EXCLUSIVE;
+                    // accumulated as the object model does, so that both engines pick the same branch
+                    double acum = 0;
+                    probabilities[i] = new double[outgoingFlows[i].length];
+                    int j = 0;
+                    for (Flow f : g.getOutgoing()) {
+                        acum += ((ExclusiveGateway) g).getProbability(f);
+                        probabilities[i][j++] = acum;
+                    }
+                } else {
+                    kind[i] = INCLUSIVE;
+                    List<Flow> flows = new ArrayList<>(g.getOutgoing());
+                    probabilities[i] = new double[flows.size()];
+                    for (int j = 0; j < flows.size(); j++) {
+                        probabilities[i][j] = ((InclusiveGateway) g).getProbability(flows.get(j));
+                    }
+                }
+            }
+        }
+        resourceIds = resources.toArray(new String[0]);
+        mergeIds = merges.toArray(new String[0]);
+        start = 0;
+    }
+
+    private void setDistribution(int i, AbstractRealDistribution distribution) {
+        distributions[i] = distribution;
+        if (distribution instanceof ConstantRealDistribution) {
+            constants[i] = distribution.getNumericalMean();
+        }
+    }
+
+    /**
+     * Compiles the process starting at the given start event.
+     *
+     * @param init start event of the process
+     * @return compiled process
+     * @throws IllegalArgumentException if the process has elements not supported by the compiled engine
+     */
+    public static CompiledWorkflow compile(StartEvent init) {
+        Compiler c = new Compiler();
+        c.number(init);
+        // elements are numbered as they are reached, numbering the successors of the element being visited
+        for (int i = 0; i < c.elements.size(); i++) {
+            FlowElement e = c.elements.get(i);
+            if (e instanceof Flow) {
+                c.number(((Flow) e).getTarget());
+            } else if (e instanceof StartEvent) {
+                c.number(((StartEvent) e).getOutgoing());
+            } else if (e instanceof Task) {
+                c.number(((Task) e).getIncoming());
+                c.number(((Task) e).getOutgoing());
+            } else if (e instanceof EndEvent) {
+                c.number(((EndEvent) e).getIncoming());
+            } else if (e instanceof ParallelGateway || e instanceof ExclusiveGateway || e instanceof InclusiveGateway) {
+                c.number(((Gateway) e).getIncoming());
+                c.number(((Gateway) e).getOutgoing());
+            } else {
+                throw new IllegalArgumentException("The compiled simulation does not support " + e.getClass().getSimpleName() + " " + e.getId() + ".");
+            }
+        }
+        CompiledWorkflow workflow = new CompiledWorkflow(c);
+        logger.debug("Process compiled: {} elements, {} resources, {} parallel merges", workflow.ids.length, workflow.resourceIds.length, workflow.mergeIds.length);
+        return workflow;
+    }
+
+    /**
+     * Numbering of the elements of a process being compiled.
+     */
+    private static final class Compiler {
+        private final List<FlowElement> elements = new ArrayList<>();
+        private final Map<FlowElement, Integer> numbers = new IdentityHashMap<>();
+
+        int number(FlowElement e) {
+            if (e == null) throw new IllegalArgumentException("The process has unconnected elements.");
+            Integer number = numbers.get(e);
+            if (number == null) {
+                number = elements.size();
+                numbers.put(e, number);
+                elements.add(e);
+            }
+            return number;
+        }
+
+        int[] number(Collection<? extends FlowElement> es) {
+            int[] numbers = new int[es.size()];
+            int i = 0;
+            for (FlowElement e : es) {
+                numbers[i++] = number(e);
+            }
+            return numbers;
+        }
+    }
+}
@@ -24,4 +24,15 @@ public abstract class Element {
   public String getId() {
     return id;
   }
+
+  /**
+   * Elements are compared by identity, but their hash code is derived from their identifier, so that
+   * iterating over hashed collections of elements (e.g., the outgoing flows of a gateway) follows the
+   * same order in every run and in every copy of a workflow. Otherwise, seeded simulations would not
+   * be reproducible.
+   */
+  @Override
+  public int hashCode() {
+    return id == null ? 0 : id.hashCode();
+  }
 }
@@ -41,6 +41,7 @@ public class EndEvent extends Event {
         } else {
             // if multiple end events, the last one prevails
             simulation.getProcessExecs().put(t.getId(), simulation.getGtime() - simulation.getProcessTstamps().get(t.getId()));
+            simulation.ended(t.getId());
             //logger.trace(t.getId() + ": (" + simulation.getGtime() + ") " + (simulation.getGtime() - simulation.getProcessTstamps().get(t.getId())));
             //logger.trace("{}: ({}) {} ", t.getId(), simulation.getGtime(), (simulation.getGtime() - simulation.getProcessTstamps().get(t.getId())));
         }
@@ -19,7 +19,6 @@ public class EventBasedGateway extends Gateway {
     private static final Logger logger = LoggerFactory.getLogger(EventBasedGateway.class);
 
     private final Set<Flow> outgoing;
-    private Map<Integer, Set<Token>> timers;
 
     /**
      * Generates an event-based gateway. We assume we only have split event-based gateways. Merges are represented
@@ -33,7 +32,6 @@ public class EventBasedGateway extends Gateway {
         super(id, Set.of(inf));
         outgoing = new HashSet<>();
         setOutgoing(fs);
-        timers = new HashMap<>();
     }
 
     public Set<Flow> getOutgoing() {
@@ -56,10 +54,12 @@ public class EventBasedGateway extends Gateway {
     public boolean isReady(Simulation simulation) {
         Token t = simulation.getTokens().peek();
         int exec = t.getId();
-        return t.getAt() == getIncoming().stream().findFirst().orElseThrow() || (t.getAt() == this && getOutgoing().stream().anyMatch(f -> ((IntermediateEvent) f.getTarget()).isActive(exec)));
+        return t.getAt() == getIncoming().stream().findFirst().orElseThrow() || (t.getAt() == this && getOutgoing().stream().anyMatch(f -> ((IntermediateEvent) f.getTarget()).isActive(simulation, exec)));
     }
 
     public void run(Simulation simulation) {
+        // timers set by the gate, for each execution of the simulation
+        Map<Integer, Set<Token>> timers = simulation.getState(this, HashMap::new);
         Token t = simulation.getTokens().peek();
         if (t.getAt() == getIncoming().stream().findFirst().orElseThrow()) {
             // if there is a token in the incoming flow of an event-based split gate, the token is moved to the gate
@@ -91,7 +91,7 @@ public class EventBasedGateway extends Gateway {
                 if (f != tt.getAt()) simulation.getTokens().remove(tt);
             // set the token in the outgoing flow
             t.setAt(f);
-            t.setTimer(f.getDelay().sample());
+            t.setTimer(simulation.sample(f, f.getDelay()));
             simulation.getTokens().add(t);
         }
     }
@@ -92,6 +92,16 @@ public class ExclusiveGateway extends Gateway {
         return outgoing.keySet();
     }
 
+    /**
+     * Returns the probability of taking the given outgoing flow.
+     *
+     * @param f outgoing flow
+     * @return probability of the flow
+     */
+    public double getProbability(Flow f) {
+        return outgoing.get(f);
+    }
+
     /**
      * Sets the provided set of flows as set of outgoing flows.
      *
@@ -131,10 +141,11 @@ public class ExclusiveGateway extends Gateway {
      * Picks one outgoing flow.
      *
      * @param s
+     * @param simulation
      * @return
      */
-    protected Collection<Flow> choose(Collection<Flow> s) {
-        double acum = 0, p = rnd.nextDouble();
+    protected Collection<Flow> choose(Collection<Flow> s, Simulation simulation) {
+        double acum = 0, p = simulation.nextDouble(this, rnd);
         Flow f = null;
         Iterator<Flow> iter = s.iterator();
         //logger.debug("Handling flows: {}", s);
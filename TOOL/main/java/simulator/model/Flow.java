@@ -7,9 +7,6 @@ import org.apache.commons.math3.distribution.ConstantRealDistribution;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Iterator;
-import java.util.PriorityQueue;
-
 /**
  * A flow represents a connection between two flow elements in a process. Flows may have a delay.
  */
@@ -110,23 +107,14 @@ public class Flow extends FlowElement {
 
     /** A flow is ready if there is a token with timer zero in it. This method will be invoked by a gateway when
      * checking whether it is ready or not. Split gates will find the corresponding token in the head of the queue.
-     * However, e.g., a parallel merge may need tokens in different positions. Since tokens are ordered by time, we
-     * can stop looking when a token with time greater than zero is found.
+     * However, e.g., a parallel merge may need tokens in different positions. The token queue indexes tokens by
+     * execution and location, so only the tokens of the given execution in this flow are looked at.
      *
      * @param exec
      * @param tokens
      * @return
      */
-    public boolean isFlowReady(int exec, PriorityQueue<Token> tokens) {
-        // Optional<Token> t = tokens.stream().dropWhile(e -> (e.getId() != exec || e.getAt() != this)).findFirst();
-        // return t.isPresent() && t.get().getTimer() == 0;
-        Iterator<Token> it = tokens.iterator();
-        while (it.hasNext()) {
-            Token t = it.next();
-            if (t.getId() == exec && t.getAt() == this && t.getTimer() == 0) {
-                return true;
-            }
-        }
-        return false;
+    public boolean isFlowReady(int exec, TokenQueue tokens) {
+        return tokens.hasReadyToken(exec, this);
     }
 }
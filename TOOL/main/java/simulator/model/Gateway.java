@@ -52,10 +52,11 @@ public abstract class Gateway extends Node {
      * for parallel splits no redefinition is needed; for exclusive split only one flow is returned; and for
      * inclusive splits a subset of flows is returned.
      *
-     * @param s a collection of flows from which to choose one or several flows
+     * @param s          a collection of flows from which to choose one or several flows
+     * @param simulation info on the state of the simulation, providing its random stream
      * @return collections of selected flows
      */
-    protected Collection<Flow> choose(Collection<Flow> s) {
+    protected Collection<Flow> choose(Collection<Flow> s, Simulation simulation) {
         return s;
     }
 
@@ -63,7 +64,7 @@ public abstract class Gateway extends Node {
     @Override
     public void run(Simulation simulation) {
         Token t = simulation.getTokens().poll();
-        choose(getOutgoing()).forEach(f -> simulation.getTokens().add(new Token(t.getId(), f, f.getDelay().sample())));
+        choose(getOutgoing(), simulation).forEach(f -> simulation.getTokens().add(new Token(t.getId(), f, simulation.sample(f, f.getDelay()))));
     }
 
     @Override
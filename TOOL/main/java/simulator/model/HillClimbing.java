@@ -7,6 +7,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The HillClimbing class implements a search, following the path with maximal slope, that provides the best
@@ -22,6 +23,11 @@ import java.util.*;
  * Values are normalized with respect to current minimum and maximum values for both costs and exec times. When
  * a value greater than the current maximum value or smaller than the current minimum, normalized values are
  * recalculated for all visited solutions.
+ * The neighbors of an assignment can be simulated at the same time (see setParallelism), their results being then
+ * considered in the same order as in a sequential search. Results of simulations are kept in a cache, which can be
+ * shared by several searches and saved between them (see setCache), so that assignments already simulated are not
+ * simulated again. Which simulations are run to evaluate the neighbors is decided by an evaluator (see setEvaluator),
+ * e.g., one screening them with small populations before simulating the most promising ones.
  * TODO The search can be improved by adding random jumps after finding a local optimum to scape from it, and hence
  *      getting closer to what could be a global optimum. Several jumps, of different sizes may be added.
  */
@@ -30,6 +36,27 @@ public class HillClimbing {
     private StartEvent sv;
     private Set<Resource> resources;
     private Triplet<Double, Double, Double> coefficients;
+    /**
+     * seed of the random streams shared by the simulations of all candidates, null if common random numbers are not used
+     */
+    private Long commonSeed;
+    /**
+     * number of simulations run at the same time
+     */
+    private int parallelism = 1;
+    /**
+     * results of the simulations of the assignments visited by this and previous searches
+     */
+    private SimulationCache cache = new SimulationCache();
+    /**
+     * analytic estimator pruning the neighbors of each step, null to simulate all of them, and number of neighbors kept
+     */
+    private QueueingEstimator estimator;
+    private int candidates;
+    /**
+     * evaluator of the neighbors
+     */
+    private AssignmentEvaluator evaluator = new SingleFidelityEvaluator();
 
     /**
      * @param sv           start event of the process
@@ -42,6 +69,73 @@ public class HillClimbing {
         this.coefficients = coefficients;
     }
 
+    /**
+     * Enables common random numbers: every candidate assignment is simulated with random streams created from the
+     * given seed, so that all candidates are evaluated on the same sampled workload (arrivals, durations, delays, and
+     * gateway choices). Differences between their results are then due to the assignments and not to sampling noise,
+     * which keeps the decisions of the search stable with much smaller populations.
+     *
+     * @param seed seed of the random streams shared by all the simulations
+     */
+    public void setCommonRandomNumbers(long seed) {
+        this.commonSeed = seed;
+    }
+
+    /**
+     * Sets the number of simulations of neighbors run at the same time. Unless common random numbers are used, each
+     * parallel simulation gets its own random streams, as the generators of the distributions can not be shared.
+     *
+     * @param parallelism number of simulations run at the same time (1 runs them on the calling thread)
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("The degree of parallelism must be positive (got " + parallelism + ").");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the cache of simulation results used by the search. Sharing a cache between searches on the same process,
+     * or loading one saved by a previous optimization (see SimulationCache.load), allows a search to reuse the results
+     * of the assignments already simulated.
+     *
+     * @param cache cache of simulation results
+     */
+    public void setCache(SimulationCache cache) {
+        this.cache = cache;
+    }
+
+    public SimulationCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Prunes the neighbors of each step with an analytic estimator: only the given number of neighbors with the best
+     * estimates are simulated, the others being left for later steps. The search then needs fewer simulations, but may
+     * miss an improvement that the estimator does not see.
+     *
+     * @param estimator  estimator of the results of assignments, null to simulate all the neighbors
+     * @param candidates number of neighbors simulated at each step
+     */
+    public void setEstimator(QueueingEstimator estimator, int candidates) {
+        if (candidates < 1) throw new IllegalArgumentException("The number of candidates must be positive (got " + candidates + ").");
+        this.estimator = estimator;
+        this.candidates = candidates;
+    }
+
+    /**
+     * Sets the evaluator deciding which simulations are run to evaluate the neighbors of each step (by default, one
+     * simulation of the whole population for each of them). The initial assignment is evaluated by the evaluator too,
+     * so that all results are comparable.
+     *
+     * @param evaluator evaluator of the neighbors
+     */
+    public void setEvaluator(AssignmentEvaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    public AssignmentEvaluator getEvaluator() {
+        return evaluator;
+    }
+
     public static void main(String[] args) {
         // Variation v = new Variation(Map.of("a", 5, "b", 5));
         // Variation v = new Variation(Map.of("a", 5, "b", 5, "c", 5));
@@ -66,9 +160,22 @@ public class HillClimbing {
      */
     public Map<String, Integer> search(Map<String, Integer> initial, int population) {
         logger.debug("Search initiated: {}", initial);
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            return search(initial, population, pool);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private Map<String, Integer> search(Map<String, Integer> initial, int population, ForkJoinPool pool) {
         Map<Map<String, Integer>, Triplet<Double, Double, Double>> visited = new HashMap<>();
-        Simulation sim = new Simulation(sv, resources);
-        Triplet<Double, Double, Double> result = sim.runSimulation(initial, population);
+        // unless common random numbers are used, parallel simulations get their own random streams, seeded from a
+        // seed of the search
+        AssignmentEvaluator.Simulations simulations = new AssignmentEvaluator.CachedSimulations(sv, resources, commonSeed, cache, pool, pool == null ? null : new SplittableRandom().nextLong());
+        Triplet<Double, Double, Double> result = evaluator.evaluate(List.of(initial), population, simulations).get(initial);
         visited.put(initial, result);
         double minAET = result.getValue0();
         double maxAET = result.getValue0();
@@ -84,42 +191,53 @@ public class HillClimbing {
             improved = false;
             // a Variation object will allow us to iterate over the neighbors of the current assignment
             Variation v = new Variation(current);
+            List<Map<String, Integer>> neighbors = new ArrayList<>();
             while (v.hasNext()) {
                 current = v.next();
                 if (valid(current)) { // we can check out of ranges or invalid combinations
                     if (visited.get(current) == null) { // not visited
-                        sim = new Simulation(sv, resources);
-                        result = sim.runSimulation(current, population);
-                        // if the min or max AET or cost change, we must recalculate the values of the visited combinations, possibly changing the best one
-                        if (result.getValue0() < minAET || result.getValue0() > maxAET || result.getValue1() < minCost || result.getValue1() > maxCost || result.getValue2() < minEmissions || result.getValue2() > maxEmissions) {
-                            if (result.getValue0() < minAET) minAET = result.getValue0();
-                            if (result.getValue0() > maxAET) maxAET = result.getValue0();
-                            if (result.getValue1() < minCost) minCost = result.getValue1();
-                            if (result.getValue1() > maxCost) maxCost = result.getValue1();
-                            if (result.getValue2() < minEmissions) minEmissions = result.getValue2();
-                            if (result.getValue2() > maxEmissions) maxEmissions = result.getValue2();
-                            for (Map.Entry<Map<String, Integer>, Triplet<Double, Double, Double>> e : visited.entrySet()) {
-                                double nv = value(e.getValue(), minAET, maxAET, minCost, maxCost, minEmissions, maxEmissions, coefficients);
-                                if (nv < bestValue) {
-                                    if (!best.equals(e.getKey())) {
-                                        best = e.getKey();
-                                        improved = true;
-                                    }
-                                    bestValue = nv;
-                                }
+                        neighbors.add(current);
+                    }
+                }
+            }
+            if (estimator != null) {
+                // only the most promising neighbors are simulated
+                neighbors = estimator.select(neighbors, candidates, population, Simulation.DEFAULT_MEAN_INTER_ARRIVAL_TIME, coefficients);
+            }
+            // neighbors are simulated at the same time, the results of those retained by the evaluator are then
+            // considered in order
+            Map<Map<String, Integer>, Triplet<Double, Double, Double>> results = evaluator.evaluate(neighbors, population, simulations);
+            for (Map.Entry<Map<String, Integer>, Triplet<Double, Double, Double>> evaluated : results.entrySet()) {
+                current = evaluated.getKey();
+                result = evaluated.getValue();
+                // if the min or max AET or cost change, we must recalculate the values of the visited combinations, possibly changing the best one
+                if (result.getValue0() < minAET || result.getValue0() > maxAET || result.getValue1() < minCost || result.getValue1() > maxCost || result.getValue2() < minEmissions || result.getValue2() > maxEmissions) {
+                    if (result.getValue0() < minAET) minAET = result.getValue0();
+                    if (result.getValue0() > maxAET) maxAET = result.getValue0();
+                    if (result.getValue1() < minCost) minCost = result.getValue1();
+                    if (result.getValue1() > maxCost) maxCost = result.getValue1();
+                    if (result.getValue2() < minEmissions) minEmissions = result.getValue2();
+                    if (result.getValue2() > maxEmissions) maxEmissions = result.getValue2();
+                    for (Map.Entry<Map<String, Integer>, Triplet<Double, Double, Double>> e : visited.entrySet()) {
+                        double nv = value(e.getValue(), minAET, maxAET, minCost, maxCost, minEmissions, maxEmissions, coefficients);
+                        if (nv < bestValue) {
+                            if (!best.equals(e.getKey())) {
+                                best = e.getKey();
+                                improved = true;
                             }
+                            bestValue = nv;
                         }
-                        visited.put(current, result);
-                        double value = value(result, minAET, maxAET, minCost, maxCost, minEmissions, maxEmissions, coefficients);
-                        if (value < bestValue) {
-                            best = current;
-                            bestValue = value;
-                            improved = true;
-                        }
-                        logger.debug("Search: current {} / result {} / value {}", current, result, value);
-                        logger.debug("Search: best {} / result {} / value {}", best, visited.get(best), bestValue);
                     }
                 }
+                visited.put(current, result);
+                double value = value(result, minAET, maxAET, minCost, maxCost, minEmissions, maxEmissions, coefficients);
+                if (value < bestValue) {
+                    best = current;
+                    bestValue = value;
+                    improved = true;
+                }
+                logger.debug("Search: current {} / result {} / value {}", current, result, value);
+                logger.debug("Search: best {} / result {} / value {}", best, visited.get(best), bestValue);
             }
             logger.debug("Search: best {} / result {} / value {}", best, visited.get(best), bestValue);
         } while (improved);
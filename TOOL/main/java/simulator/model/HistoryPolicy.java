@@ -0,0 +1,73 @@
+// Copyright 2022 Voyance Systems
+
+package simulator.model;
+
+/**
+ * The HistoryPolicy class defines how the time series of a simulation (cost, emissions, available and in use instances
+ * of each resource) are recorded:
+ * - FULL keeps every update, which may amount to millions of entries on long simulations;
+ * - OFF keeps nothing (only totals are computed);
+ * - RESERVOIR keeps a uniform sample of at most a given number of updates;
+ * - BUCKETS keeps the last update of each time bucket of a given width.
+ */
+public final class HistoryPolicy {
+
+    public enum Type {
+        FULL, OFF, RESERVOIR, BUCKETS
+    }
+
+    public static final HistoryPolicy FULL = new HistoryPolicy(Type.FULL, 0, 0);
+    public static final HistoryPolicy OFF = new HistoryPolicy(Type.OFF, 0, 0);
+
+    private final Type type;
+    private final int size;
+    private final double width;
+
+    private HistoryPolicy(Type type, int size, double width) {
+        this.type = type;
+        this.size = size;
+        this.width = width;
+    }
+
+    /**
+     * @param size maximal number of updates kept by each time series
+     * @return policy keeping a uniform sample of the updates
+     */
+    public static HistoryPolicy reservoir(int size) {
+        if (size < 1) throw new IllegalArgumentException("The size of the reservoir must be positive (got " + size + ").");
+        return new HistoryPolicy(Type.RESERVOIR, size, 0);
+    }
+
+    /**
+     * @param width width of the time buckets
+     * @return policy keeping the last update of each time bucket
+     */
+    public static HistoryPolicy buckets(double width) {
+        if (!(width > 0)) throw new IllegalArgumentException("The width of the buckets must be positive (got " + width + ").");
+        return new HistoryPolicy(Type.BUCKETS, 0, width);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case RESERVOIR:
+                return "RESERVOIR(" + size + ")";
+            case BUCKETS:
+                return "BUCKETS(" + width + ")";
+            default:
+                return type.toString();
+        }
+    }
+}
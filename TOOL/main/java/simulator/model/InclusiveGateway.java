@@ -48,6 +48,16 @@ public class InclusiveGateway extends Gateway {
         return outgoing.keySet();
     }
 
+    /**
+     * Returns the probability of taking the given outgoing flow.
+     *
+     * @param f outgoing flow
+     * @return probability of the flow
+     */
+    public double getProbability(Flow f) {
+        return outgoing.get(f);
+    }
+
     public void setOutgoing(Map<Flow, Double> m) {
         outgoing.clear();
         m.entrySet().forEach(e -> {
@@ -79,14 +89,15 @@ public class InclusiveGateway extends Gateway {
     }
 
     /**
-     * Picks a subset of outgoing flows
+     * Picks a subset of outgoing flows, in their order in s, which is the order in which their tokens are created
      *
      * @param s
+     * @param simulation
      * @return
      */
-    protected Collection<Flow> choose(Collection<Flow> s) {
-        Set<Flow> set = new HashSet<>();
-        s.stream().filter(f -> (outgoing.get(f) > rnd.nextDouble())).forEach(f -> set.add(f));
+    protected Collection<Flow> choose(Collection<Flow> s, Simulation simulation) {
+        Set<Flow> set = new LinkedHashSet<>();
+        s.stream().filter(f -> (outgoing.get(f) > simulation.nextDouble(this, rnd))).forEach(f -> set.add(f));
         return set;
     }
 
@@ -49,8 +49,8 @@ public class IntermediateCatchEvent extends IntermediateEvent {
      **/
     public void activate(Simulation simulation, int id) {
         if (getIncoming() == null) { // tokenless start
-            simulation.getTokens().add(new Token(id, getOutgoing(), getOutgoing().getDelay().sample()));
-            active.put(id, false);
+            simulation.getTokens().add(new Token(id, getOutgoing(), simulation.sample(getOutgoing(), getOutgoing().getDelay())));
+            active(simulation).put(id, false);
         } else {
             super.activate(simulation, id);
         }
@@ -65,8 +65,8 @@ public class IntermediateCatchEvent extends IntermediateEvent {
     public void run(Simulation simulation) {
         Token t = simulation.getTokens().poll();
         t.setAt(getOutgoing());
-        t.setTimer(getOutgoing().getDelay().sample());
-        active.put(t.getId(), false);
+        t.setTimer(simulation.sample(getOutgoing(), getOutgoing().getDelay()));
+        active(simulation).put(t.getId(), false);
         simulation.getTokens().add(t);
     }
 
@@ -77,6 +77,6 @@ public class IntermediateCatchEvent extends IntermediateEvent {
     @Override
     public boolean isReady(Simulation simulation) {
         Token t = simulation.getTokens().peek();
-        return t.getTimer() == 0 && isActive(t.getId());
+        return t.getTimer() == 0 && isActive(simulation, t.getId());
     }
 }
@@ -15,16 +15,10 @@ import java.util.Map;
 public abstract class IntermediateEvent extends Event {
 
     private static final Logger logger = LoggerFactory.getLogger(IntermediateEvent.class);
-    /**
-     * A boolean value is associated to each execution. An id-boolean entry is created when the event gets activated.
-     * Therefore, for an execution id, a non-active event is either false or there is no entry (null).
-     **/
-    protected Map<Integer, Boolean> active;
     private Flow incoming, outgoing;
 
     public IntermediateEvent(String id) {
         super(id);
-        active = new HashMap<>();
     }
 
     public IntermediateEvent(String id, Flow incoming, Flow outgoing) {
@@ -75,17 +69,30 @@ public abstract class IntermediateEvent extends Event {
      * @param id         identifier of the execution
      */
     public void activate(Simulation simulation, int id) {
-        active.put(id, true);
+        active(simulation).put(id, true);
     }
 
     /**
      * For an execution id, an event may be active or non-active (false or with no associated entry).
      *
-     * @param id identifier of the execution
+     * @param simulation state of the simulation
+     * @param id         identifier of the execution
      * @return activation value
      */
-    public boolean isActive(int id) {
-        return active.get(id) != null && active.get(id);
+    public boolean isActive(Simulation simulation, int id) {
+        Boolean active = active(simulation).get(id);
+        return active != null && active;
+    }
+
+    /**
+     * A boolean value is associated to each execution of the simulation. An id-boolean entry is created when the event
+     * gets activated. Therefore, for an execution id, a non-active event is either false or there is no entry (null).
+     *
+     * @param simulation state of the simulation
+     * @return activations of the event in the simulation
+     */
+    protected Map<Integer, Boolean> active(Simulation simulation) {
+        return simulation.getState(this, HashMap::new);
     }
 
 }
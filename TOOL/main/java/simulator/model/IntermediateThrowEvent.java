@@ -75,7 +75,7 @@ public class IntermediateThrowEvent extends IntermediateEvent {
   public void run(Simulation simulation) {
     Token t = simulation.getTokens().poll();
     t.setAt(getOutgoing());
-    t.setTimer(getOutgoing().getDelay().sample());
+    t.setTimer(simulation.sample(getOutgoing(), getOutgoing().getDelay()));
     simulation.getTokens().add(t);
     target.stream().forEach(n -> n.activate(simulation, t.getId()));
   }
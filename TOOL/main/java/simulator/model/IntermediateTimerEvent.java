@@ -68,9 +68,9 @@ public class IntermediateTimerEvent extends IntermediateEvent {
         Token t = simulation.getTokens().poll();
         if (t.getAt() == getIncoming()) {
             t.setAt(getOutgoing());
-            t.setTimer(getOutgoing().getDelay().sample());
+            t.setTimer(simulation.sample(getOutgoing(), getOutgoing().getDelay()));
         } else {
-            active.put(t.getId(), true);
+            active(simulation).put(t.getId(), true);
         }
     }
 
@@ -81,6 +81,6 @@ public class IntermediateTimerEvent extends IntermediateEvent {
     @Override
     public boolean isReady(Simulation simulation) {
         Token t = simulation.getTokens().peek();
-        return t.getTimer() == 0 && isActive(t.getId());
+        return t.getTimer() == 0 && isActive(simulation, t.getId());
     }
 }
@@ -0,0 +1,169 @@
+// Copyright 2022 Voyance Systems
+
+package simulator.model;
+
+import org.javatuples.Triplet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The MultiFidelityEvaluator class screens the candidate assignments with cheap simulations (a small population, and
+ * the mean of a few replications), and only promotes the most promising ones to full-fidelity simulations (the whole
+ * population, and the mean of a given number of replications). Screened candidates are valued as in the optimizers:
+ * weighted sum of AET, cost and emissions, each normalized by its maximum among the candidates. A candidate is
+ * promoted if it is among the topK best ones, or if its value is within a relative margin of the best one. When there
+ * are no more candidates than promoted ones, screening is skipped.
+ * Candidates that are not promoted are not returned, so the optimizers may consider them again later.
+ */
+public class MultiFidelityEvaluator implements AssignmentEvaluator {
+
+    private static final Logger logger = LoggerFactory.getLogger(MultiFidelityEvaluator.class);
+
+    private final Triplet<Double, Double, Double> coefficients;
+    private final int screeningPopulation;
+    private final int screeningReplications;
+    /**
+     * promotion rules: number of best candidates promoted, and relative margin to the best value under which other
+     * candidates are promoted too
+     */
+    private int topK = 3;
+    private double margin = 0;
+    /**
+     * number of replications of full-fidelity simulations
+     */
+    private int replications = 1;
+    private final AtomicLong screeningSimulations = new AtomicLong();
+    private final AtomicLong fullSimulations = new AtomicLong();
+    private final AtomicLong savedSimulations = new AtomicLong();
+
+    /**
+     * @param coefficients          coefficients of AET, cost and emissions in the value of an assignment
+     * @param screeningPopulation   population of the screening simulations
+     * @param screeningReplications number of replications of the screening simulations
+     */
+    public MultiFidelityEvaluator(Triplet<Double, Double, Double> coefficients, int screeningPopulation, int screeningReplications) {
+        if (screeningPopulation < 1) throw new IllegalArgumentException("The screening population must be positive (got " + screeningPopulation + ").");
+        if (screeningReplications < 1) throw new IllegalArgumentException("The number of screening replications must be positive (got " + screeningReplications + ").");
+        this.coefficients = coefficients;
+        this.screeningPopulation = screeningPopulation;
+        this.screeningReplications = screeningReplications;
+    }
+
+    /**
+     * Sets the promotion rules of the screened candidates.
+     *
+     * @param topK   number of best candidates promoted
+     * @param margin relative margin to the best value under which other candidates are promoted too (e.g., 0.05 for 5%)
+     */
+    public void setPromotion(int topK, double margin) {
+        if (topK < 1) throw new IllegalArgumentException("The number of promoted candidates must be positive (got " + topK + ").");
+        if (margin < 0) throw new IllegalArgumentException("The promotion margin must be non-negative (got " + margin + ").");
+        this.topK = topK;
+        this.margin = margin;
+    }
+
+    /**
+     * Sets the number of replications of the full-fidelity simulations, whose results are averaged.
+     *
+     * @param replications number of replications
+     */
+    public void setReplications(int replications) {
+        if (replications < 1) throw new IllegalArgumentException("The number of replications must be positive (got " + replications + ").");
+        this.replications = replications;
+    }
+
+    @Override
+    public Map<Map<String, Integer>, Triplet<Double, Double, Double>> evaluate(List<Map<String, Integer>> candidates, int population, Simulations simulations) {
+        List<Map<String, Integer>> promoted = candidates;
+        if (candidates.size() > topK) {
+            List<Triplet<Double, Double, Double>> screened = mean(candidates, screeningPopulation, screeningReplications, simulations);
+            screeningSimulations.addAndGet((long) candidates.size() * screeningReplications);
+            promoted = promote(candidates, screened);
+            savedSimulations.addAndGet((long) (candidates.size() - promoted.size()) * replications);
+            logger.debug("Screening: {} of {} candidates promoted", promoted.size(), candidates.size());
+        }
+        List<Triplet<Double, Double, Double>> results = mean(promoted, population, replications, simulations);
+        fullSimulations.addAndGet((long) promoted.size() * replications);
+        Map<Map<String, Integer>, Triplet<Double, Double, Double>> evaluated = new LinkedHashMap<>();
+        for (int i = 0; i < promoted.size(); i++) {
+            evaluated.put(promoted.get(i), results.get(i));
+        }
+        return evaluated;
+    }
+
+    /**
+     * Applies the promotion rules to the screened candidates.
+     *
+     * @return promoted candidates, in the same order
+     */
+    private List<Map<String, Integer>> promote(List<Map<String, Integer>> candidates, List<Triplet<Double, Double, Double>> screened) {
+        double maxAET = 0, maxCost = 0, maxEmissions = 0;
+        for (Triplet<Double, Double, Double> r : screened) {
+            maxAET = Math.max(maxAET, r.getValue0());
+            maxCost = Math.max(maxCost, r.getValue1());
+            maxEmissions = Math.max(maxEmissions, r.getValue2());
+        }
+        double[] values = new double[screened.size()];
+        for (int i = 0; i < values.length; i++) {
+            Triplet<Double, Double, Double> r = screened.get(i);
+            values[i] = coefficients.getValue0() * normalize(r.getValue0(), maxAET) + coefficients.getValue1() * normalize(r.getValue1(), maxCost) + coefficients.getValue2() * normalize(r.getValue2(), maxEmissions);
+        }
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingDouble(i -> values[i]));
+        double threshold = values[order[0]] * (1 + margin);
+        boolean[] selected = new boolean[values.length];
+        for (int i = 0; i < order.length; i++) {
+            selected[order[i]] = i < topK || values[order[i]] <= threshold;
+        }
+        List<Map<String, Integer>> promoted = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            if (selected[i]) promoted.add(candidates.get(i));
+        }
+        return promoted;
+    }
+
+    /**
+     * Mean results of the given number of replications of the simulations of the assignments.
+     */
+    private static List<Triplet<Double, Double, Double>> mean(List<Map<String, Integer>> assignments, int population, int replications, Simulations simulations) {
+        double[][] sums = new double[assignments.size()][3];
+        for (int r = 0; r < replications; r++) {
+            List<Triplet<Double, Double, Double>> results = simulations.run(assignments, population, r);
+            for (int i = 0; i < sums.length; i++) {
+                sums[i][0] += results.get(i).getValue0();
+                sums[i][1] += results.get(i).getValue1();
+                sums[i][2] += results.get(i).getValue2();
+            }
+        }
+        List<Triplet<Double, Double, Double>> means = new ArrayList<>(sums.length);
+        for (double[] sum : sums) {
+            means.add(Triplet.with(sum[0] / replications, sum[1] / replications, sum[2] / replications));
+        }
+        return means;
+    }
+
+    private static double normalize(double v, double max) {
+        return max == 0 ? 0 : v / max;
+    }
+
+    /**
+     * @return number of screening simulations run so far
+     */
+    public long getScreeningSimulations() {
+        return screeningSimulations.get();
+    }
+
+    @Override
+    public long getFullSimulations() {
+        return fullSimulations.get();
+    }
+
+    @Override
+    public long getSavedSimulations() {
+        return savedSimulations.get();
+    }
+}
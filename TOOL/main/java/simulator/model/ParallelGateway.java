@@ -5,10 +5,7 @@ package simulator.model;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.*;
 
 /**
  */
@@ -49,23 +46,16 @@ public class ParallelGateway extends Gateway {
 
     @Override
     public void run(Simulation simulation) {
-        Integer exec = null; // execution id
+        // get the execution id from the first token
+        final int exec = simulation.getTokens().peek().getId();
         // remove ready tokens in incoming flows
-        Set<Flow> flows = new HashSet<>(getIncoming());
-        Iterator<Token> it = simulation.getTokens().iterator();
-        while (!flows.isEmpty()) {
-            Token t = it.next();
-            if (exec == null) { // get the execution id from the first token
-                exec = t.getId();
-            }
-            if ((exec.equals(t.getId())) && flows.contains(t.getAt())) {
-                it.remove();
-                flows.remove(t.getAt());
-            }
+        List<Token> ready = new ArrayList<>(getIncoming().size());
+        for (Flow f : getIncoming()) {
+            ready.add(simulation.getTokens().getReadyToken(exec, f));
         }
+        simulation.getTokens().removeTokens(ready);
         // add tokens in outgoing flows
-        final int execid = exec; // just for the forEach
-        getOutgoing().forEach(f -> simulation.getTokens().add(new Token(execid, f, f.getDelay().sample())));
+        getOutgoing().forEach(f -> simulation.getTokens().add(new Token(exec, f, simulation.sample(f, f.getDelay()))));
         // add the sync time and remove the timestamp
         if (getIncoming().size() > 1) {
             simulation.getSyncTimes().get(exec).put(getId(), simulation.getGtime() - simulation.getSyncTimestamps().get(exec).get(id));
@@ -0,0 +1,326 @@
+//Copyright 2022 Voyance Systems
+
+package simulator.model;
+
+import org.javatuples.Triplet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The ParetoOptimizer class implements a multi-objective search of assignments of numbers of instances to resources,
+ * following the NSGA-II genetic algorithm. Instead of collapsing AET, cost and emissions into a weighted sum, it
+ * returns the Pareto front of the assignments found, i.e., those for which no other assignment is at least as good on
+ * the three objectives and better on one of them. A planner can then pick among them for any weighting, without
+ * running a new search.
+ * Each generation is made of INDIVIDUALS assignments. Offspring are created by binary tournaments (on the rank of
+ * the front of each assignment, then on its crowding distance), uniform crossover of the numbers of instances, and
+ * mutations of MAX_JUMP instances at most. The next generation is selected among parents and offspring by front and
+ * crowding distance. The offspring of a generation are simulated at the same time (see setParallelism), and results
+ * are kept in a cache (see setCache), so that assignments already simulated are not simulated again.
+ */
+public class ParetoOptimizer {
+    private static final Logger logger = LoggerFactory.getLogger(ParetoOptimizer.class);
+
+    public static int INDIVIDUALS = 20;
+    public static int GENERATIONS = 25;
+    public static double MUTATION_PROBABILITY = 0.3;
+    public static int MAX_JUMP = 3;
+    private static final double EPSILON = 1e-9;
+    private Random rnd = new Random();
+    private StartEvent sv;
+    private Set<Resource> resources;
+    /**
+     * seed of the random streams shared by the simulations of all candidates, null if common random numbers are not used
+     */
+    private Long commonSeed;
+    /**
+     * number of simulations run at the same time
+     */
+    private int parallelism = 1;
+    /**
+     * results of the simulations of the assignments visited by this and previous searches
+     */
+    private SimulationCache cache = new SimulationCache();
+
+    /**
+     * @param sv        start event of the process
+     * @param resources set of resources
+     */
+    public ParetoOptimizer(StartEvent sv, Set<Resource> resources) {
+        this.sv = sv;
+        this.resources = resources;
+    }
+
+    /**
+     * Seeds the generator driving the evolution (initial generation, selection, crossover and mutation).
+     *
+     * @param seed seed of the search
+     */
+    public void setSeed(long seed) {
+        rnd = new Random(seed);
+    }
+
+    /**
+     * Enables common random numbers: every candidate assignment is simulated with random streams created from the
+     * given seed, so that all candidates are evaluated on the same sampled workload.
+     *
+     * @param seed seed of the random streams shared by all the simulations
+     */
+    public void setCommonRandomNumbers(long seed) {
+        this.commonSeed = seed;
+    }
+
+    /**
+     * Sets the number of simulations of a generation run at the same time.
+     *
+     * @param parallelism number of simulations run at the same time (1 runs them on the calling thread)
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("The degree of parallelism must be positive (got " + parallelism + ").");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the cache of simulation results used by the search (see HillClimbing.setCache).
+     *
+     * @param cache cache of simulation results
+     */
+    public void setCache(SimulationCache cache) {
+        this.cache = cache;
+    }
+
+    public SimulationCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Searches the Pareto front of the assignments of resources, starting from a generation made of the initial
+     * assignment and random variations of it.
+     *
+     * @param initial    assignment of resources from which the search begins
+     * @param population population use to carry on the simulations
+     * @return non-dominated assignments among all those simulated, with their (AET, cost, emissions), sorted by AET
+     */
+    public Map<Map<String, Integer>, Triplet<Double, Double, Double>> search(Map<String, Integer> initial, int population) {
+        logger.debug("Search initiated: {}", initial);
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            return search(initial, population, pool);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private Map<Map<String, Integer>, Triplet<Double, Double, Double>> search(Map<String, Integer> initial, int population, ForkJoinPool pool) {
+        String[] resNames = initial.keySet().stream().sorted().toArray(String[]::new);
+        long searchSeed = rnd.nextLong();
+        // unless common random numbers are used, parallel simulations get their own random streams, seeded from the
+        // seed of the search
+        AssignmentEvaluator.Simulations simulations = new AssignmentEvaluator.CachedSimulations(sv, resources, commonSeed, cache, pool, pool == null ? null : searchSeed);
+        Map<Map<String, Integer>, Triplet<Double, Double, Double>> visited = new LinkedHashMap<>();
+
+        // initial generation: the initial assignment and mutations of it
+        Set<Map<String, Integer>> candidates = new LinkedHashSet<>();
+        candidates.add(new HashMap<>(initial));
+        for (int attempts = 0; candidates.size() < INDIVIDUALS && attempts < 100 * INDIVIDUALS; attempts++) {
+            Map<String, Integer> candidate = mutate(initial, resNames, 1.0);
+            if (valid(candidate)) {
+                candidates.add(candidate);
+            }
+        }
+        List<Map<String, Integer>> generation = new ArrayList<>(candidates);
+        evaluate(generation, population, simulations, visited);
+
+        for (int g = 0; g < GENERATIONS; g++) {
+            List<Integer> ranks = new ArrayList<>();
+            List<Double> distances = new ArrayList<>();
+            rank(generation, visited, ranks, distances);
+
+            // offspring: tournament selection, crossover and mutation
+            Set<Map<String, Integer>> offspring = new LinkedHashSet<>();
+            for (int attempts = 0; offspring.size() < INDIVIDUALS && attempts < 100 * INDIVIDUALS; attempts++) {
+                Map<String, Integer> p1 = generation.get(tournament(ranks, distances));
+                Map<String, Integer> p2 = generation.get(tournament(ranks, distances));
+                Map<String, Integer> child = mutate(crossover(p1, p2, resNames), resNames, MUTATION_PROBABILITY);
+                if (valid(child) && !generation.contains(child)) {
+                    offspring.add(child);
+                }
+            }
+            evaluate(new ArrayList<>(offspring), population, simulations, visited);
+
+            // next generation: best fronts of parents and offspring, the last one truncated by crowding distance
+            List<Map<String, Integer>> union = new ArrayList<>(generation);
+            union.addAll(offspring);
+            ranks.clear();
+            distances.clear();
+            rank(union, visited, ranks, distances);
+            Integer[] order = new Integer[union.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, (i, j) -> ranks.get(i).equals(ranks.get(j)) ? Double.compare(distances.get(j), distances.get(i)) : Integer.compare(ranks.get(i), ranks.get(j)));
+            generation = new ArrayList<>();
+            for (int i = 0; i < Math.min(INDIVIDUALS, order.length); i++) {
+                generation.add(union.get(order[i]));
+            }
+            logger.debug("Generation {}: {} assignments simulated", g, visited.size());
+        }
+
+        // Pareto front of all the simulated assignments
+        List<Map<String, Integer>> all = new ArrayList<>(visited.keySet());
+        List<List<Integer>> fronts = fronts(all, visited);
+        List<Map<String, Integer>> front = new ArrayList<>();
+        fronts.get(0).forEach(i -> front.add(all.get(i)));
+        front.sort(Comparator.comparingDouble(a -> visited.get(a).getValue0()));
+        Map<Map<String, Integer>, Triplet<Double, Double, Double>> result = new LinkedHashMap<>();
+        front.forEach(a -> result.put(a, visited.get(a)));
+        logger.debug("Search finished: {}", result);
+        return result;
+    }
+
+    /**
+     * Simulates the given assignments that have not been visited yet, at the same time if the parallelism allows it,
+     * and adds their results to the visited ones.
+     */
+    private void evaluate(List<Map<String, Integer>> assignments, int population, AssignmentEvaluator.Simulations simulations, Map<Map<String, Integer>, Triplet<Double, Double, Double>> visited) {
+        List<Map<String, Integer>> pending = new ArrayList<>();
+        for (Map<String, Integer> assignment : assignments) {
+            if (!visited.containsKey(assignment)) {
+                pending.add(assignment);
+            }
+        }
+        List<Triplet<Double, Double, Double>> results = simulations.run(pending, population, 0);
+        for (int i = 0; i < pending.size(); i++) {
+            visited.put(pending.get(i), results.get(i));
+        }
+    }
+
+    /**
+     * Computes the rank of the front of each assignment (0 for the non-dominated ones) and its crowding distance in
+     * its front.
+     */
+    private void rank(List<Map<String, Integer>> assignments, Map<Map<String, Integer>, Triplet<Double, Double, Double>> visited, List<Integer> ranks, List<Double> distances) {
+        for (int i = 0; i < assignments.size(); i++) {
+            ranks.add(0);
+            distances.add(0.0);
+        }
+        List<List<Integer>> fronts = fronts(assignments, visited);
+        for (int r = 0; r < fronts.size(); r++) {
+            List<Integer> front = fronts.get(r);
+            for (int i : front) ranks.set(i, r);
+            for (int objective = 0; objective < 3; objective++) {
+                final int o = objective;
+                List<Integer> sorted = new ArrayList<>(front);
+                sorted.sort(Comparator.comparingDouble(i -> objective(visited.get(assignments.get(i)), o)));
+                double min = objective(visited.get(assignments.get(sorted.get(0))), o);
+                double max = objective(visited.get(assignments.get(sorted.get(sorted.size() - 1))), o);
+                distances.set(sorted.get(0), Double.POSITIVE_INFINITY);
+                distances.set(sorted.get(sorted.size() - 1), Double.POSITIVE_INFINITY);
+                if (max > min) {
+                    for (int k = 1; k < sorted.size() - 1; k++) {
+                        double gap = objective(visited.get(assignments.get(sorted.get(k + 1))), o) - objective(visited.get(assignments.get(sorted.get(k - 1))), o);
+                        distances.set(sorted.get(k), distances.get(sorted.get(k)) + gap / (max - min));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Fast non-dominated sorting of NSGA-II.
+     *
+     * @return indexes of the assignments of each front, starting by the non-dominated ones
+     */
+    private List<List<Integer>> fronts(List<Map<String, Integer>> assignments, Map<Map<String, Integer>, Triplet<Double, Double, Double>> visited) {
+        int n = assignments.size();
+        List<List<Integer>> dominated = new ArrayList<>(n);
+        int[] dominations = new int[n];
+        List<List<Integer>> fronts = new ArrayList<>();
+        List<Integer> front = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            dominated.add(new ArrayList<>());
+            for (int j = 0; j < n; j++) {
+                if (dominates(visited.get(assignments.get(i)), visited.get(assignments.get(j)))) {
+                    dominated.get(i).add(j);
+                } else if (dominates(visited.get(assignments.get(j)), visited.get(assignments.get(i)))) {
+                    dominations[i]++;
+                }
+            }
+            if (dominations[i] == 0) front.add(i);
+        }
+        while (!front.isEmpty()) {
+            fronts.add(front);
+            List<Integer> next = new ArrayList<>();
+            for (int i : front) {
+                for (int j : dominated.get(i)) {
+                    if (--dominations[j] == 0) next.add(j);
+                }
+            }
+            front = next;
+        }
+        return fronts;
+    }
+
+    /**
+     * A result dominates another one if it is at least as good for AET, cost and emissions, and better for one of them.
+     * Values differing by less than a relative EPSILON are considered equal, so that rounding errors (e.g., on the
+     * emissions of assignments doing the same work) do not make dominated assignments look optimal.
+     */
+    private boolean dominates(Triplet<Double, Double, Double> a, Triplet<Double, Double, Double> b) {
+        boolean better = false;
+        for (int o = 0; o < 3; o++) {
+            double va = objective(a, o);
+            double vb = objective(b, o);
+            if (Math.abs(va - vb) <= EPSILON * Math.max(Math.abs(va), Math.abs(vb))) continue;
+            if (va > vb) return false;
+            better = true;
+        }
+        return better;
+    }
+
+    private double objective(Triplet<Double, Double, Double> result, int o) {
+        return (Double) result.getValue(o);
+    }
+
+    /**
+     * Binary tournament: the best of two random assignments, by front then crowding distance.
+     */
+    private int tournament(List<Integer> ranks, List<Double> distances) {
+        int i = rnd.nextInt(ranks.size());
+        int j = rnd.nextInt(ranks.size());
+        if (!ranks.get(i).equals(ranks.get(j))) return ranks.get(i) < ranks.get(j) ? i : j;
+        return distances.get(i) >= distances.get(j) ? i : j;
+    }
+
+    private Map<String, Integer> crossover(Map<String, Integer> p1, Map<String, Integer> p2, String[] resNames) {
+        Map<String, Integer> child = new HashMap<>();
+        for (String r : resNames) {
+            child.put(r, rnd.nextBoolean() ? p1.get(r) : p2.get(r));
+        }
+        return child;
+    }
+
+    private Map<String, Integer> mutate(Map<String, Integer> assignment, String[] resNames, double probability) {
+        Map<String, Integer> next = new HashMap<>(assignment);
+        for (String r : resNames) {
+            if (rnd.nextDouble() < probability) {
+                int jump = rnd.nextInt(MAX_JUMP) + 1;
+                next.put(r, rnd.nextBoolean() ? next.get(r) + jump : next.get(r) - jump);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Checks that the assignment of resources is valid (see HillClimbing.valid).
+     *
+     * @param current assignment to be checked
+     * @return validity of the assignment
+     */
+    private boolean valid(Map<String, Integer> current) {
+        return current.values().stream().allMatch(i -> (0 < i && i < 100));
+    }
+}
@@ -0,0 +1,165 @@
+// Copyright 2022 Voyance Systems
+
+package simulator.model;
+
+import java.util.Arrays;
+
+/**
+ * The QuantileSketch class estimates the quantiles of a stream of non-negative values (e.g., cycle times) without
+ * keeping the values. Values are counted in buckets of logarithmically increasing width, so that every quantile is
+ * estimated with a relative error of at most the given accuracy, whatever the number of values (DDSketch). Sketches
+ * with the same accuracy merge exactly, by adding their counts: the sketches of parallel replications can be merged
+ * into the sketch of all their values.
+ */
+public class QuantileSketch {
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    /**
+     * values below are counted as zero
+     */
+    private static final double MIN_INDEXABLE_VALUE = 1e-9;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    /**
+     * counts of the buckets, counts[i] being the count of bucket offset + i, whose values are in (gamma^(offset+i-1),
+     * gamma^(offset+i)]
+     */
+    private long[] counts;
+    private int offset;
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * @param relativeAccuracy maximal relative error of the quantiles, in (0,1)
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) throw new IllegalArgumentException("The relative accuracy must be in (0,1) (got " + relativeAccuracy + ").");
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.counts = new long[0];
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Adds a value to the sketch. NaN values are ignored.
+     *
+     * @param value non-negative value
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) return;
+        if (value < 0) throw new IllegalArgumentException("Only non-negative values can be added (got " + value + ").");
+        if (value < MIN_INDEXABLE_VALUE) {
+            zeroCount++;
+        } else {
+            int index = (int) Math.ceil(Math.log(value) / logGamma);
+            ensureCapacity(index, index);
+            counts[index - offset]++;
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds the values of another sketch to this one.
+     *
+     * @param other sketch with the same relative accuracy
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) throw new IllegalArgumentException("Sketches with different accuracies can not be merged (" + relativeAccuracy + " and " + other.relativeAccuracy + ").");
+        if (other.count == 0) return;
+        if (other.counts.length > 0) {
+            ensureCapacity(other.offset, other.offset + other.counts.length - 1);
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[other.offset + i - offset] += other.counts[i];
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * @param q quantile, in [0,1] (e.g., 0.95)
+     * @return estimation of the quantile, NaN if the sketch is empty
+     */
+    public double getQuantile(double q) {
+        if (q < 0 || q > 1) throw new IllegalArgumentException("The quantile must be in [0,1] (got " + q + ").");
+        if (count == 0) return Double.NaN;
+        double rank = q * (count - 1);
+        long seen = zeroCount;
+        if (seen > rank) return min;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                // middle of the bucket, in relative terms
+                double value = 2 * Math.pow(gamma, offset + i) / (gamma + 1);
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    private void ensureCapacity(int low, int high) {
+        if (counts.length == 0) {
+            offset = low;
+            counts = new long[high - low + 1];
+            return;
+        }
+        int newOffset = Math.min(offset, low);
+        int newEnd = Math.max(offset + counts.length - 1, high);
+        if (newOffset == offset && newEnd == offset + counts.length - 1) return;
+        // some slack on the growing side, as values tend to spread progressively
+        int slack = Math.max(8, counts.length >> 1);
+        if (newOffset < offset) newOffset -= slack;
+        if (newEnd > offset + counts.length - 1) newEnd += slack;
+        long[] newCounts = new long[newEnd - newOffset + 1];
+        System.arraycopy(counts, 0, newCounts, offset - newOffset, counts.length);
+        counts = newCounts;
+        offset = newOffset;
+    }
+
+    /**
+     * @return a copy of the sketch
+     */
+    public QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(relativeAccuracy);
+        copy.counts = Arrays.copyOf(counts, counts.length);
+        copy.offset = offset;
+        copy.zeroCount = zeroCount;
+        copy.count = count;
+        copy.min = min;
+        copy.max = max;
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch [count=" + count + ", p50=" + getQuantile(0.5) + ", p95=" + getQuantile(0.95) + ", p99=" + getQuantile(0.99) + ", max=" + getMax() + "]";
+    }
+}
@@ -0,0 +1,368 @@
+// Copyright 2022 Voyance Systems
+
+package simulator.model;
+
+import org.javatuples.Triplet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * The QueueingEstimator class approximates the results of the simulation of an assignment of numbers of instances to
+ * resources analytically, as an open queueing network, in microseconds instead of a full simulation:
+ * - the visit ratio of each element is the solution of the traffic equations (tokens are split by the probabilities of
+ *   exclusive and inclusive gateways, a parallel merge fires once per token of its least visited incoming flow);
+ * - each resource is a multi-server station (M/M/c) whose jobs are the instances required by tasks, with offered load
+ *   arrival rate * sum of (visit ratio * mean duration * instances) over the tasks requiring it, from which the
+ *   utilisation of the resource and the mean waiting time for an instance follow (Erlang C formula);
+ * - a task takes its mean duration plus the waiting time of its most congested resource, and the AET is the mean time
+ *   at which tokens reach end events, taking the latest branch at parallel merges and the mean over the incoming
+ *   flows, weighted by their visit ratios, at other merges (which also accounts for loops);
+ * - cost and emissions accrue at the mean rates of the resources until the last instance ends.
+ * Estimates ignore the variability of durations and the correlations between resources, so they are only meant to
+ * rank candidate assignments before simulating the most promising ones (see select), e.g., in HillClimbing and
+ * SimulatedAnnealing. Assignments saturating a resource have infinite AET, cost and emissions.
+ * Processes are compiled once (see CompiledWorkflow), so the processes supported are those of the compiled engine.
+ */
+public class QueueingEstimator {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueueingEstimator.class);
+
+    private static final int MAX_ITERATIONS = 10000;
+    private static final double TOLERANCE = 1e-12;
+
+    private final CompiledWorkflow w;
+    private final Map<String, Resource> resources;
+    /**
+     * source node of each flow (-1 for other elements), and share of the tokens of the source taking it
+     */
+    private final int[] source;
+    private final double[] share;
+    /**
+     * visit ratio and mean duration (task) or delay (flow) of each element
+     */
+    private final double[] visits;
+    private final double[] means;
+
+    /**
+     * @param sv        start event of the process
+     * @param resources set of resources
+     * @throws IllegalArgumentException if the process has elements not supported by the compiled engine
+     */
+    public QueueingEstimator(StartEvent sv, Set<Resource> resources) {
+        this.w = CompiledWorkflow.compile(sv);
+        this.resources = new HashMap<>();
+        resources.forEach(r -> this.resources.put(r.getId(), r));
+        int n = w.ids.length;
+        source = new int[n];
+        share = new double[n];
+        Arrays.fill(source, -1);
+        means = new double[n];
+        for (int e = 0; e < n; e++) {
+            if (w.distributions[e] != null) {
+                means[e] = Double.isNaN(w.constants[e]) ? w.distributions[e].getNumericalMean() : w.constants[e];
+            }
+            switch (w.kind[e]) {
+                case CompiledWorkflow.START:
+                case CompiledWorkflow.TASK:
+                    setSource(w.outgoing[e], e, 1);
+                    break;
+                case CompiledWorkflow.PARALLEL:
+                    for (int f : w.outgoingFlows[e]) {
+                        setSource(f, e, 1);
+                    }
+                    break;
+                case CompiledWorkflow.EXCLUSIVE:
+                    for (int i = 0; i < w.outgoingFlows[e].length; i++) {
+                        setSource(w.outgoingFlows[e][i], e, w.probabilities[e][i] - (i == 0 ? 0 : w.probabilities[e][i - 1]));
+                    }
+                    break;
+                case CompiledWorkflow.INCLUSIVE:
+                    for (int i = 0; i < w.outgoingFlows[e].length; i++) {
+                        setSource(w.outgoingFlows[e][i], e, w.probabilities[e][i]);
+                    }
+                    break;
+                default:
+            }
+        }
+        visits = visitRatios();
+    }
+
+    private void setSource(int flow, int node, double share) {
+        source[flow] = node;
+        this.share[flow] = share;
+    }
+
+    /**
+     * Solves the traffic equations by fixed-point iteration, from one token at the start event.
+     */
+    private double[] visitRatios() {
+        double[] v = new double[w.ids.length];
+        for (int it = 0; it < MAX_ITERATIONS; it++) {
+            double change = 0;
+            for (int e = 0; e < v.length; e++) {
+                double nv;
+                switch (w.kind[e]) {
+                    case CompiledWorkflow.FLOW:
+                        nv = source[e] < 0 ? 0 : share[e] * v[source[e]];
+                        break;
+                    case CompiledWorkflow.START:
+                        nv = 1;
+                        break;
+                    case CompiledWorkflow.TASK:
+                    case CompiledWorkflow.END:
+                        nv = v[w.incoming[e]];
+                        break;
+                    case CompiledWorkflow.PARALLEL:
+                        nv = Double.POSITIVE_INFINITY;
+                        for (int f : w.incomingFlows[e]) {
+                            nv = Math.min(nv, v[f]);
+                        }
+                        break;
+                    default:
+                        nv = 0;
+                        for (int f : w.incomingFlows[e]) {
+                            nv += v[f];
+                        }
+                }
+                change = Math.max(change, Math.abs(nv - v[e]) / Math.max(1, nv));
+                v[e] = nv;
+            }
+            if (change < TOLERANCE) break;
+        }
+        return v;
+    }
+
+    /**
+     * Estimates the results of the simulation of the given assignment.
+     *
+     * @param assignment            number of instances of each resource
+     * @param population            number of executions of the process
+     * @param meanInterArrivalTime  mean inter-arrival time of the executions
+     * @return estimated results
+     */
+    public Estimate estimate(Map<String, Integer> assignment, int population, double meanInterArrivalTime) {
+        double rate = 1 / meanInterArrivalTime;
+        int nr = w.resourceIds.length;
+        // offered load (mean number of instances in use) and number of requests of each resource
+        double[] load = new double[nr], requests = new double[nr];
+        for (int e = 0; e < w.ids.length; e++) {
+            if (w.kind[e] == CompiledWorkflow.TASK) {
+                for (int j = 0; j < w.demands[e].length; j++) {
+                    load[w.demands[e][j]] += rate * visits[e] * means[e] * w.amounts[e][j];
+                    requests[w.demands[e][j]] += rate * visits[e] * w.amounts[e][j];
+                }
+            }
+        }
+        double[] waits = new double[nr];
+        boolean stable = true;
+        for (int r = 0; r < nr; r++) {
+            int c = assignment.getOrDefault(w.resourceIds[r], 0);
+            if (load[r] >= c && requests[r] > 0) {
+                stable = false;
+            } else if (requests[r] > 0) {
+                waits[r] = erlangC(c, load[r]) * (load[r] / requests[r]) / (c - load[r]);
+            }
+        }
+        double aet = stable ? executionTime(waits) : Double.POSITIVE_INFINITY;
+        double horizon = (population - 1) * meanInterArrivalTime + aet;
+        double cost = 0, emissions = 0;
+        Map<String, Double> usage = new HashMap<>();
+        for (Map.Entry<String, Integer> a : assignment.entrySet()) {
+            int r = indexOf(a.getKey());
+            double busy = r < 0 ? 0 : load[r];
+            Resource info = resources.get(a.getKey());
+            if (info != null) {
+                cost += horizon * (a.getValue() * info.getCostWhenInactive() + busy * (info.getCostWhenActive() - info.getCostWhenInactive()));
+                emissions += horizon * busy * info.getEmissions();
+            }
+            usage.put(a.getKey(), a.getValue() == 0 ? (busy > 0 ? Double.POSITIVE_INFINITY : 0) : 100 * busy / a.getValue());
+        }
+        return new Estimate(aet, stable ? cost : Double.POSITIVE_INFINITY, stable ? emissions : Double.POSITIVE_INFINITY, usage, stable);
+    }
+
+    private int indexOf(String resource) {
+        for (int r = 0; r < w.resourceIds.length; r++) {
+            if (w.resourceIds[r].equals(resource)) return r;
+        }
+        return -1;
+    }
+
+    /**
+     * Mean time at which tokens reach end events, given the waiting times of the resources.
+     */
+    private double executionTime(double[] waits) {
+        // mean time at which tokens leave each element
+        double[] exits = new double[w.ids.length];
+        for (int it = 0; it < MAX_ITERATIONS; it++) {
+            double change = 0;
+            for (int e = 0; e < exits.length; e++) {
+                double nx;
+                switch (w.kind[e]) {
+                    case CompiledWorkflow.FLOW:
+                        nx = (source[e] < 0 ? 0 : exits[source[e]]) + means[e];
+                        break;
+                    case CompiledWorkflow.START:
+                        nx = 0;
+                        break;
+                    case CompiledWorkflow.END:
+                        nx = exits[w.incoming[e]];
+                        break;
+                    case CompiledWorkflow.TASK:
+                        double wait = 0;
+                        for (int r : w.demands[e]) {
+                            wait = Math.max(wait, waits[r]);
+                        }
+                        nx = exits[w.incoming[e]] + wait + means[e];
+                        break;
+                    case CompiledWorkflow.PARALLEL:
+                        nx = 0;
+                        for (int f : w.incomingFlows[e]) {
+                            nx = Math.max(nx, exits[f]);
+                        }
+                        break;
+                    default:
+                        double sum = 0, weight = 0;
+                        for (int f : w.incomingFlows[e]) {
+                            sum += visits[f] * exits[f];
+                            weight += visits[f];
+                        }
+                        nx = weight == 0 ? 0 : sum / weight;
+                }
+                change = Math.max(change, Math.abs(nx - exits[e]) / Math.max(1, nx));
+                exits[e] = nx;
+            }
+            if (change < TOLERANCE) break;
+        }
+        double sum = 0, weight = 0;
+        for (int e = 0; e < exits.length; e++) {
+            if (w.kind[e] == CompiledWorkflow.END) {
+                sum += visits[e] * exits[e];
+                weight += visits[e];
+            }
+        }
+        return weight == 0 ? 0 : sum / weight;
+    }
+
+    /**
+     * Probability that a request waits in an M/M/c station with the given offered load (Erlang C formula), computed
+     * from the Erlang B recursion.
+     */
+    private static double erlangC(int c, double load) {
+        double b = 1;
+        for (int k = 1; k <= c; k++) {
+            b = load * b / (k + load * b);
+        }
+        return c * b / (c - load * (1 - b));
+    }
+
+    /**
+     * Selects the most promising assignments, according to their estimates valued as in the optimizers (weighted sum of
+     * AET, cost and emissions, each normalized by its maximum among the stable estimates). Assignments saturating a
+     * resource are only selected if there are not enough stable ones.
+     *
+     * @param assignments          candidate assignments
+     * @param n                    maximal number of assignments selected
+     * @param population           number of executions of the process
+     * @param meanInterArrivalTime mean inter-arrival time of the executions
+     * @param coefficients         coefficients of AET, cost and emissions in the value of an assignment
+     * @return selected assignments, in the same order as in the given list
+     */
+    public List<Map<String, Integer>> select(List<Map<String, Integer>> assignments, int n, int population, double meanInterArrivalTime, Triplet<Double, Double, Double> coefficients) {
+        if (assignments.size() <= n) return assignments;
+        List<Estimate> estimates = new ArrayList<>(assignments.size());
+        double maxAET = 0, maxCost = 0, maxEmissions = 0;
+        for (Map<String, Integer> assignment : assignments) {
+            Estimate estimate = estimate(assignment, population, meanInterArrivalTime);
+            estimates.add(estimate);
+            if (estimate.isStable()) {
+                maxAET = Math.max(maxAET, estimate.getAvgExecTime());
+                maxCost = Math.max(maxCost, estimate.getTotalCost());
+                maxEmissions = Math.max(maxEmissions, estimate.getTotalEmissions());
+            }
+        }
+        double[] values = new double[assignments.size()];
+        for (int i = 0; i < values.length; i++) {
+            Estimate e = estimates.get(i);
+            values[i] = e.isStable()
+                    ? coefficients.getValue0() * normalize(e.getAvgExecTime(), maxAET) + coefficients.getValue1() * normalize(e.getTotalCost(), maxCost) + coefficients.getValue2() * normalize(e.getTotalEmissions(), maxEmissions)
+                    : Double.POSITIVE_INFINITY;
+        }
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingDouble(i -> values[i]));
+        boolean[] selected = new boolean[values.length];
+        for (int i = 0; i < n; i++) {
+            selected[order[i]] = true;
+        }
+        List<Map<String, Integer>> result = new ArrayList<>(n);
+        for (int i = 0; i < values.length; i++) {
+            if (selected[i]) result.add(assignments.get(i));
+        }
+        logger.debug("Estimator selected {} of {} assignments", result.size(), assignments.size());
+        return result;
+    }
+
+    private static double normalize(double v, double max) {
+        return max == 0 ? 0 : v / max;
+    }
+
+    /**
+     * Estimated results of an assignment.
+     */
+    public static class Estimate {
+        private final double avgExecTime;
+        private final double totalCost;
+        private final double totalEmissions;
+        private final Map<String, Double> usagePercentage;
+        private final boolean stable;
+
+        Estimate(double avgExecTime, double totalCost, double totalEmissions, Map<String, Double> usagePercentage, boolean stable) {
+            this.avgExecTime = avgExecTime;
+            this.totalCost = totalCost;
+            this.totalEmissions = totalEmissions;
+            this.usagePercentage = usagePercentage;
+            this.stable = stable;
+        }
+
+        public double getAvgExecTime() {
+            return avgExecTime;
+        }
+
+        public double getTotalCost() {
+            return totalCost;
+        }
+
+        public double getTotalEmissions() {
+            return totalEmissions;
+        }
+
+        /**
+         * @return mean percentage of the instances of each resource in use, 100 or more for saturated resources
+         */
+        public Map<String, Double> getUsagePercentage() {
+            return usagePercentage;
+        }
+
+        /**
+         * @return false if a resource is saturated, in which case the queue of tokens waiting for it grows without
+         * bound
+         */
+        public boolean isStable() {
+            return stable;
+        }
+
+        /**
+         * @return AET, cost and emissions, as returned by Simulation.runSimulation
+         */
+        public Triplet<Double, Double, Double> toTriplet() {
+            return Triplet.with(avgExecTime, totalCost, totalEmissions);
+        }
+
+        @Override
+        public String toString() {
+            return "Estimate [avgExecTime=" + avgExecTime + ", totalCost=" + totalCost + ", totalEmissions=" + totalEmissions + ", usagePercentage=" + usagePercentage + ", stable=" + stable + "]";
+        }
+    }
+}
@@ -0,0 +1,87 @@
+//Copyright 2022 Voyance Systems
+
+package simulator.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * The RandomStreams class manages the random streams of a simulation. Every stochastic source of the process (the
+ * arrivals of the workload, the duration of each task, the delay of each flow, and the choices of each gateway) draws
+ * its values from its own stream, named after the identifier of the corresponding element. The seed of a stream only
+ * depends on the master seed and on the name of the stream, and not on the order in which the streams are first used.
+ * Therefore, two simulations of the same process with the same master seed sample the same values for each source,
+ * even if they use different resource assignments and their events interleave differently (common random numbers).
+ */
+public class RandomStreams {
+
+    private static final Logger logger = LoggerFactory.getLogger(RandomStreams.class);
+
+    /**
+     * Name of the stream of inter-arrival times of the workload. Element identifiers come from BPMN files, in which
+     * they can not contain spaces, so this name does not clash with them.
+     */
+    public static final String ARRIVALS = "inter arrival times";
+
+    private final long seed;
+    private final Map<String, SplittableRandom> streams;
+
+    public RandomStreams(long seed) {
+        this.seed = seed;
+        this.streams = new HashMap<>();
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the stream with the given name, creating it if it has not been used yet.
+     *
+     * @param name name of the stream
+     * @return random stream
+     */
+    public SplittableRandom stream(String name) {
+        SplittableRandom stream = streams.get(name);
+        if (stream == null) {
+            stream = new SplittableRandom(mix(seed + mix(hash(name))));
+            streams.put(name, stream);
+        }
+        return stream;
+    }
+
+    /**
+     * Returns the stream of the given element.
+     *
+     * @param element stochastic element
+     * @return random stream
+     */
+    public SplittableRandom stream(Element element) {
+        return stream(element.getId());
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a stream name.
+     */
+    private static long hash(String name) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            h ^= name.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * Finalizer of MurmurHash3, used to spread seeds so that the streams of different names do not overlap.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -9,8 +9,6 @@ import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 public class ResourceBank {
 
@@ -20,14 +18,24 @@ public class ResourceBank {
      * map that associates a resource object to its identifier.
      */
     private final Map<String, SimulationResource> resources;
+    /**
+     * how histories are recorded
+     */
+    private HistoryPolicy historyPolicy;
     /**
      * global cost along time
      */
-    private SortedMap<Double, Double> costHistory;
+    private TimeSeries costHistory;
     /**
      * cost of all resources, active and inactive
      */
     private double totalCost;
+    /**
+     * current cost and emissions per time unit of all resources, adjusted whenever the number of available instances
+     * of a resource changes, so that updating the global cost and emissions does not require to visit all resources
+     */
+    private double costRate;
+    private double emissionsRate;
     /**
      * last update of the cost and emissions of resources, everytime the number of instances of any resource changes the
      * cost and emissions must be updated
@@ -37,7 +45,7 @@ public class ResourceBank {
     /**
      * global emissions along time
      */
-    private SortedMap<Double, Double> emissionsHistory;
+    private TimeSeries emissionsHistory;
     /**
      * total emissions
      */
@@ -45,15 +53,33 @@ public class ResourceBank {
 
     public ResourceBank() {
         resources = new HashMap<>();
-        costHistory = new TreeMap<>();
-        costHistory.put(0.0, 0.0);
-
-        emissionsHistory = new TreeMap<>();
-        emissionsHistory.put(0.0, 0.0);
+        setHistoryPolicy(HistoryPolicy.FULL);
 
         lastUpdate = 0;
     }
 
+    /**
+     * Sets how the histories of the global and per-resource cost and emissions, and of the available and in use
+     * instances of each resource, are recorded. Histories recorded so far are discarded, so the policy is expected
+     * to be set before the simulation is run.
+     *
+     * @param historyPolicy history policy
+     */
+    public void setHistoryPolicy(HistoryPolicy historyPolicy) {
+        this.historyPolicy = historyPolicy;
+        costHistory = new TimeSeries(historyPolicy);
+        costHistory.record(0.0, 0.0);
+
+        emissionsHistory = new TimeSeries(historyPolicy);
+        emissionsHistory.record(0.0, 0.0);
+
+        resources.values().forEach(r -> r.setHistoryPolicy(historyPolicy));
+    }
+
+    public HistoryPolicy getHistoryPolicy() {
+        return historyPolicy;
+    }
+
     public static Resource createResource(String id, double ac, double ic, double emissions) {
         return new ResourceInfo(id, ac, ic, emissions);
     }
@@ -67,11 +93,17 @@ public class ResourceBank {
     }
 
     public void addResource(Resource r) {
-        resources.put(r.getId(), new SimulationResource(r));
+        SimulationResource previous = resources.put(r.getId(), new SimulationResource(r, historyPolicy));
+        if (previous != null) {
+            removeRates(previous);
+        }
     }
 
     public void setNumberOfInstancesOfResource(String id, int n) {
-        resources.get(id).setNumberOfInstances(n);
+        SimulationResource r = resources.get(id);
+        removeRates(r);
+        r.setNumberOfInstances(n);
+        addRates(r);
     }
 
     public int getNumInstances(String key) {
@@ -81,17 +113,41 @@ public class ResourceBank {
     /**
      * The grabResources method allows a task to take the resources' instances it requires for its
      * execution. We assume that we have previously checked that there are enough resources.
+     * Only the required resources are updated, other resources are brought up to date when they
+     * change or when updateResources is called, so that the cost of a grab does not depend on the
+     * number of resources.
      *
      * @param reqResources is a map with the number of required instances of each type
      * @param ts           is a timestamp
      */
     public void grabResources(Map<String, Integer> reqResources, double ts) {
-        updateResources(ts);
+        updateGlobal(ts);
         for (Map.Entry<String, Integer> e : reqResources.entrySet()) {
-            resources.get(e.getKey()).grabResource(e.getValue(), ts);
+            grab(resources.get(e.getKey()), e.getValue(), ts);
         }
     }
 
+    /**
+     * Same as grabResources(Map, double), for resources resolved beforehand (see getResources(String[])).
+     *
+     * @param rs      required resources
+     * @param amounts number of required instances of each resource
+     * @param ts      is a timestamp
+     */
+    void grabResources(SimulationResource[] rs, int[] amounts, double ts) {
+        updateGlobal(ts);
+        for (int i = 0; i < rs.length; i++) {
+            grab(rs[i], amounts[i], ts);
+        }
+    }
+
+    private void grab(SimulationResource r, int n, double ts) {
+        r.update(ts);
+        removeRates(r);
+        r.grabResource(n, ts);
+        addRates(r);
+    }
+
     /**
      * The releaseResources method allows a task to release the resources' instances it required for
      * its execution.
@@ -100,40 +156,96 @@ public class ResourceBank {
      * @param ts           is a timestamp
      */
     public void releaseResources(Map<String, Integer> reqResources, double ts) {
-        updateResources(ts);
+        updateGlobal(ts);
         for (Map.Entry<String, Integer> e : reqResources.entrySet()) {
-            resources.get(e.getKey()).releaseResource(e.getValue(), ts);
+            release(resources.get(e.getKey()), e.getValue(), ts);
+        }
+    }
+
+    /**
+     * Same as releaseResources(Map, double), for resources resolved beforehand (see getResources(String[])).
+     *
+     * @param rs      resources to release
+     * @param amounts number of instances of each resource to release
+     * @param ts      is a timestamp
+     */
+    void releaseResources(SimulationResource[] rs, int[] amounts, double ts) {
+        updateGlobal(ts);
+        for (int i = 0; i < rs.length; i++) {
+            release(rs[i], amounts[i], ts);
+        }
+    }
+
+    private void release(SimulationResource r, int n, double ts) {
+        r.update(ts);
+        removeRates(r);
+        r.releaseResource(n, ts);
+        addRates(r);
+    }
+
+    /**
+     * Resolves resources by identifier once, so that compiled simulations address them by position.
+     *
+     * @param ids identifiers of the resources
+     * @return resources, in the same order
+     */
+    SimulationResource[] getResources(String[] ids) {
+        SimulationResource[] rs = new SimulationResource[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            rs[i] = resources.get(ids[i]);
+            if (rs[i] == null) throw new IllegalArgumentException("Unknown resource " + ids[i] + ".");
         }
+        return rs;
     }
 
+    /**
+     * Returns a bank with the same resources, numbers of instances and history policy, and no usage yet.
+     *
+     * @return copy of the bank, as it was before the simulation
+     */
+    ResourceBank copy() {
+        ResourceBank copy = new ResourceBank();
+        copy.setHistoryPolicy(historyPolicy);
+        for (SimulationResource r : resources.values()) {
+            copy.addResource(createResource(r.getId(), r.getCostWhenActive(), r.getCostWhenInactive(), r.getEmissions()));
+            copy.setNumberOfInstancesOfResource(r.getId(), (int) r.getTotalNumberOfInstances());
+        }
+        return copy;
+    }
+
+    /**
+     * Brings all the resources up to date, e.g., at the end of the simulation.
+     *
+     * @param ts is a timestamp
+     */
     public void updateResources(double ts) {
         resources.values().forEach(r -> r.update(ts)); // this updates all resources
-        updateGlobalCost(ts); // this updates the global cost
-        updateGlobalEmissions(ts); // this updates the global emissions
-        lastUpdate = ts;
+        updateGlobal(ts);
     }
 
-    private void updateGlobalCost(double ts) {
-        double cost =
-                resources.values().stream()
-                        .map(
-                                r ->
-                                        (ts - lastUpdate)
-                                                * (r.getNumberOfAvailableInstances() * r.getCostWhenInactive()
-                                                + (r.getTotalNumberOfInstances() - r.getNumberOfAvailableInstances())
-                                                * r.getCostWhenActive()))
-                        .reduce(0.0, Double::sum);
+    /**
+     * Updates the global cost and emissions, using the rates of the period since the last update.
+     *
+     * @param ts is a timestamp
+     */
+    private void updateGlobal(double ts) {
+        double cost = (ts - lastUpdate) * costRate;
         totalCost += cost;
-        costHistory.put(ts, cost / ts); // this gives the current cost per time unit
+        costHistory.record(ts, cost / ts); // this gives the current cost per time unit
+        double emissions = (ts - lastUpdate) * emissionsRate;
+        totalEmissions += emissions;
+        emissionsHistory.record(ts, emissions / ts); // this gives the current emissions per time unit
+        lastUpdate = ts;
     }
 
-    private void updateGlobalEmissions(double ts) {
-        double emissions =
-                resources.values().stream()
-                        .map(r -> (ts - lastUpdate) * (r.getTotalNumberOfInstances() - r.getNumberOfAvailableInstances()) * r.getEmissions())
-                        .reduce(0.0, Double::sum);
-        totalEmissions += emissions;
-        emissionsHistory.put(ts, emissions / ts); // this gives the current emissions per time unit
+    private void addRates(SimulationResource r) {
+        costRate += r.getCostRate();
+        emissionsRate += r.getEmissionsRate();
+    }
+
+    private void removeRates(SimulationResource r) {
+        costRate -= r.getCostRate();
+        emissionsRate -= r.getEmissionsRate();
     }
 
     public Map<String, Double> getUsages(double ts) {
@@ -169,11 +281,11 @@ public class ResourceBank {
     }
 
     public Map<Double, Double> getCostHistory() {
-        return costHistory;
+        return costHistory.toMap();
     }
 
     public Map<Double, Double> getEmissionsHistory() {
-        return emissionsHistory;
+        return emissionsHistory.toMap();
     }
 
     public Map<String, Map<Double, Double>> getCostHistoryPerResource() {
@@ -255,16 +367,16 @@ public class ResourceBank {
         /**
          * cost along time
          */
-        private final SortedMap<Double, Double> costHistory;
+        private TimeSeries costHistory;
         /**
          * Emissions along time
          */
-        private final SortedMap<Double, Double> emissionsHistory;
+        private TimeSeries emissionsHistory;
         /**
          * number of available replicas of the resource along time
          */
-        private final SortedMap<Double, Integer> avlHistory;
-        private final SortedMap<Double, Integer> inUseHistory;
+        private TimeSeries avlHistory;
+        private TimeSeries inUseHistory;
         /**
          * total number of replicas of the resource
          */
@@ -302,17 +414,20 @@ public class ResourceBank {
         private double lastUpdate;
 
         SimulationResource(String id) {
+            this(id, HistoryPolicy.FULL);
+        }
+
+        SimulationResource(String id, HistoryPolicy historyPolicy) {
             super(id);
-            avlHistory = new TreeMap<>();
-            inUseHistory = new TreeMap<>();
-            costHistory = new TreeMap<>();
-            costHistory.put(0.0, 0.0);
-            emissionsHistory = new TreeMap<>();
-            emissionsHistory.put(0.0, 0.0);
+            setHistoryPolicy(historyPolicy);
         }
 
         SimulationResource(Resource r) {
-            this(r.getId());
+            this(r, HistoryPolicy.FULL);
+        }
+
+        SimulationResource(Resource r, HistoryPolicy historyPolicy) {
+            this(r.getId(), historyPolicy);
             setCostWhenActive(r.getCostWhenActive());
             setCostWhenInactive(r.getCostWhenInactive());
             setEmissions(r.getEmissions());
@@ -331,11 +446,11 @@ public class ResourceBank {
             setNumberOfInstances(n);
             setCostWhenActive(ac);
             setCostWhenInactive(ic); // if not specified, active and inactive cost is the same
-            avlHistory.put(0.0, total);
-            inUseHistory.put(0.0, total);
-            costHistory.put(0.0, 0.0);
+            avlHistory.record(0.0, total);
+            inUseHistory.record(0.0, total);
+            costHistory.record(0.0, 0.0);
             setEmissions(emissions);
-            emissionsHistory.put(0.0, 0.0);
+            emissionsHistory.record(0.0, 0.0);
             lastUpdate = 0;
         }
 
@@ -347,6 +462,20 @@ public class ResourceBank {
             this(id, info.getValue0(), info.getValue1(), info.getValue2());
         }
 
+        /**
+         * Sets how the histories of the resource are recorded, discarding the histories recorded so far.
+         *
+         * @param historyPolicy history policy
+         */
+        void setHistoryPolicy(HistoryPolicy historyPolicy) {
+            avlHistory = new TimeSeries(historyPolicy);
+            inUseHistory = new TimeSeries(historyPolicy);
+            costHistory = new TimeSeries(historyPolicy);
+            costHistory.record(0.0, 0.0);
+            emissionsHistory = new TimeSeries(historyPolicy);
+            emissionsHistory.record(0.0, 0.0);
+        }
+
         public void setNumberOfInstances(int n) {
             total = n;
             available = n;
@@ -363,37 +492,51 @@ public class ResourceBank {
         public void grabResource(int req, double ts) {
             // we assume that we have previously checked that there are enough resources
             available -= req;
-            avlHistory.put(ts, available);
-            inUseHistory.put(ts, total-available);
+            avlHistory.record(ts, available);
+            inUseHistory.record(ts, total-available);
         }
 
         public void releaseResource(int req, double ts) {
             available += req;
-            avlHistory.put(ts, available);
-            inUseHistory.put(ts, total-available);
+            avlHistory.record(ts, available);
+            inUseHistory.record(ts, total-available);
         }
 
         void update(double ts) {
-            avlHistory.put(ts, available);
-            inUseHistory.put(ts, total-available);
+            avlHistory.record(ts, available);
+            inUseHistory.record(ts, total-available);
             totalTimeOfUse += (ts - lastUpdate) * (total - available);
             totalCost += (ts - lastUpdate) * (available * costWhenInactive + (total - available) * costWhenActive);
-            costHistory.put(ts, totalCost);
+            costHistory.record(ts, totalCost);
             totalEmissions += (ts - lastUpdate) * emissions * (total - available);
-            emissionsHistory.put(ts, totalEmissions);
+            emissionsHistory.record(ts, totalEmissions);
             lastUpdate = ts;
         }
 
+        /**
+         * @return cost per time unit with the current numbers of available and in use instances
+         */
+        double getCostRate() {
+            return available * costWhenInactive + (total - available) * costWhenActive;
+        }
+
+        /**
+         * @return emissions per time unit with the current number of in use instances
+         */
+        double getEmissionsRate() {
+            return (total - available) * emissions;
+        }
+
         public double getUsagePercentage(double ts) {
             return (100 * totalTimeOfUse) / (total * ts);
         }
 
         public Map<Double, Integer> getAvlHistory() {
-            return avlHistory;
+            return avlHistory.toIntegerMap();
         }
 
         public Map<Double, Integer> getInUseHistory() {
-            return inUseHistory;
+            return inUseHistory.toIntegerMap();
         }
 
         public double getCost() {
@@ -417,7 +560,7 @@ public class ResourceBank {
         }
 
         public Map<Double, Double> getCostHistory() {
-            return costHistory;
+            return costHistory.toMap();
         }
 
         public double getEmissions() {
@@ -433,7 +576,7 @@ public class ResourceBank {
         }
 
         public Map<Double, Double> getEmissionsHistory() {
-            return emissionsHistory;
+            return emissionsHistory.toMap();
         }
     }
 }
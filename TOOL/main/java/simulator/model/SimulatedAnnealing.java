@@ -6,21 +6,62 @@ import org.javatuples.Triplet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
+/**
+ * The SimulatedAnnealing class searches the best assignment of numbers of instances to resources by moving from an
+ * assignment to a random neighbor, accepting worse neighbors with a probability decreasing with the temperature, which
+ * is cooled down at each move.
+ * Several chains can be run at the same time, either independently from the same initial assignment (see setChains),
+ * or at the temperatures of a ladder, exchanging their assignments from time to time so that good assignments found by
+ * the hot chains reach the cold ones (see setTemperatureLadder). Each chain draws its moves from its own generator,
+ * seeded from the seed of the search, and all of them share the cache of simulation results (see setCache).
+ */
 public class SimulatedAnnealing {
     private static final Logger logger = LoggerFactory.getLogger(SimulatedAnnealing.class);
 
     public static double INITIAL_TEMPERATURE = 1000;
     public static double COOLING_FACTOR = 0.995;
     public static int MAX_JUMP = 5;
-    public static Random rnd = new Random();
+    private Random rnd = new Random();
     private StartEvent sv;
     private Set<Resource> resources;
     private Triplet<Double, Double, Double> coefficients;
+    /**
+     * seed of the random streams shared by the simulations of all candidates, null if common random numbers are not used
+     */
+    private Long commonSeed;
+    /**
+     * analytic estimator choosing among several drawn neighbors, null to simulate the first one, and number of
+     * neighbors drawn at each move
+     */
+    private QueueingEstimator estimator;
+    private int candidates;
+    /**
+     * evaluator of the neighbors, and number of neighbors drawn at each move and given to it
+     */
+    private AssignmentEvaluator evaluator = new SingleFidelityEvaluator();
+    private int neighbors = 1;
+    /**
+     * results of the simulations of the assignments visited by this and previous searches
+     */
+    private SimulationCache cache = new SimulationCache();
+    /**
+     * number of independent chains, temperatures of the chains exchanging their assignments (null to run independent
+     * chains) and number of moves between exchanges, and number of chains run at the same time
+     */
+    private int chains = 1;
+    private double[] ladder;
+    private int exchangeInterval;
+    private int parallelism = 1;
 
     /**
      * @param sv           start event of the process
@@ -33,6 +74,120 @@ public class SimulatedAnnealing {
         this.coefficients = coefficients;
     }
 
+    /**
+     * Seeds the generator driving the moves of the search (choice of neighbors and acceptance of worse solutions).
+     *
+     * @param seed seed of the search
+     */
+    public void setSeed(long seed) {
+        rnd = new Random(seed);
+    }
+
+    /**
+     * Enables common random numbers: every candidate assignment is simulated with random streams created from the
+     * given seed, so that all candidates are evaluated on the same sampled workload (arrivals, durations, delays, and
+     * gateway choices). Differences between their results are then due to the assignments and not to sampling noise,
+     * which keeps the decisions of the search stable with much smaller populations.
+     *
+     * @param seed seed of the random streams shared by all the simulations
+     */
+    public void setCommonRandomNumbers(long seed) {
+        this.commonSeed = seed;
+    }
+
+    /**
+     * Draws several neighbors at each move and only simulates the one with the best analytic estimate, instead of the
+     * first one drawn. Moves then favor promising assignments, and fewer simulations are spent on poor ones.
+     *
+     * @param estimator  estimator of the results of assignments, null to simulate the first neighbor drawn
+     * @param candidates number of neighbors drawn at each move
+     */
+    public void setEstimator(QueueingEstimator estimator, int candidates) {
+        if (candidates < 1) throw new IllegalArgumentException("The number of candidates must be positive (got " + candidates + ").");
+        this.estimator = estimator;
+        this.candidates = candidates;
+    }
+
+    /**
+     * Sets the evaluator deciding which simulations are run to evaluate neighbors (by default, one simulation of the
+     * whole population for each of them), and the number of neighbors drawn at each move. The move goes to the best of
+     * the neighbors retained by the evaluator, if any. The initial assignment is evaluated by the evaluator too, so
+     * that all results are comparable.
+     *
+     * @param evaluator evaluator of the neighbors
+     * @param neighbors number of neighbors drawn at each move
+     */
+    public void setEvaluator(AssignmentEvaluator evaluator, int neighbors) {
+        if (neighbors < 1) throw new IllegalArgumentException("The number of neighbors must be positive (got " + neighbors + ").");
+        this.evaluator = evaluator;
+        this.neighbors = neighbors;
+    }
+
+    public AssignmentEvaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * Sets the cache of simulation results used by the search, shared by its chains. Sharing a cache between searches
+     * on the same process, or loading one saved by a previous optimization (see SimulationCache.load), allows a search
+     * to reuse the results of the assignments already simulated.
+     *
+     * @param cache cache of simulation results
+     */
+    public void setCache(SimulationCache cache) {
+        this.cache = cache;
+    }
+
+    public SimulationCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Runs several independent chains from the initial assignment, each cooling down from the initial temperature with
+     * its own generator, and returns the best assignment found by any of them.
+     *
+     * @param chains number of chains (1 runs a single chain, drawing its moves from the generator of the search)
+     */
+    public void setChains(int chains) {
+        if (chains < 1) throw new IllegalArgumentException("The number of chains must be positive (got " + chains + ").");
+        this.chains = chains;
+        this.ladder = null;
+    }
+
+    /**
+     * Runs chains at fixed temperatures, from the initial temperature down to the given one in geometric progression,
+     * for as many moves as the cooling schedule has. Every given number of moves, neighboring chains of the ladder
+     * exchange their current assignments with the probability of parallel tempering, min(1, exp((f_i - f_j) * (1/T_i -
+     * 1/T_j))), so that the cold chains refine the good assignments found by the hot ones while these keep exploring.
+     *
+     * @param replicas         number of chains, at least 2
+     * @param minTemperature   temperature of the coldest chain, lower than the initial temperature
+     * @param exchangeInterval number of moves of each chain between exchanges
+     */
+    public void setTemperatureLadder(int replicas, double minTemperature, int exchangeInterval) {
+        if (replicas < 2) throw new IllegalArgumentException("A temperature ladder needs at least 2 chains (got " + replicas + ").");
+        if (!(minTemperature > 0 && minTemperature < INITIAL_TEMPERATURE)) throw new IllegalArgumentException("The minimal temperature must be in (0," + INITIAL_TEMPERATURE + ") (got " + minTemperature + ").");
+        if (exchangeInterval < 1) throw new IllegalArgumentException("The exchange interval must be positive (got " + exchangeInterval + ").");
+        ladder = new double[replicas];
+        for (int i = 0; i < replicas; i++) {
+            ladder[i] = INITIAL_TEMPERATURE * Math.pow(minTemperature / INITIAL_TEMPERATURE, (double) i / (replicas - 1));
+        }
+        this.chains = replicas;
+        this.exchangeInterval = exchangeInterval;
+    }
+
+    /**
+     * Sets the number of chains run at the same time. Unless common random numbers are used, the simulations of the
+     * chains get random streams seeded from a seed of the search and the assignment simulated, as the generators of
+     * the distributions can not be shared, so that the chains get the same result for the same assignment.
+     *
+     * @param parallelism number of chains run at the same time (1 runs them in turn on the calling thread)
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("The degree of parallelism must be positive (got " + parallelism + ").");
+        this.parallelism = parallelism;
+    }
+
     private double normalize(double v, double min, double max) {
         return max == 0 ? 0 : v / max;
         // return (min == max) ? 1 : (v - min) / (max - min);
@@ -89,7 +244,7 @@ public class SimulatedAnnealing {
         return (f2 < f1) ? 1.0 : Math.exp((f1 - f2) / temperature);
     }
 
-    private Map<String, Integer> next(Map<String, Integer> current, String[] resNames) {
+    private Map<String, Integer> next(Random rnd, Map<String, Integer> current, String[] resNames) {
         Map<String, Integer> next = new HashMap<>(current);
         String r = resNames[rnd.nextInt(resNames.length)];
         int jump = rnd.nextInt(MAX_JUMP) + 1;
@@ -97,69 +252,290 @@ public class SimulatedAnnealing {
         return next;
     }
 
+    /**
+     * Draws the neighbors of a move and returns the valid and not visited one with the best estimate.
+     *
+     * @param rnd        generator of the moves of the chain
+     * @param current    current assignment
+     * @param resNames   resources of the assignments
+     * @param visited    assignments already simulated
+     * @param population population used to carry on the simulations
+     * @return neighbor to simulate, or an invalid or visited one if all of them are
+     */
+    private Map<String, Integer> promisingNeighbor(Random rnd, Map<String, Integer> current, String[] resNames, Map<Map<String, Integer>, Triplet<Double, Double, Double>> visited, int population) {
+        Map<String, Integer> first = next(rnd, current, resNames);
+        List<Map<String, Integer>> neighbors = new ArrayList<>(candidates);
+        for (int i = 0; i < candidates; i++) {
+            Map<String, Integer> neighbor = i == 0 ? first : next(rnd, current, resNames);
+            if (valid(neighbor) && visited.get(neighbor) == null && !neighbors.contains(neighbor)) {
+                neighbors.add(neighbor);
+            }
+        }
+        return neighbors.isEmpty() ? first : estimator.select(neighbors, 1, population, Simulation.DEFAULT_MEAN_INTER_ARRIVAL_TIME, coefficients).get(0);
+    }
+
+    /**
+     * Draws the neighbors of a move, keeping the valid and not visited ones.
+     *
+     * @param rnd        generator of the moves of the chain
+     * @param current    current assignment
+     * @param resNames   resources of the assignments
+     * @param visited    assignments already simulated
+     * @param population population used to carry on the simulations
+     * @return neighbors to evaluate, possibly none
+     */
+    private List<Map<String, Integer>> drawNeighbors(Random rnd, Map<String, Integer> current, String[] resNames, Map<Map<String, Integer>, Triplet<Double, Double, Double>> visited, int population) {
+        List<Map<String, Integer>> drawn = new ArrayList<>(neighbors);
+        for (int i = 0; i < neighbors; i++) {
+            Map<String, Integer> neighbor = estimator == null ? next(rnd, current, resNames) : promisingNeighbor(rnd, current, resNames, visited, population);
+            if (valid(neighbor) // inside ranges and valid combination
+                    && visited.get(neighbor) == null // not visited
+                    && !drawn.contains(neighbor)) {
+                drawn.add(neighbor);
+            }
+        }
+        return drawn;
+    }
+
     public Map<String, Integer> search(Map<String, Integer> initial, int population) {
         logger.debug("Search initiated: {}", initial);
-        Map<Map<String, Integer>, Triplet<Double, Double, Double>> visited = new HashMap<>();
-        Map<String, Integer> current = new HashMap<>(initial);
-        Simulation sim = new Simulation(sv, resources);
-        Triplet<Double, Double, Double> currentResult = sim.runSimulation(initial, population);
-        String[] resNames = current.keySet().toArray(new String[current.keySet().size()]);
-
-        double minAET = currentResult.getValue0();
-        double maxAET = currentResult.getValue0();
-        double minCost = currentResult.getValue1();
-        double maxCost = currentResult.getValue1();
-        double minEmissions = currentResult.getValue2();
-        double maxEmissions = currentResult.getValue2();
-        double currentValue = value(currentResult, minAET, maxAET, minCost, maxCost, minEmissions, maxEmissions, coefficients);
-        visited.put(current, currentResult);
-
-        Map<String, Integer> best = current;
-        double bestValue = currentValue;
+        if (chains == 1) {
+            Chain chain = new Chain(rnd, null, initial, population);
+            for (double t = INITIAL_TEMPERATURE; t > 1; t *= COOLING_FACTOR) {
+                chain.move(t);
+            }
+            return chain.best;
+        }
+        // seeds of the chains are drawn in order, before they run, to keep them independent of the scheduling
+        Long searchSeed = commonSeed == null ? rnd.nextLong() : null;
+        List<Chain> running = new ArrayList<>(chains);
+        for (int i = 0; i < chains; i++) {
+            Random chainRnd = new Random(rnd.nextLong());
+            running.add(new Chain(chainRnd, searchSeed, initial, population));
+        }
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(Math.min(parallelism, chains)) : null;
+        try {
+            if (ladder == null) {
+                runAll(running, c -> {
+                    for (double t = INITIAL_TEMPERATURE; t > 1; t *= COOLING_FACTOR) {
+                        c.move(t);
+                    }
+                }, pool);
+            } else {
+                temper(running, pool);
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        return best(running);
+    }
 
+    /**
+     * Runs the chains of the temperature ladder for as many moves as the cooling schedule has, exchanging the
+     * assignments of neighboring chains every exchangeInterval moves.
+     *
+     * @param ladderChains chains, from the hottest to the coldest
+     * @param pool         pool running the chains, null to run them on the calling thread
+     */
+    private void temper(List<Chain> ladderChains, ForkJoinPool pool) {
+        int moves = 0;
         for (double t = INITIAL_TEMPERATURE; t > 1; t *= COOLING_FACTOR) {
-            Map<String, Integer> neighbor = next(current, resNames);
-            if (valid(neighbor) // inside ranges and valid combination
-                    && visited.get(neighbor) == null) { // not visited
-                sim = new Simulation(sv, resources);
-                Triplet<Double, Double, Double> neighborResult = sim.runSimulation(neighbor, population);
-                // if the min or max AET or cost change, we must recalculate the values of the visited combinations,
-                // possibly changing the best one
-                if (neighborResult.getValue0() < minAET || neighborResult.getValue0() > maxAET ||
-                        neighborResult.getValue1() < minCost || neighborResult.getValue1() > maxCost ||
-                        neighborResult.getValue2() < minEmissions || neighborResult.getValue2() > maxEmissions) {
-                    if (neighborResult.getValue0() < minAET) minAET = neighborResult.getValue0();
-                    if (neighborResult.getValue0() > maxAET) maxAET = neighborResult.getValue0();
-                    if (neighborResult.getValue1() < minCost) minCost = neighborResult.getValue1();
-                    if (neighborResult.getValue1() > maxCost) maxCost = neighborResult.getValue1();
-                    if (neighborResult.getValue2() < minEmissions) minEmissions = neighborResult.getValue2();
-                    if (neighborResult.getValue2() > maxEmissions) maxEmissions = neighborResult.getValue2();
-                    for (Map.Entry<Map<String, Integer>, Triplet<Double, Double, Double>> e : visited.entrySet()) {
-                        double nv = value(e.getValue(), minAET, maxAET, minCost, maxCost, minEmissions, maxEmissions, coefficients);
-                        if (nv < bestValue) {
-                            if (!best.equals(e.getKey())) {
-                                best = e.getKey();
-                            }
-                            bestValue = nv;
+            moves++;
+        }
+        int exchanges = 0;
+        for (int done = 0; done < moves; done += exchangeInterval) {
+            int steps = Math.min(exchangeInterval, moves - done);
+            runAll(ladderChains, c -> {
+                double t = ladder[ladderChains.indexOf(c)];
+                for (int i = 0; i < steps; i++) {
+                    c.move(t);
+                }
+            }, pool);
+            // even and odd pairs of neighboring chains alternate, so that each exchange is independent of the others
+            for (int i = exchanges % 2; i + 1 < ladderChains.size(); i += 2) {
+                exchange(ladderChains.get(i), ladder[i], ladderChains.get(i + 1), ladder[i + 1]);
+            }
+            exchanges++;
+        }
+    }
+
+    /**
+     * Exchanges the current assignments of two chains with the probability of parallel tempering, their values being
+     * normalized with respect to the ranges of both.
+     */
+    private void exchange(Chain hot, double hotTemperature, Chain cold, double coldTemperature) {
+        double minAET = Math.min(hot.minAET, cold.minAET);
+        double maxAET = Math.max(hot.maxAET, cold.maxAET);
+        double minCost = Math.min(hot.minCost, cold.minCost);
+        double maxCost = Math.max(hot.maxCost, cold.maxCost);
+        double minEmissions = Math.min(hot.minEmissions, cold.minEmissions);
+        double maxEmissions = Math.max(hot.maxEmissions, cold.maxEmissions);
+        double hotValue = value(hot.currentResult, minAET, maxAET, minCost, maxCost, minEmissions, maxEmissions, coefficients);
+        double coldValue = value(cold.currentResult, minAET, maxAET, minCost, maxCost, minEmissions, maxEmissions, coefficients);
+        if (rnd.nextDouble() < Math.exp((hotValue - coldValue) * (1 / hotTemperature - 1 / coldTemperature))) {
+            Map<String, Integer> assignment = hot.current;
+            Triplet<Double, Double, Double> result = hot.currentResult;
+            hot.moveTo(cold.current, cold.currentResult);
+            cold.moveTo(assignment, result);
+            logger.debug("Search: chains at temperatures {} and {} exchanged {} and {}", hotTemperature, coldTemperature, cold.current, hot.current);
+        }
+    }
+
+    /**
+     * @return best assignment visited by the chains, their values being normalized with respect to the ranges of all
+     */
+    private Map<String, Integer> best(List<Chain> finished) {
+        Map<Map<String, Integer>, Triplet<Double, Double, Double>> visited = new HashMap<>();
+        for (Chain c : finished) {
+            visited.putAll(c.visited);
+        }
+        double minAET = Double.POSITIVE_INFINITY, maxAET = Double.NEGATIVE_INFINITY;
+        double minCost = Double.POSITIVE_INFINITY, maxCost = Double.NEGATIVE_INFINITY;
+        double minEmissions = Double.POSITIVE_INFINITY, maxEmissions = Double.NEGATIVE_INFINITY;
+        for (Triplet<Double, Double, Double> result : visited.values()) {
+            minAET = Math.min(minAET, result.getValue0());
+            maxAET = Math.max(maxAET, result.getValue0());
+            minCost = Math.min(minCost, result.getValue1());
+            maxCost = Math.max(maxCost, result.getValue1());
+            minEmissions = Math.min(minEmissions, result.getValue2());
+            maxEmissions = Math.max(maxEmissions, result.getValue2());
+        }
+        Map<String, Integer> best = null;
+        double bestValue = Double.POSITIVE_INFINITY;
+        for (Map.Entry<Map<String, Integer>, Triplet<Double, Double, Double>> e : visited.entrySet()) {
+            double v = value(e.getValue(), minAET, maxAET, minCost, maxCost, minEmissions, maxEmissions, coefficients);
+            if (best == null || v < bestValue) {
+                best = e.getKey();
+                bestValue = v;
+            }
+        }
+        logger.debug("Search: best {} / result {} / value {} among {} assignments visited by {} chains", best, visited.get(best), bestValue, visited.size(), finished.size());
+        return best;
+    }
+
+    private static void runAll(List<Chain> all, Consumer<Chain> work, ForkJoinPool pool) {
+        if (pool == null) {
+            all.forEach(work);
+            return;
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(all.size());
+        for (Chain c : all) {
+            tasks.add(pool.submit(() -> work.accept(c)));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * State of a chain of the search: its generator, the assignments it visited with their results and the ranges of
+     * these, and its current and best assignments. A chain is only moved by one thread at a time.
+     */
+    private final class Chain {
+        private final Random rnd;
+        private final AssignmentEvaluator.Simulations simulations;
+        private final int population;
+        private final String[] resNames;
+        private final Map<Map<String, Integer>, Triplet<Double, Double, Double>> visited = new HashMap<>();
+        private double minAET = Double.POSITIVE_INFINITY, maxAET = Double.NEGATIVE_INFINITY;
+        private double minCost = Double.POSITIVE_INFINITY, maxCost = Double.NEGATIVE_INFINITY;
+        private double minEmissions = Double.POSITIVE_INFINITY, maxEmissions = Double.NEGATIVE_INFINITY;
+        private Map<String, Integer> current;
+        private Triplet<Double, Double, Double> currentResult;
+        private double currentValue;
+        private Map<String, Integer> best;
+        private double bestValue = Double.POSITIVE_INFINITY;
+
+        /**
+         * @param rnd         generator of the moves of the chain
+         * @param searchSeed  seed from which the seeds of the random streams of unseeded simulations are derived,
+         *                    null to use the generators of the process
+         * @param initial     assignment of resources from which the chain begins
+         * @param population  population used to carry on the simulations
+         */
+        Chain(Random rnd, Long searchSeed, Map<String, Integer> initial, int population) {
+            this.rnd = rnd;
+            this.simulations = new AssignmentEvaluator.CachedSimulations(sv, resources, commonSeed, cache, null, searchSeed);
+            this.population = population;
+            this.resNames = initial.keySet().toArray(new String[initial.keySet().size()]);
+            moveTo(new HashMap<>(initial), evaluator.evaluate(List.of(initial), population, simulations).get(initial));
+        }
+
+        /**
+         * Records the result of an assignment, updating the ranges of the results and the best assignment.
+         *
+         * @return value of the assignment
+         */
+        private double record(Map<String, Integer> assignment, Triplet<Double, Double, Double> result) {
+            // if the min or max AET or cost change, we must recalculate the values of the visited combinations,
+            // possibly changing the best one
+            if (result.getValue0() < minAET || result.getValue0() > maxAET ||
+                    result.getValue1() < minCost || result.getValue1() > maxCost ||
+                    result.getValue2() < minEmissions || result.getValue2() > maxEmissions) {
+                if (result.getValue0() < minAET) minAET = result.getValue0();
+                if (result.getValue0() > maxAET) maxAET = result.getValue0();
+                if (result.getValue1() < minCost) minCost = result.getValue1();
+                if (result.getValue1() > maxCost) maxCost = result.getValue1();
+                if (result.getValue2() < minEmissions) minEmissions = result.getValue2();
+                if (result.getValue2() > maxEmissions) maxEmissions = result.getValue2();
+                for (Map.Entry<Map<String, Integer>, Triplet<Double, Double, Double>> e : visited.entrySet()) {
+                    double nv = value(e.getValue(), minAET, maxAET, minCost, maxCost, minEmissions, maxEmissions, coefficients);
+                    if (nv < bestValue) {
+                        if (!best.equals(e.getKey())) {
+                            best = e.getKey();
                         }
+                        bestValue = nv;
                     }
                 }
-                visited.put(neighbor, neighborResult);
-                double neighborValue = value(neighborResult, minAET, maxAET, minCost, maxCost, minEmissions, maxEmissions, coefficients);
-                if (neighborValue < bestValue) {
-                    best = neighbor;
-                    bestValue = neighborValue;
-                }
-                logger.debug("Search: current {} / result {} / value {}", current, currentResult, currentValue);
-                logger.debug("Search: best {} / result {} / value {}", best, visited.get(best), bestValue);
+            }
+            visited.put(assignment, result);
+            double v = value(result, minAET, maxAET, minCost, maxCost, minEmissions, maxEmissions, coefficients);
+            if (v < bestValue) {
+                best = assignment;
+                bestValue = v;
+            }
+            return v;
+        }
 
-                if (rnd.nextDouble() < acceptanceProbability(currentValue, neighborValue, t)) {
-                    current = neighbor;
-                    currentResult = neighborResult;
-                    currentValue = neighborValue;
+        private void moveTo(Map<String, Integer> assignment, Triplet<Double, Double, Double> result) {
+            currentValue = record(assignment, result);
+            current = assignment;
+            currentResult = result;
+        }
+
+        /**
+         * Draws and evaluates neighbors of the current assignment, and moves to the best of those retained by the
+         * evaluator with the acceptance probability at the given temperature.
+         */
+        void move(double t) {
+            List<Map<String, Integer>> drawn = drawNeighbors(rnd, current, resNames, visited, population);
+            if (drawn.isEmpty()) {
+                return;
+            }
+            Map<String, Integer> neighbor = null;
+            Triplet<Double, Double, Double> neighborResult = null;
+            double neighborValue = Double.POSITIVE_INFINITY;
+            for (Map.Entry<Map<String, Integer>, Triplet<Double, Double, Double>> evaluated : evaluator.evaluate(drawn, population, simulations).entrySet()) {
+                double candidateValue = record(evaluated.getKey(), evaluated.getValue());
+                if (neighbor == null || candidateValue < neighborValue) {
+                    neighbor = evaluated.getKey();
+                    neighborResult = evaluated.getValue();
+                    neighborValue = candidateValue;
                 }
             }
+            if (neighbor == null) {
+                return;
+            }
+            logger.debug("Search: current {} / result {} / value {}", current, currentResult, currentValue);
+            logger.debug("Search: best {} / result {} / value {}", best, visited.get(best), bestValue);
+
+            if (rnd.nextDouble() < acceptanceProbability(currentValue, neighborValue, t)) {
+                current = neighbor;
+                currentResult = neighborResult;
+                currentValue = neighborValue;
+            }
         }
-        return best;
     }
-}
\ No newline at end of file
+}
@@ -7,26 +7,97 @@ import org.apache.commons.math3.distribution.ExponentialDistribution;
 import org.javatuples.Triplet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import simulator.trace.AsyncTraceSink;
+import simulator.trace.CsvTraceSink;
+import simulator.trace.TraceSink;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.PrintWriter;
+import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /** */
 public class Simulation {
   private static final Logger logger = LoggerFactory.getLogger(Simulation.class);
   double gtime = 0;
+  /**
+   * When true, simulations without a trace sink write their trace to traces/trace{TRACE_ID}-{run}.csv,
+   * one "execution,element,time" line per element run (see setTraceSink). Each run of a simulation
+   * in the JVM gets its own file, so that replications and candidates run in parallel do not write
+   * to the same file, and files left by previous JVMs are appended to, as per-token traces were.
+   */
   public static boolean TRACE = false;
   public static String TRACE_ID = "";
+  /** Number of runs traced to default trace files, which numbers their files. */
+  private static final AtomicLong TRACED_RUNS = new AtomicLong();
+  /**
+   * Mean inter-arrival time of the executions when no distribution is given, in the time unit of the
+   * durations of the process: arrivals then follow a Poisson process with this mean. It is the
+   * workload the optimizers have always been run with, kept so that their results remain comparable
+   * with previous runs, and the queueing estimator uses it too, so that its estimates describe the
+   * workload that is simulated.
+   */
+  public static final double DEFAULT_MEAN_INTER_ARRIVAL_TIME = 5;
+  /**
+   * Sink receiving the trace of the simulation, null if it is not traced.
+   */
+  private TraceSink traceSink;
   private SimulationResult simulationResult;
   // private Collection<Node> nodes;
   // private Collection<Flow> flows;
   private StartEvent init; // one single start event
-  private PriorityQueue<Token> tokens = new PriorityQueue<>();
+  private TokenQueue tokens = new TokenQueue();
+  /**
+   * When true, tokens are scheduled by absolute timestamp (discrete-event calendar) instead of
+   * carrying a relative timer that must be decremented on every event.
+   */
+  private boolean eventCalendar = false;
+  /**
+   * When true, arrivals are generated one at a time, when the previous one reaches the start
+   * event, and the bookkeeping of each execution is folded into totals when it completes, so that
+   * memory does not grow with the population.
+   */
+  private boolean streamingWorkload = false;
+  /**
+   * When true, the process is compiled to a dense representation run by a dedicated event loop
+   * (see setCompiled), and when crossCheck is also true, the object model is run too and both
+   * results are compared.
+   */
+  private boolean compiled = false;
+  private boolean crossCheck = false;
+  /** Relative difference tolerated between the results of a cross-check. */
+  private static final double CROSS_CHECK_TOLERANCE = 1e-9;
+  /** True for the object model run of a cross-check, which is not traced. */
+  private boolean reference = false;
+  // state of the streaming workload: next execution to arrive, its arrival time, and the
+  // executions that have reached an end event since the last event
+  private int population, nextArrival;
+  private double nextArrivalTime;
+  private AbstractRealDistribution interArrivalTime;
+  private List<Integer> endedExecs = new ArrayList<>();
+  // totals of the executions already completed in a streaming workload
+  private double completedExecTimes = 0;
+  private int completedExecs = 0;
+  private Map<String, Double> completedSyncTimes = new HashMap<>();
+  // distributions of the exec times and of the sync times at each parallel merge, to estimate
+  // their quantiles
+  private QuantileSketch execTimeSketch = new QuantileSketch();
+  private Map<String, QuantileSketch> syncTimeSketches = new HashMap<>();
+  /**
+   * Random streams from which the stochastic elements of the simulation sample their values, each of
+   * them from its own named stream. If null, the distributions and gateways use their own (unseeded)
+   * generators.
+   */
+  private RandomStreams randomStreams;
+  /**
+   * Per-execution state of the flow elements (e.g., activations of events), kept by the simulation
+   * rather than by the elements, so that several simulations of the same process can run at the
+   * same time.
+   */
+  private Map<FlowElement, Object> elementStates = new HashMap<>();
   private ResourceBank resources;
   private Map<Integer, Double> processExecs = new HashMap<>(), processTstamps = new HashMap<>();
   // for synchronization times: timestamps, times, and number of measures (to calculate average)
@@ -84,10 +155,169 @@ public class Simulation {
     resources.setNumberOfInstancesOfResource(r, i);
   }
 
-  public PriorityQueue<Token> getTokens() {
+  public TokenQueue getTokens() {
     return tokens;
   }
 
+  /**
+   * Selects the discrete-event engine used by the simulation. By default, every token carries a
+   * timer relative to the current time, and advancing the clock decrements the timers of all the
+   * pending tokens, so that each event costs O(n) in the number of tokens. In event calendar mode,
+   * tokens are scheduled by absolute timestamp: advancing the clock costs nothing and each event
+   * costs O(log n). Both engines process the same events in the same order, so results are the same
+   * for a fixed seed. The mode must be set before running the simulation.
+   *
+   * @param eventCalendar true to schedule tokens by absolute timestamp
+   */
+  public void setEventCalendar(boolean eventCalendar) {
+    this.eventCalendar = eventCalendar;
+    this.tokens = new TokenQueue(eventCalendar ? this : null);
+  }
+
+  public boolean isEventCalendar() {
+    return eventCalendar;
+  }
+
+  /**
+   * Selects how the workload is generated. By default, the tokens of all the executions of the
+   * population are created before the simulation starts. In streaming mode, the token of an
+   * execution is only created when the previous execution reaches the start event, and the exec
+   * time and sync times of an execution are added to running totals as soon as it has no token
+   * left, so that the memory used only depends on the number of executions in flight. The values
+   * sampled are the same in both modes. Without contention results are the same, but tokens blocked
+   * waiting for resources all have a zero timer, and the queue may break ties among them in another
+   * order since it does not hold the same tokens. getProcessExecs() and getSyncTimes() only keep
+   * the executions in flight in streaming mode. The mode must be set before running the simulation.
+   *
+   * @param streamingWorkload true to generate arrivals one at a time
+   */
+  public void setStreamingWorkload(boolean streamingWorkload) {
+    this.streamingWorkload = streamingWorkload;
+  }
+
+  public boolean isStreamingWorkload() {
+    return streamingWorkload;
+  }
+
+  /**
+   * Selects the engine running the simulation. By default, the event loop dispatches isReady and
+   * run calls to the flow elements of the process. When compiled, the process is first compiled
+   * to integer-indexed primitive arrays (see CompiledWorkflow), which a dedicated event loop runs
+   * without virtual calls nor hashing of flows and resource names. The compiled engine processes
+   * the same events in the same order as the event calendar mode, so results are the same for a
+   * fixed seed (and the same as the relative timers mode up to rounding). Processes with
+   * event-based gateways or intermediate events, and streaming workloads, are run on the object
+   * model. The engine must be set before running the simulation.
+   *
+   * @param compiled true to run the simulation on the compiled process
+   */
+  public void setCompiled(boolean compiled) {
+    this.compiled = compiled;
+  }
+
+  public boolean isCompiled() {
+    return compiled;
+  }
+
+  /**
+   * When set, compiled simulations are run a second time on the object model, with the same
+   * resources and seed in event calendar mode, and an IllegalStateException is thrown if their AET, cost or
+   * emissions differ beyond rounding. This validates the compiled engine on a process, at the
+   * price of running it twice. Cross-checked simulations must be seeded, with random streams not
+   * used yet.
+   *
+   * @param crossCheck true to compare the compiled engine with the object model
+   */
+  public void setCrossCheck(boolean crossCheck) {
+    this.crossCheck = crossCheck;
+  }
+
+  /**
+   * Sets the sink receiving the trace of the simulation, e.g., an AsyncTraceSink writing a
+   * BinaryTraceSink. The sink is not closed by the simulation.
+   *
+   * @param traceSink trace sink, null to disable tracing
+   */
+  public void setTraceSink(TraceSink traceSink) {
+    this.traceSink = traceSink;
+  }
+
+  /**
+   * Sets how the histories of cost, emissions and resource usage are recorded (see HistoryPolicy).
+   * Keeping every update may retain millions of entries on long simulations, while totals do not
+   * depend on the policy. The policy must be set before running the simulation.
+   *
+   * @param historyPolicy history policy
+   */
+  public void setHistoryPolicy(HistoryPolicy historyPolicy) {
+    resources.setHistoryPolicy(historyPolicy);
+  }
+
+  /**
+   * Sets the random streams of the simulation. Once set, inter-arrival times, durations, delays and
+   * gateway choices are all drawn from the stream of their element, by inversion of the
+   * distributions, so that two simulations with streams created from the same seed sample the same
+   * values for each element.
+   *
+   * @param randomStreams random streams of the simulation
+   */
+  public void setRandomStreams(RandomStreams randomStreams) {
+    this.randomStreams = randomStreams;
+  }
+
+  public void setSeed(long seed) {
+    setRandomStreams(new RandomStreams(seed));
+  }
+
+  public RandomStreams getRandomStreams() {
+    return randomStreams;
+  }
+
+  public boolean isSeeded() {
+    return randomStreams != null;
+  }
+
+  /**
+   * Samples a value from the given distribution, using the random stream of the given element if the
+   * simulation is seeded, and the own generator of the distribution otherwise.
+   *
+   * @param source element whose stream is used (e.g., a task for its duration)
+   * @param distribution distribution to sample
+   * @return sampled value
+   */
+  public double sample(Element source, AbstractRealDistribution distribution) {
+    return randomStreams == null
+        ? distribution.sample()
+        : distribution.inverseCumulativeProbability(randomStreams.stream(source).nextDouble());
+  }
+
+  /**
+   * Draws a uniform value in [0,1), from the random stream of the given element if the simulation is
+   * seeded, and from the given generator otherwise.
+   *
+   * @param source element whose stream is used (e.g., a gateway for its choices)
+   * @param fallback generator of the element, used by unseeded simulations
+   * @return uniform value in [0,1)
+   */
+  public double nextDouble(Element source, Random fallback) {
+    return randomStreams == null
+        ? fallback.nextDouble()
+        : randomStreams.stream(source).nextDouble();
+  }
+
+  /**
+   * Returns the state that the given element keeps on the executions of this simulation, creating
+   * it the first time it is needed.
+   *
+   * @param element flow element
+   * @param init supplier of the initial state of the element
+   * @return state of the element in this simulation
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T getState(FlowElement element, Supplier<T> init) {
+    return (T) elementStates.computeIfAbsent(element, e -> init.get());
+  }
+
   public ResourceBank getResources() {
     return resources;
   }
@@ -126,7 +356,9 @@ public class Simulation {
 
   public Triplet<Double, Double, Double> runSimulation(Map<String, Integer> initial, int population) {
     return runSimulation(
-        initial, population, new ExponentialDistribution(5)); // TODO: what is the default value?
+        initial,
+        population,
+        new ExponentialDistribution(DEFAULT_MEAN_INTER_ARRIVAL_TIME));
   }
 
   /**
@@ -143,17 +375,29 @@ public class Simulation {
       int population, AbstractRealDistribution interArrivalTime) {
     Instant start = Instant.now();
     tokens.clear();
-    // TODO the workload generation and the simulation could be run in parallel
-    workload(population, interArrivalTime);
-    run();
+    CompiledWorkflow program = compiled && !streamingWorkload ? compile() : null;
+    Simulation reference = program != null && crossCheck ? referenceSimulation() : null;
+    if (program == null) {
+      // arrivals can also be generated as the simulation goes (see setStreamingWorkload)
+      workload(population, interArrivalTime);
+    }
+    run(program, population, interArrivalTime);
+    if (streamingWorkload) {
+      // executions with tokens left (e.g., blocked) are accounted as in the eager workload
+      Set<Integer> execs = new TreeSet<>(processExecs.keySet());
+      execs.addAll(syncTimes.keySet());
+      execs.forEach(this::completeExecution);
+    }
     // TODO results may be shown
-    double execTimes = 0;
-    int n = 0;
+    double execTimes = completedExecTimes;
+    int n = completedExecs;
     for (Double v : getProcessExecs().values()) {
       // logger.debug("Exec counter {}, value {}, and time {} ", n, v, execTimes);
       n++;
       execTimes += v;
+      execTimeSketch.add(v);
     }
+    getSyncTimes().values().forEach(this::addSyncTimes);
     Instant end = Instant.now();
     double avgExecTime = execTimes / n;
     double totalCost = resources.getTotalCost(getGtime());
@@ -196,11 +440,68 @@ public class Simulation {
             totalCost,
             usage,
             avlHistory,
-            calculateAverages(getSyncTimes(), getSyncCounters()),
+            streamingWorkload
+                ? calculateAverages(Map.of(0, completedSyncTimes), getSyncCounters())
+                : calculateAverages(getSyncTimes(), getSyncCounters()),
             totalEmissions,
             emissionsHistoryPerResource, costHistoryPerResource);
+    this.simulationResult.setHistoryPolicy(resources.getHistoryPolicy());
+    this.simulationResult.setExecTimeSketch(execTimeSketch);
+    this.simulationResult.setSyncTimeSketches(syncTimeSketches);
     logger.debug("Simulation Result: {}", simulationResult);
-    return Triplet.with(avgExecTime, totalCost, totalEmissions);
+    Triplet<Double, Double, Double> result = Triplet.with(avgExecTime, totalCost, totalEmissions);
+    if (reference != null) {
+      crossCheck(result, reference.runSimulation(population, interArrivalTime));
+    }
+    return result;
+  }
+
+  /**
+   * Compiles the process for the compiled engine.
+   *
+   * @return compiled process, null if it has elements not supported by the compiled engine
+   */
+  private CompiledWorkflow compile() {
+    try {
+      return CompiledWorkflow.compile(init);
+    } catch (IllegalArgumentException iae) {
+      logger.debug("Process run on the object model: {}", iae.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Creates the simulation running the object model in a cross-check, with the resources and seed
+   * of this one. The reference always runs in event calendar mode, whose results the compiled
+   * engine reproduces, whatever the mode of this simulation.
+   */
+  private Simulation referenceSimulation() {
+    if (randomStreams == null) {
+      throw new IllegalStateException("Cross-checked simulations must be seeded.");
+    }
+    Simulation reference = new Simulation(init);
+    reference.resources = resources.copy();
+    reference.setEventCalendar(true);
+    reference.setRandomStreams(new RandomStreams(randomStreams.getSeed()));
+    reference.reference = true;
+    return reference;
+  }
+
+  private void crossCheck(
+      Triplet<Double, Double, Double> compiled, Triplet<Double, Double, Double> reference) {
+    for (int i = 0; i < compiled.getSize(); i++) {
+      double c = (Double) compiled.getValue(i), r = (Double) reference.getValue(i);
+      if (Math.abs(c - r) > CROSS_CHECK_TOLERANCE * Math.max(Math.abs(c), Math.abs(r))
+          && !(Double.isNaN(c) && Double.isNaN(r))) {
+        throw new IllegalStateException(
+            "The compiled simulation differs from the object model: "
+                + compiled
+                + " instead of "
+                + reference
+                + ".");
+      }
+    }
+    logger.debug("Compiled simulation cross-checked: {}", compiled);
   }
 
   /***
@@ -209,20 +510,123 @@ public class Simulation {
    * The first job is scheduled for time 0.
    ***/
   private void workload(int population, AbstractRealDistribution iat) {
+    if (streamingWorkload) {
+      this.population = population;
+      this.interArrivalTime = iat;
+      this.nextArrival = 0;
+      this.nextArrivalTime = 0;
+      arrival();
+      return;
+    }
     double t = 0;
     for (int i = 0; i < population; i++) {
       tokens.add(new Token(i, init, t)); // adds a token at the start event
       getSyncTimestamps().put(i, new HashMap<String, Double>());
       getSyncTimes().put(i, new HashMap<String, Double>());
-      t += iat.sample();
+      t +=
+          randomStreams == null
+              ? iat.sample()
+              : iat.inverseCumulativeProbability(
+                  randomStreams.stream(RandomStreams.ARRIVALS).nextDouble());
+    }
+  }
+
+  /**
+   * Adds the token of the next execution of a streaming workload, if the population has not been
+   * reached yet, and samples the arrival time of the following one.
+   */
+  private void arrival() {
+    if (nextArrival >= population) {
+      return;
     }
+    int i = nextArrival++;
+    tokens.add(new Token(i, init, nextArrivalTime - gtime)); // adds a token at the start event
+    getSyncTimestamps().put(i, new HashMap<String, Double>());
+    getSyncTimes().put(i, new HashMap<String, Double>());
+    nextArrivalTime +=
+        randomStreams == null
+            ? interArrivalTime.sample()
+            : interArrivalTime.inverseCumulativeProbability(
+                randomStreams.stream(RandomStreams.ARRIVALS).nextDouble());
+  }
+
+  /**
+   * Called by end events when a token of an execution is consumed. In a streaming workload, the
+   * execution is completed once it has no token left.
+   *
+   * @param exec identifier of the execution
+   */
+  void ended(int exec) {
+    if (streamingWorkload) {
+      endedExecs.add(exec);
+    }
+  }
+
+  /**
+   * Adds the exec time and sync times of an execution to the totals, and frees its bookkeeping.
+   *
+   * @param exec identifier of the execution
+   */
+  private void completeExecution(int exec) {
+    Double execTime = processExecs.remove(exec);
+    if (execTime != null) {
+      completedExecTimes += execTime;
+      completedExecs++;
+      execTimeSketch.add(execTime);
+    }
+    processTstamps.remove(exec);
+    syncTimestamps.remove(exec);
+    Map<String, Double> times = syncTimes.remove(exec);
+    if (times != null) {
+      times.forEach((id, time) -> completedSyncTimes.merge(id, time, Double::sum));
+      addSyncTimes(times);
+    }
+  }
+
+  /**
+   * Adds the sync times of an execution at each parallel merge to their sketches.
+   *
+   * @param times sync times of the execution, by merge
+   */
+  private void addSyncTimes(Map<String, Double> times) {
+    times.forEach(
+        (id, time) -> syncTimeSketches.computeIfAbsent(id, k -> new QuantileSketch()).add(time));
   }
 
   /**
    * The simulation is not deterministic. Different runs may lead to different results. TODO: Is it... ANSWER: Not with the same seeds
    * true that variability is reduced for greater populations?
    */
-  private void run() {
+  private void run(CompiledWorkflow program, int population, AbstractRealDistribution iat) {
+    TraceSink sink = traceSink;
+    if (sink == null && TRACE && !reference) {
+      // default trace: one buffered file for the whole run, written by a background thread
+      try {
+        File file = new File("traces/trace" + TRACE_ID + "-" + TRACED_RUNS.getAndIncrement() + ".csv");
+        sink = new AsyncTraceSink(new CsvTraceSink(file, true));
+      } catch (IOException ioe) {
+        logger.debug("Trace file cannot be opened");
+      }
+    }
+    try {
+      if (program == null) {
+        run(sink);
+      } else {
+        new CompiledSimulation(program, this).run(population, iat, sink);
+        this.getResources().updateResources(gtime);
+      }
+    } finally {
+      if (sink != null && sink != traceSink) {
+        try {
+          sink.close();
+        } catch (IOException ioe) {
+          logger.debug("Trace file cannot be written", ioe);
+        }
+      }
+    }
+  }
+
+  private void run(TraceSink sink) {
     Collection<Token> shiftedTokens = new ArrayList<>();
     boolean exit = false;
     while (!exit && !tokens.isEmpty()) {
@@ -252,29 +656,44 @@ public class Simulation {
       } else {
         // if there is a token, it is either ready or have a non-0 timer
         if (t.getTimer() > 0) {
-          gtime += t.getTimer();
-          decTimers(tokens, t.getTimer());
-          decTimers(shiftedTokens, t.getTimer());
+          if (eventCalendar) {
+            // timers are derived from the absolute timestamps, moving the clock is enough; shifted
+            // tokens are rescheduled at the current time when they are queued again (see
+            // Token.schedule), as their timers stay at zero in the relative engine
+            gtime = t.getTime();
+          } else {
+            gtime += t.getTimer();
+            decTimers(tokens, t.getTimer());
+            decTimers(shiftedTokens, t.getTimer());
+          }
         }
         // if the token at the front is ready and its timer is 0 then it can be run
         if (e.isReady(this)) {
-          if (TRACE) {
+          if (sink != null) {
             try {
-              PrintWriter pw =
-                  new PrintWriter(
-                      new FileOutputStream(
-                          new File("traces/trace" + TRACE_ID + "-" + t.getId() + ".csv"), true));
-              pw.printf("%s,%s\n", t.getAt().getId(), gtime);
-              pw.close();
-            } catch (FileNotFoundException fnfe) {
-              logger.debug("Trace file cannot be opened");
+              sink.trace(t.getId(), t.getAt().getId(), gtime);
+            } catch (IOException ioe) {
+              logger.debug("Trace file cannot be written", ioe);
+              sink = null;
             }
           }
           e.run(this);
+          if (streamingWorkload && e == init) {
+            arrival();
+          }
         }
       }
       tokens.addAll(shiftedTokens);
       shiftedTokens.clear();
+      if (!endedExecs.isEmpty()) {
+        // shifted tokens are back in the queue, executions without tokens are completed
+        for (int exec : endedExecs) {
+          if (!tokens.hasTokens(exec)) {
+            completeExecution(exec);
+          }
+        }
+        endedExecs.clear();
+      }
     }
     this.getResources().updateResources(gtime);
   }
@@ -0,0 +1,127 @@
+//Copyright 2022 Voyance Systems
+
+package simulator.model;
+
+import org.javatuples.Triplet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The SimulationCache class memoizes the results (AET, cost, emissions) of the simulations of assignments of numbers
+ * of instances to resources. Results are identified by the assignment, the population simulated, and the seed of the
+ * random streams of the simulation (null for unseeded simulations), so that results of simulations with common random
+ * numbers are only reused by searches using the same seed. The cache can be shared by searches running at the same
+ * time, and saved to a file to warm-start later searches on the same process. It is the responsibility of the caller to
+ * only share a cache between searches on the same process and resources.
+ */
+public class SimulationCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimulationCache.class);
+
+    private final ConcurrentMap<Key, Triplet<Double, Double, Double>> results;
+
+    public SimulationCache() {
+        results = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the result of the simulation of the given assignment, if it has already been simulated.
+     *
+     * @param assignment assignment of numbers of instances to resources
+     * @param population population of the simulation
+     * @param seed       seed of the simulation, null if unseeded
+     * @return result of the simulation, or null if it is not in the cache
+     */
+    public Triplet<Double, Double, Double> get(Map<String, Integer> assignment, int population, Long seed) {
+        return results.get(new Key(assignment, population, seed));
+    }
+
+    /**
+     * Adds the result of the simulation of the given assignment. If the assignment was simulated at the same time by
+     * another search, the result already in the cache is kept, so that all searches see the same result.
+     *
+     * @param assignment assignment of numbers of instances to resources
+     * @param population population of the simulation
+     * @param seed       seed of the simulation, null if unseeded
+     * @param result     result of the simulation
+     * @return result in the cache for the assignment
+     */
+    public Triplet<Double, Double, Double> put(Map<String, Integer> assignment, int population, Long seed, Triplet<Double, Double, Double> result) {
+        Triplet<Double, Double, Double> previous = results.putIfAbsent(new Key(assignment, population, seed), result);
+        return previous == null ? result : previous;
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * Saves the results of the cache to the given file.
+     *
+     * @param file file to write
+     * @throws IOException if the file can not be written
+     */
+    public void save(File file) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeObject(new HashMap<>(results));
+        }
+        logger.debug("{} simulation results saved to {}", results.size(), file);
+    }
+
+    /**
+     * Loads a cache previously saved with save(File).
+     *
+     * @param file file to read
+     * @return cache with the results of the file
+     * @throws IOException if the file can not be read or is not a saved cache
+     */
+    @SuppressWarnings("unchecked")
+    public static SimulationCache load(File file) throws IOException {
+        SimulationCache cache = new SimulationCache();
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            cache.results.putAll((Map<Key, Triplet<Double, Double, Double>>) in.readObject());
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Invalid simulation cache file " + file, e);
+        }
+        logger.debug("{} simulation results loaded from {}", cache.results.size(), file);
+        return cache;
+    }
+
+    /**
+     * Identifier of a simulation in the cache. The assignment is copied, so that later changes of the map used to
+     * query the cache do not alter its entries.
+     */
+    private static final class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final HashMap<String, Integer> assignment;
+        private final int population;
+        private final Long seed;
+
+        Key(Map<String, Integer> assignment, int population, Long seed) {
+            this.assignment = new HashMap<>(assignment);
+            this.population = population;
+            this.seed = seed;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return population == key.population && Objects.equals(seed, key.seed) && assignment.equals(key.assignment);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(assignment, population, seed);
+        }
+    }
+}
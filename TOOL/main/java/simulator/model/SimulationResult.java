@@ -20,6 +20,20 @@ public class SimulationResult {
   private Double totalEmissions;
   private Map<String, Map<Double, Double>> emissionsHistory;
   private Map<String, Map<Double, Double>> costHistory;
+  // how the histories above were recorded
+  private HistoryPolicy historyPolicy;
+  // distributions of the exec times of the instances and of their sync times at each parallel
+  // merge, from which quantiles are estimated
+  private QuantileSketch execTimeSketch;
+  private Map<String, QuantileSketch> syncTimeSketches;
+
+  // precision of aggregated results: number of replications and half-widths of the confidence
+  // intervals of the means (at the given confidence level)
+  private Integer nbReplications;
+  private Double confidenceLevel;
+  private Double avgExecTimeHalfWidth;
+  private Double totalCostHalfWidth;
+  private Double totalEmissionsHalfWidth;
 
   /** */
   public SimulationResult() {
@@ -159,6 +173,87 @@ public class SimulationResult {
     this.costHistory = costHistory;
   }
 
+  /** @return the historyPolicy with which the histories were recorded */
+  public HistoryPolicy getHistoryPolicy() {
+    return historyPolicy;
+  }
+  /** @param historyPolicy the historyPolicy to set */
+  public void setHistoryPolicy(HistoryPolicy historyPolicy) {
+    this.historyPolicy = historyPolicy;
+  }
+  /** @return the execTimeSketch */
+  public QuantileSketch getExecTimeSketch() {
+    return execTimeSketch;
+  }
+  /** @param execTimeSketch the execTimeSketch to set */
+  public void setExecTimeSketch(QuantileSketch execTimeSketch) {
+    this.execTimeSketch = execTimeSketch;
+  }
+  /** @return the syncTimeSketches */
+  public Map<String, QuantileSketch> getSyncTimeSketches() {
+    return syncTimeSketches;
+  }
+  /** @param syncTimeSketches the syncTimeSketches to set */
+  public void setSyncTimeSketches(Map<String, QuantileSketch> syncTimeSketches) {
+    this.syncTimeSketches = syncTimeSketches;
+  }
+  /**
+   * @param q quantile, in [0,1] (e.g., 0.95 for p95)
+   * @return the estimated quantile of the exec times of the instances
+   */
+  public double getExecTimeQuantile(double q) {
+    return execTimeSketch == null ? Double.NaN : execTimeSketch.getQuantile(q);
+  }
+  /**
+   * @param id identifier of a parallel merge
+   * @param q quantile, in [0,1] (e.g., 0.95 for p95)
+   * @return the estimated quantile of the sync times at the merge
+   */
+  public double getSyncTimeQuantile(String id, double q) {
+    QuantileSketch sketch = syncTimeSketches == null ? null : syncTimeSketches.get(id);
+    return sketch == null ? Double.NaN : sketch.getQuantile(q);
+  }
+  /** @return the number of replications aggregated in this result */
+  public Integer getNbReplications() {
+    return nbReplications;
+  }
+  /** @param nbReplications the nbReplications to set */
+  public void setNbReplications(Integer nbReplications) {
+    this.nbReplications = nbReplications;
+  }
+  /** @return the confidenceLevel of the reported half-widths */
+  public Double getConfidenceLevel() {
+    return confidenceLevel;
+  }
+  /** @param confidenceLevel the confidenceLevel to set */
+  public void setConfidenceLevel(Double confidenceLevel) {
+    this.confidenceLevel = confidenceLevel;
+  }
+  /** @return the half-width of the confidence interval of the avgExecTime */
+  public Double getAvgExecTimeHalfWidth() {
+    return avgExecTimeHalfWidth;
+  }
+  /** @param avgExecTimeHalfWidth the avgExecTimeHalfWidth to set */
+  public void setAvgExecTimeHalfWidth(Double avgExecTimeHalfWidth) {
+    this.avgExecTimeHalfWidth = avgExecTimeHalfWidth;
+  }
+  /** @return the half-width of the confidence interval of the totalCost */
+  public Double getTotalCostHalfWidth() {
+    return totalCostHalfWidth;
+  }
+  /** @param totalCostHalfWidth the totalCostHalfWidth to set */
+  public void setTotalCostHalfWidth(Double totalCostHalfWidth) {
+    this.totalCostHalfWidth = totalCostHalfWidth;
+  }
+  /** @return the half-width of the confidence interval of the totalEmissions */
+  public Double getTotalEmissionsHalfWidth() {
+    return totalEmissionsHalfWidth;
+  }
+  /** @param totalEmissionsHalfWidth the totalEmissionsHalfWidth to set */
+  public void setTotalEmissionsHalfWidth(Double totalEmissionsHalfWidth) {
+    this.totalEmissionsHalfWidth = totalEmissionsHalfWidth;
+  }
+
   @Override
   public String toString() {
     return "SimulationResult [population="
@@ -183,6 +278,22 @@ public class SimulationResult {
         + emissionsHistory
         + ", costHistory="
         + costHistory
+        + ", historyPolicy="
+        + historyPolicy
+        + ", execTimeSketch="
+        + execTimeSketch
+        + ", syncTimeSketches="
+        + syncTimeSketches
+        + ", nbReplications="
+        + nbReplications
+        + ", confidenceLevel="
+        + confidenceLevel
+        + ", avgExecTimeHalfWidth="
+        + avgExecTimeHalfWidth
+        + ", totalCostHalfWidth="
+        + totalCostHalfWidth
+        + ", totalEmissionsHalfWidth="
+        + totalEmissionsHalfWidth
         + "]";
   }
 }
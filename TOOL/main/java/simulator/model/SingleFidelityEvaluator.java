@@ -0,0 +1,40 @@
+// Copyright 2022 Voyance Systems
+
+package simulator.model;
+
+import org.javatuples.Triplet;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The SingleFidelityEvaluator class evaluates all the candidate assignments with one simulation of the whole
+ * population each, which is what the optimizers do by default.
+ */
+public class SingleFidelityEvaluator implements AssignmentEvaluator {
+
+    private final AtomicLong fullSimulations = new AtomicLong();
+
+    @Override
+    public Map<Map<String, Integer>, Triplet<Double, Double, Double>> evaluate(List<Map<String, Integer>> candidates, int population, Simulations simulations) {
+        List<Triplet<Double, Double, Double>> results = simulations.run(candidates, population, 0);
+        fullSimulations.addAndGet(candidates.size());
+        Map<Map<String, Integer>, Triplet<Double, Double, Double>> evaluated = new LinkedHashMap<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            evaluated.put(candidates.get(i), results.get(i));
+        }
+        return evaluated;
+    }
+
+    @Override
+    public long getFullSimulations() {
+        return fullSimulations.get();
+    }
+
+    @Override
+    public long getSavedSimulations() {
+        return 0;
+    }
+}
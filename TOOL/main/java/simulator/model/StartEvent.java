@@ -40,7 +40,7 @@ public class StartEvent extends Event {
     public void run(Simulation simulation) {
         Token t = simulation.getTokens().poll();
         t.setAt(getOutgoing());
-        t.setTimer(getOutgoing().getDelay().sample());
+        t.setTimer(simulation.sample(getOutgoing(), getOutgoing().getDelay()));
         simulation.getTokens().add(t);
         simulation.getProcessTstamps().put(t.getId(), simulation.getGtime());
         //logger.trace("{}: {},", t.getId(), simulation.getGtime());
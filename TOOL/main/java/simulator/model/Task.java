@@ -66,6 +66,15 @@ public class Task extends Node {
     	this.reqResources = reqResources;
     }
 
+    /**
+     * Returns the required resources.
+     *
+     * @return number of instances of each resource required by the task
+     */
+    public Map<String, Integer> getRequiredResources() {
+        return reqResources;
+    }
+
     /**
      * Returns the outgoing flow.
      *
@@ -99,11 +108,11 @@ public class Task extends Node {
         if (t.getAt() == getIncoming()) {
             simulation.getResources().grabResources(reqResources, simulation.getGtime());
             t.setAt(this);
-            t.setTimer(getDuration().sample());
+            t.setTimer(simulation.sample(this, getDuration()));
         } else {
             simulation.getResources().releaseResources(reqResources, simulation.getGtime());
             t.setAt(getOutgoing());
-            t.setTimer(getOutgoing().getDelay().sample());
+            t.setTimer(simulation.sample(getOutgoing(), getOutgoing().getDelay()));
         }
         // t.setTimer(getDuration());
         simulation.getTokens().add(t);
@@ -0,0 +1,141 @@
+// Copyright 2022 Voyance Systems
+
+package simulator.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+/**
+ * The TimeSeries class records the values of a quantity along the time of a simulation in primitive arrays, following
+ * a history policy. Recording a value at the time of the last recorded one replaces it, as putting it in a map would.
+ * Times are expected to be recorded in increasing order, as the clock of a simulation only moves forward.
+ */
+public class TimeSeries {
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+    /**
+     * Reservoirs of all the series use the same seed: series updated at the same times (e.g., the cost and emissions of
+     * a resource) keep the same timestamps.
+     */
+    private static final long RESERVOIR_SEED = 0x5DEECE66DL;
+
+    private final HistoryPolicy policy;
+    private double[] times;
+    private double[] values;
+    private int size;
+    /**
+     * number of distinct times recorded (reservoir), last of them, and position in the arrays of its value (-1 if the
+     * reservoir did not keep it)
+     */
+    private long count;
+    private double lastTime;
+    private int last = -1;
+    private SplittableRandom random;
+
+    public TimeSeries(HistoryPolicy policy) {
+        this.policy = policy;
+        int capacity = policy.getType() == HistoryPolicy.Type.OFF ? 0
+                : policy.getType() == HistoryPolicy.Type.RESERVOIR ? Math.min(policy.getSize(), DEFAULT_INITIAL_CAPACITY)
+                : DEFAULT_INITIAL_CAPACITY;
+        this.times = new double[capacity];
+        this.values = new double[capacity];
+        if (policy.getType() == HistoryPolicy.Type.RESERVOIR) {
+            random = new SplittableRandom(RESERVOIR_SEED);
+        }
+    }
+
+    public HistoryPolicy getPolicy() {
+        return policy;
+    }
+
+    public void record(double ts, double value) {
+        switch (policy.getType()) {
+            case OFF:
+                return;
+            case FULL:
+                if (size > 0 && times[size - 1] == ts) {
+                    values[size - 1] = value;
+                } else {
+                    append(ts, value);
+                }
+                return;
+            case BUCKETS:
+                if (size > 0 && Math.floor(times[size - 1] / policy.getWidth()) == Math.floor(ts / policy.getWidth())) {
+                    times[size - 1] = ts;
+                    values[size - 1] = value;
+                } else {
+                    append(ts, value);
+                }
+                return;
+            case RESERVOIR:
+                if (count > 0 && lastTime == ts) {
+                    // the value replaces the previous one, if it was kept
+                    if (last >= 0) {
+                        values[last] = value;
+                    }
+                    return;
+                }
+                count++;
+                lastTime = ts;
+                if (size < policy.getSize()) {
+                    append(ts, value);
+                    last = size - 1;
+                } else {
+                    // algorithm R: the i-th time replaces a kept one with probability size / i
+                    long j = random.nextLong(count);
+                    if (j < size) {
+                        times[(int) j] = ts;
+                        values[(int) j] = value;
+                        last = (int) j;
+                    } else {
+                        last = -1;
+                    }
+                }
+        }
+    }
+
+    private void append(double ts, double value) {
+        if (size == times.length) {
+            int capacity = Math.max(DEFAULT_INITIAL_CAPACITY, times.length + (times.length >> 1));
+            if (policy.getType() == HistoryPolicy.Type.RESERVOIR) {
+                capacity = Math.min(capacity, policy.getSize());
+            }
+            times = Arrays.copyOf(times, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        times[size] = ts;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * @return number of values kept
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return values kept, sorted by time
+     */
+    public Map<Double, Double> toMap() {
+        Map<Double, Double> map = new TreeMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(times[i], values[i]);
+        }
+        return map;
+    }
+
+    /**
+     * @return values kept, sorted by time, for series of numbers of instances
+     */
+    public Map<Double, Integer> toIntegerMap() {
+        Map<Double, Integer> map = new TreeMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(times[i], (int) values[i]);
+        }
+        return map;
+    }
+}
@@ -14,6 +14,16 @@ public class Token implements Comparable<Token> {
     private double timer;
     private FlowElement at;
     private int id;
+    /**
+     * Absolute timestamp at which the token fires. It is only used when the token is scheduled on the event calendar
+     * of a simulation (see {@link Simulation#setEventCalendar(boolean)}), in which case the timer is derived from it.
+     */
+    private double time;
+    private Simulation calendar;
+    /**
+     * Position of the token in the heap of the TokenQueue holding it, -1 if it is not queued.
+     */
+    private int position = -1;
 
     public Token(int id, FlowElement at, double timer) {
         this.timer = timer;
@@ -21,18 +31,73 @@ public class Token implements Comparable<Token> {
         this.id = id;
     }
 
+    /**
+     * Returns the time remaining before the token fires. For tokens scheduled on an event calendar, this is computed
+     * from the absolute timestamp of the token and the current time of the simulation.
+     *
+     * @return remaining time
+     */
     public double getTimer() {
-        return timer;
+        return calendar == null ? timer : time - calendar.getGtime();
     }
 
     public void setTimer(double timer) {
-        this.timer = timer;
+        if (calendar == null) {
+            this.timer = timer;
+        } else {
+            this.time = calendar.getGtime() + timer;
+        }
+    }
+
+    /**
+     * Returns the absolute timestamp at which the token fires, if it is scheduled on an event calendar.
+     *
+     * @return absolute firing time
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * Schedules the token on the event calendar of the given simulation. The current (relative) timer is converted
+     * into an absolute timestamp, and from then on the token is ordered by this timestamp, so that advancing the clock
+     * of the simulation does not require updating the token. An already scheduled token whose timestamp has passed (a
+     * token that was waiting, e.g., for resources, while the clock moved) is rescheduled at the current time, as its
+     * timer would have stayed at zero with relative timers; scheduling it has no effect otherwise.
+     *
+     * @param simulation simulation owning the calendar
+     */
+    void schedule(Simulation simulation) {
+        if (calendar == null) {
+            time = simulation.getGtime() + timer;
+            calendar = simulation;
+        } else if (time < calendar.getGtime()) {
+            time = calendar.getGtime();
+        }
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    void setPosition(int position) {
+        this.position = position;
+    }
+
+    private double key() {
+        return calendar == null ? timer : time;
     }
 
     public FlowElement getAt() {
         return at;
     }
 
+    /**
+     * Moves the token to the given flow element. Tokens are indexed by location in the token queue, so they must be
+     * taken out of the queue before being moved.
+     *
+     * @param at new location of the token
+     */
     public void setAt(FlowElement at) {
         this.at = at;
     }
@@ -46,17 +111,17 @@ public class Token implements Comparable<Token> {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Token t = (Token) o;
-        return Double.compare(t.timer, timer) == 0;
+        return Double.compare(t.key(), key()) == 0;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(timer);
+        return Objects.hash(key());
     }
 
     @Override
     public int compareTo(Token o) {
-        return Double.compare(timer, o.getTimer());
+        return Double.compare(key(), o.key());
     }
 
     @Override
@@ -0,0 +1,335 @@
+//Copyright 2022 Voyance Systems
+
+package simulator.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * The TokenQueue class is the queue of tokens of a simulation, ordered by timer. It is a binary heap following the
+ * same algorithm as java.util.PriorityQueue, so that tokens are processed in the same order, but it additionally keeps
+ * the position of each token in the heap and an index of the tokens of each execution on each flow element. Elements
+ * looking for the tokens of one execution on one flow (e.g., a parallel merge) can therefore find and remove them
+ * without traversing the tokens of all the executions in flight.
+ * When created for an event calendar, tokens are scheduled by absolute timestamp upon insertion (see
+ * {@link Simulation#setEventCalendar(boolean)}).
+ */
+public class TokenQueue extends AbstractQueue<Token> {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenQueue.class);
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 11;
+
+    private Token[] queue;
+    private int size;
+    /**
+     * Tokens in the queue, indexed by execution identifier and flow element at which they are located.
+     */
+    private final Map<Integer, Map<FlowElement, List<Token>>> index;
+    /**
+     * Simulation whose clock is used to schedule tokens by absolute timestamp, null for relative timers.
+     */
+    private final Simulation calendar;
+
+    public TokenQueue() {
+        this(null);
+    }
+
+    TokenQueue(Simulation calendar) {
+        this.queue = new Token[DEFAULT_INITIAL_CAPACITY];
+        this.index = new HashMap<>();
+        this.calendar = calendar;
+    }
+
+    @Override
+    public boolean offer(Token t) {
+        if (t == null) throw new NullPointerException();
+        if (calendar != null) {
+            t.schedule(calendar);
+        }
+        if (size >= queue.length) {
+            queue = Arrays.copyOf(queue, queue.length < 64 ? queue.length * 2 + 2 : queue.length + (queue.length >> 1));
+        }
+        siftUp(size, t);
+        size++;
+        addToIndex(t);
+        return true;
+    }
+
+    @Override
+    public Token poll() {
+        if (size == 0) return null;
+        Token result = queue[0];
+        int n = --size;
+        Token x = queue[n];
+        queue[n] = null;
+        if (n > 0) {
+            siftDown(0, x, n);
+        }
+        result.setPosition(-1);
+        removeFromIndex(result);
+        return result;
+    }
+
+    @Override
+    public Token peek() {
+        return queue[0];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            queue[i].setPosition(-1);
+            queue[i] = null;
+        }
+        size = 0;
+        index.clear();
+    }
+
+    /**
+     * Removes the first token equal to the given object, as java.util.PriorityQueue does.
+     *
+     * @param o object to remove
+     * @return whether a token was removed
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (o != null) {
+            for (int i = 0; i < size; i++) {
+                if (o.equals(queue[i])) {
+                    Token t = queue[i];
+                    removeAt(i);
+                    removeFromIndex(t);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the given token (and not an equal one) from the queue in O(log n).
+     *
+     * @param t token to remove
+     * @return whether the token was in the queue
+     */
+    public boolean removeToken(Token t) {
+        int i = t.getPosition();
+        if (i < 0 || i >= size || queue[i] != t) return false;
+        removeAt(i);
+        removeFromIndex(t);
+        return true;
+    }
+
+    /**
+     * Removes the given tokens from the queue. Tokens are removed in the order in which a traversal of the heap
+     * removing them with an iterator would find them, so that the resulting heap, and hence the order in which tokens
+     * with the same timer are processed, does not depend on the order of the given collection.
+     *
+     * @param tokens tokens to remove
+     */
+    public void removeTokens(Collection<Token> tokens) {
+        List<Token> pending = new ArrayList<>(tokens);
+        // tokens moved before the traversal cursor by a removal, an iterator would visit them at the end
+        List<Token> forgotten = new ArrayList<>();
+        int cursor = 0;
+        while (true) {
+            Token next = null;
+            for (Token t : pending) {
+                if (t.getPosition() >= cursor && !containsToken(forgotten, t)
+                        && (next == null || t.getPosition() < next.getPosition())) {
+                    next = t;
+                }
+            }
+            if (next == null) break;
+            cursor = next.getPosition();
+            removeToken(pending, next);
+            Token moved = removeAt(cursor);
+            removeFromIndex(next);
+            if (moved != null) {
+                forgotten.add(moved);
+            }
+        }
+        for (Token t : forgotten) {
+            if (removeToken(pending, t)) {
+                removeToken(t);
+            }
+        }
+    }
+
+    /**
+     * Checks whether there is a token of the given execution with timer zero at the given flow element.
+     *
+     * @param exec identifier of the execution
+     * @param at   flow element
+     * @return whether such token exists
+     */
+    public boolean hasReadyToken(int exec, FlowElement at) {
+        return getReadyToken(exec, at) != null;
+    }
+
+    /**
+     * Returns a token of the given execution with timer zero at the given flow element, if any.
+     *
+     * @param exec identifier of the execution
+     * @param at   flow element
+     * @return the ready token, or null if there is none
+     */
+    public Token getReadyToken(int exec, FlowElement at) {
+        for (Token t : getTokens(exec, at)) {
+            if (t.getTimer() == 0) {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether there is any token of the given execution in the queue.
+     *
+     * @param exec identifier of the execution
+     * @return whether such token exists
+     */
+    public boolean hasTokens(int exec) {
+        return index.containsKey(exec);
+    }
+
+    /**
+     * Returns the tokens of the given execution at the given flow element.
+     *
+     * @param exec identifier of the execution
+     * @param at   flow element
+     * @return the (possibly empty) list of tokens, which must not be modified
+     */
+    public List<Token> getTokens(int exec, FlowElement at) {
+        Map<FlowElement, List<Token>> tokens = index.get(exec);
+        if (tokens == null) return Collections.emptyList();
+        return tokens.getOrDefault(at, Collections.emptyList());
+    }
+
+    /**
+     * Iterates over the tokens in heap order. Removal through the iterator is not supported, tokens must be removed
+     * with remove(Object), removeToken(Token) or removeTokens(Collection).
+     */
+    @Override
+    public Iterator<Token> iterator() {
+        return new Iterator<>() {
+            private int cursor = 0;
+
+            @Override
+            public boolean hasNext() {
+                return cursor < size;
+            }
+
+            @Override
+            public Token next() {
+                if (cursor >= size) throw new NoSuchElementException();
+                return queue[cursor++];
+            }
+        };
+    }
+
+    /**
+     * Removes the token at position i, as java.util.PriorityQueue does.
+     *
+     * @param i position of the token to remove
+     * @return the token moved to a position before i, if the last token of the heap was sifted up, null otherwise
+     */
+    private Token removeAt(int i) {
+        queue[i].setPosition(-1);
+        int s = --size;
+        if (s == i) {
+            queue[i] = null;
+        } else {
+            Token moved = queue[s];
+            queue[s] = null;
+            siftDown(i, moved, s);
+            if (queue[i] == moved) {
+                siftUp(i, moved);
+                if (queue[i] != moved) {
+                    return moved;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean containsToken(List<Token> tokens, Token t) {
+        for (Token token : tokens) {
+            if (token == t) return true;
+        }
+        return false;
+    }
+
+    private static boolean removeToken(List<Token> tokens, Token t) {
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.get(i) == t) {
+                tokens.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void siftUp(int k, Token x) {
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            Token e = queue[parent];
+            if (x.compareTo(e) >= 0) break;
+            place(k, e);
+            k = parent;
+        }
+        place(k, x);
+    }
+
+    private void siftDown(int k, Token x, int n) {
+        int half = n >>> 1;
+        while (k < half) {
+            int child = (k << 1) + 1;
+            Token c = queue[child];
+            int right = child + 1;
+            if (right < n && c.compareTo(queue[right]) > 0) {
+                c = queue[child = right];
+            }
+            if (x.compareTo(c) <= 0) break;
+            place(k, c);
+            k = child;
+        }
+        place(k, x);
+    }
+
+    private void place(int k, Token t) {
+        queue[k] = t;
+        t.setPosition(k);
+    }
+
+    private void addToIndex(Token t) {
+        index.computeIfAbsent(t.getId(), k -> new HashMap<>()).computeIfAbsent(t.getAt(), k -> new ArrayList<>(1)).add(t);
+    }
+
+    private void removeFromIndex(Token t) {
+        Map<FlowElement, List<Token>> tokens = index.get(t.getId());
+        if (tokens == null) return;
+        List<Token> list = tokens.get(t.getAt());
+        if (list == null) return;
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == t) {
+                list.remove(i);
+                break;
+            }
+        }
+        if (list.isEmpty()) {
+            tokens.remove(t.getAt());
+            if (tokens.isEmpty()) {
+                index.remove(t.getId());
+            }
+        }
+    }
+}
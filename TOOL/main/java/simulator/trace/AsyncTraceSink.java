@@ -0,0 +1,134 @@
+// Copyright 2022 Voyance Systems
+
+package simulator.trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The AsyncTraceSink class moves the writing of a trace out of the simulation thread. Events are stored in batches of
+ * primitive arrays, and full batches are handed to a background thread that writes them to the given sink. Tracing
+ * an event therefore costs a few array stores, and the simulation only waits for the writer if it falls behind by
+ * more than QUEUED_BATCHES batches. Closing the sink writes the pending events, closes the given sink even if they
+ * can not be written, and reports the first error met, if any. If the writer thread stops, the next batch handed to it fails with its error instead of waiting
+ * for it forever.
+ */
+public class AsyncTraceSink implements TraceSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncTraceSink.class);
+
+    private static final int BATCH_SIZE = 4096;
+    private static final int QUEUED_BATCHES = 16;
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+    private static final Batch END = new Batch();
+
+    private final TraceSink sink;
+    private final BlockingQueue<Batch> queue;
+    private final Thread writer;
+    private volatile IOException error;
+    private Batch batch;
+    private boolean closed;
+
+    public AsyncTraceSink(TraceSink sink) {
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+        this.batch = new Batch();
+        this.writer = new Thread(this::write, "trace-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void trace(int exec, String element, double time) throws IOException {
+        if (error != null) throw error;
+        batch.execs[batch.size] = exec;
+        batch.elements[batch.size] = element;
+        batch.times[batch.size] = time;
+        if (++batch.size == BATCH_SIZE) {
+            put(batch);
+            batch = new Batch();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        IOException failure = null;
+        try {
+            if (batch.size > 0) {
+                put(batch);
+            }
+            put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = new IOException("Interrupted while writing the trace", e);
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+        // the error of the writer, if any, came first
+        if (error != null) throw error;
+        if (failure != null) throw failure;
+    }
+
+    private void put(Batch b) throws IOException {
+        try {
+            while (!queue.offer(b, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                // the queue only stays full if the writer is stuck or stopped
+                if (!writer.isAlive()) {
+                    throw error != null ? error : new IOException("Trace writer stopped");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the trace", e);
+        }
+    }
+
+    /**
+     * Body of the writer thread: writes the batches until the end of the trace. After an error, batches are still
+     * consumed (and dropped) so that the simulation thread never blocks.
+     */
+    private void write() {
+        try {
+            for (Batch b = queue.take(); b != END; b = queue.take()) {
+                if (error != null) continue;
+                try {
+                    for (int i = 0; i < b.size; i++) {
+                        sink.trace(b.execs[i], b.elements[i], b.times[i]);
+                    }
+                } catch (IOException e) {
+                    logger.debug("Trace can not be written", e);
+                    error = e;
+                } catch (RuntimeException e) {
+                    logger.debug("Trace can not be written", e);
+                    error = new IOException("Trace writer failed", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            error = new IOException("Trace writer interrupted", e);
+        } catch (Throwable e) {
+            error = new IOException("Trace writer failed", e);
+            throw e;
+        }
+    }
+
+    private static final class Batch {
+        private final int[] execs = new int[BATCH_SIZE];
+        private final String[] elements = new String[BATCH_SIZE];
+        private final double[] times = new double[BATCH_SIZE];
+        private int size;
+    }
+}
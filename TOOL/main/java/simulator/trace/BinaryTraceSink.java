@@ -0,0 +1,57 @@
+// Copyright 2022 Voyance Systems
+
+package simulator.trace;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The BinaryTraceSink class writes the trace of a run in a compact binary format, read by TraceReader. The file starts
+ * with the MAGIC header, followed by records:
+ * - an element definition, the first time an element appears: the DEFINITION tag, the index of the element (int) and
+ *   its identifier (modified UTF-8);
+ * - an event: the EVENT tag, the execution (int), the index of the element (int) and the time (double).
+ * Events thus take 17 bytes, whatever the length of the identifiers of the elements.
+ */
+public class BinaryTraceSink implements TraceSink {
+
+    static final String MAGIC = "BPMNTRACE1";
+    static final byte DEFINITION = 0;
+    static final byte EVENT = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> elements;
+
+    public BinaryTraceSink(File file) throws IOException {
+        this(new FileOutputStream(file));
+    }
+
+    public BinaryTraceSink(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        this.elements = new HashMap<>();
+        this.out.writeUTF(MAGIC);
+    }
+
+    @Override
+    public void trace(int exec, String element, double time) throws IOException {
+        Integer index = elements.get(element);
+        if (index == null) {
+            index = elements.size();
+            elements.put(element, index);
+            out.writeByte(DEFINITION);
+            out.writeInt(index);
+            out.writeUTF(element);
+        }
+        out.writeByte(EVENT);
+        out.writeInt(exec);
+        out.writeInt(index);
+        out.writeDouble(time);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
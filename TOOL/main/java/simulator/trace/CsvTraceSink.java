@@ -0,0 +1,48 @@
+// Copyright 2022 Voyance Systems
+
+package simulator.trace;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The CsvTraceSink class writes the trace of a run in a single CSV file, one "execution,element,time" line per event,
+ * through a buffered writer kept open for the whole run.
+ */
+public class CsvTraceSink implements TraceSink {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Writer writer;
+
+    public CsvTraceSink(File file) throws IOException {
+        this(file, false);
+    }
+
+    /**
+     * @param file   CSV file
+     * @param append true to write after the current content of the file, false to overwrite it
+     */
+    public CsvTraceSink(File file, boolean append) throws IOException {
+        this(new FileOutputStream(file, append));
+    }
+
+    public CsvTraceSink(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    @Override
+    public void trace(int exec, String element, double time) throws IOException {
+        writer.write(Integer.toString(exec));
+        writer.write(',');
+        writer.write(element);
+        writer.write(',');
+        writer.write(Double.toString(time));
+        writer.write('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
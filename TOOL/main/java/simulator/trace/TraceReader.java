@@ -0,0 +1,79 @@
+// Copyright 2022 Voyance Systems
+
+package simulator.trace;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The TraceReader class reads the traces written by BinaryTraceSink, passing their events to a TraceSink (e.g., a
+ * CsvTraceSink to convert a binary trace to CSV, which is what the main method does).
+ */
+public class TraceReader {
+
+    private TraceReader() {
+    }
+
+    /**
+     * Reads a binary trace.
+     *
+     * @param in   stream of the trace
+     * @param sink sink receiving the events of the trace, in the order in which they were written
+     * @return number of events read
+     * @throws IOException if the trace can not be read, or is not a binary trace
+     */
+    public static long read(InputStream in, TraceSink sink) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (!BinaryTraceSink.MAGIC.equals(data.readUTF())) {
+            throw new IOException("Not a binary trace");
+        }
+        List<String> elements = new ArrayList<>();
+        long events = 0;
+        while (true) {
+            int tag = data.read();
+            if (tag < 0) {
+                return events;
+            } else if (tag == BinaryTraceSink.DEFINITION) {
+                int index = data.readInt();
+                if (index != elements.size()) throw new IOException("Corrupted trace: unexpected element index " + index);
+                elements.add(data.readUTF());
+            } else if (tag == BinaryTraceSink.EVENT) {
+                int exec = data.readInt();
+                int index = data.readInt();
+                double time = data.readDouble();
+                if (index < 0 || index >= elements.size()) throw new IOException("Corrupted trace: undefined element index " + index);
+                sink.trace(exec, elements.get(index), time);
+                events++;
+            } else {
+                throw new IOException("Corrupted trace: unknown record " + tag);
+            }
+        }
+    }
+
+    public static long read(File file, TraceSink sink) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return read(in, sink);
+        }
+    }
+
+    /**
+     * Converts a binary trace to CSV.
+     *
+     * @param args binary trace, and CSV file (standard output if omitted)
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: TraceReader <binary trace> [<csv file>]");
+            System.exit(1);
+        }
+        try (TraceSink csv = args.length > 1 ? new CsvTraceSink(new File(args[1])) : new CsvTraceSink(new FilterOutputStream(System.out) {
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        })) {
+            read(new File(args[0]), csv);
+        }
+    }
+}
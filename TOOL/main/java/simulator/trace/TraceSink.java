@@ -0,0 +1,24 @@
+// Copyright 2022 Voyance Systems
+
+package simulator.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A TraceSink receives the trace of a simulation: every time a flow element is run for an execution, the identifier
+ * of the execution, the identifier of the element and the time of the simulation are passed to the sink. A sink keeps
+ * its output open for the whole run, and must be closed at its end so that all the events are written.
+ */
+public interface TraceSink extends Closeable {
+
+    /**
+     * Records that an element was run.
+     *
+     * @param exec    identifier of the execution
+     * @param element identifier of the flow element
+     * @param time    time of the simulation
+     * @throws IOException if the event can not be written
+     */
+    void trace(int exec, String element, double time) throws IOException;
+}